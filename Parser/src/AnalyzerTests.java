@@ -0,0 +1,119 @@
+import java.util.*;
+
+public class AnalyzerTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) {
+        System.out.println("=== StrategyAnalyzer ===");
+
+        StrategyAnalyzer.Profile p = analyze("x = 1 + 2\nmove up");
+        check("nodes count statements and expressions", p.nodes() == 5);
+        check("straight-line cost", p.bounded() && p.maxCost() == 4 + 10 && p.costToFirstLoop() == p.maxCost());
+        check("no loops", p.loopDepth() == 0 && p.loops().isEmpty() && p.costClass() == 4);
+        check("if takes the dearer branch and its jumps", analyze("if (a) then move up else x = 1").maxCost() == 1 + 1 + 10 + 1);
+
+        p = analyze("""
+                t = 1
+                while (a) {
+                  while (b) { b = b - 1 }
+                  if (c) then move up else c = 1
+                }
+                while (d) { d = d + nearby up }
+                """);
+        check("loop depth", p.loopDepth() == 2 && p.loops().size() == 3);
+        check("outer loops come first", p.loops().get(0).depth() == 1 && p.loops().get(1).depth() == 2 && p.loops().get(2).depth() == 1);
+        check("which loops act", p.loops().get(0).acts() && !p.loops().get(1).acts() && !p.loops().get(2).acts()
+                && p.spinningLoops().size() == 2);
+        check("iteration cost of a loop-free body", p.loops().get(1).iterationCost() == 1 + 4 + 2
+                && p.loops().get(2).iterationCost() == 1 + (1 + 5 + 1 + 1) + 2);
+        check("nested loop leaves its parent unbounded", p.loops().get(0).iterationCost() == StrategyAnalyzer.UNBOUNDED);
+        check("unbounded with a prefix", !p.bounded() && p.costToFirstLoop() == 2 && p.costClass() == 64
+                && p.budget(500) == 500);
+
+        p = analyze("""
+                a = b + 1
+                if (c) then d = 1 else d = 2
+                e = d
+                if (c) then f = 1 else done
+                g = f
+                while (h) { i = 1 }
+                j = i + a + k
+                k = 1
+                x = x + 1
+                """);
+        check("reads before assignment", p.readBeforeAssigned().equals(new LinkedHashSet<>(List.of("b", "c", "h", "i", "k", "x"))));
+        check("read order is kept", new ArrayList<>(p.readBeforeAssigned()).equals(List.of("b", "c", "h", "i", "k", "x")));
+
+        checkLoopCostIsMetered();
+        checkBoundsAgainstMeter();
+
+        StrategyCache cache = new StrategyCache(10_000);
+        StrategyCache.Entry entry = cache.get("while (x) { x = x - 1 }");
+        check("profile is cached on the entry", StrategyAnalyzer.profile(entry) == StrategyAnalyzer.profile(entry)
+                && StrategyAnalyzer.profile(entry).loops().size() == 1);
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some analyzer tests failed. See output above.");
+        }
+        System.out.println("✅ All analyzer tests passed!");
+    }
+
+    private static StrategyAnalyzer.Profile analyze(String src) {
+        return StrategyAnalyzer.analyze(StrategyParser.parse(src));
+    }
+
+    /** Three trips round {@code while (k - 3)} cost three iterations and one failed test. */
+    private static void checkLoopCostIsMetered() {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse("while (3 - k) { k = k + 1 }"));
+        StrategyAnalyzer.Loop loop = StrategyAnalyzer.analyze(resolved.statements()).loops().get(0);
+        long spent = spent(resolved);
+        check("loop cost matches the meter", spent == 3 * loop.iterationCost() + 3 + 1);
+    }
+
+    /**
+     * The analyzer's bound is the meter's charge for straight-line code and an upper bound with
+     * branches; analyzing the parsed tree instead of the optimized one only loosens it.
+     */
+    private static void checkBoundsAgainstMeter() {
+        StrategyGenerator.Options straight = new StrategyGenerator.Options(10, 3, 3, "===mms{", "+++---***/%^");
+        StrategyGenerator.Options branchy = new StrategyGenerator.Options(10, 4, 3, "===mmssd{ii", "+++---***/%^");
+        boolean exact = true, bound = true, parsedBound = true;
+        int runs = 0;
+        for (long seed = 0; seed < 300; seed++) {
+            for (StrategyGenerator.Options options : List.of(straight, branchy)) {
+                List<StrategyParser.Stmt> program = StrategyParser.parse(new StrategyGenerator(seed, options).source());
+                StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(program);
+                long spent;
+                try {
+                    spent = spent(resolved);
+                } catch (StrategyInterpreter.EvalException e) {
+                    continue; // stopped part-way: nothing to compare
+                }
+                runs++;
+                long max = StrategyAnalyzer.analyze(resolved.statements()).maxCost();
+                if (options == straight) exact &= spent == max;
+                bound &= spent <= max;
+                parsedBound &= max <= StrategyAnalyzer.analyze(program).maxCost();
+            }
+        }
+        check("straight-line bound is the meter's charge", exact && runs > 300);
+        check("branching bound is never exceeded", bound);
+        check("optimizing never raises the bound", parsedBound);
+    }
+
+    private static long spent(StrategyResolver.ResolvedProgram resolved) {
+        StrategyMeter.Meter meter = new StrategyMeter.Meter(Long.MAX_VALUE / 2);
+        StrategyMeter.meter(StrategyIR.lower(resolved)).run(resolved.newFrame(), resolved.globals().newStore(),
+                new EngineTests.RecordingEnv(), meter);
+        return meter.spent();
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
@@ -0,0 +1,188 @@
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Hash-consing {@link StrategyParser.NodeFactory}: structurally identical subtrees, identifier names
+ * and operator lexemes are shared across every strategy parsed through the same interner. Nodes are
+ * built bottom-up, so children are already canonical and a node is looked up by the identity of its
+ * children rather than by re-hashing the whole subtree.
+ *
+ * <p>The interner holds strong references; use one per set of resident strategies (a season, a
+ * tournament) and drop or {@link #clear()} it when that set is unloaded.
+ */
+public final class AstInterner implements StrategyParser.NodeFactory {
+
+    // Approximate shallow sizes on a 64-bit JVM with compressed oops, used only for the savings report.
+    private static final int NUM_BYTES = 24, REF1_BYTES = 16, REF2_BYTES = 24, REF3_BYTES = 24;
+    private static final int BLOCK_BYTES = 16 + 16, LIST_SLOT_BYTES = 4;
+    private static final int STRING_BYTES = 24 + 16;
+
+    public record Stats(long requested, long reused, long unique, long bytesSaved) {}
+
+    private static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+
+    private final StrategyParser.Stmt done = new StrategyParser.Stmt.Done();
+    private final StrategyParser.Stmt[] moves = new StrategyParser.Stmt[DIRECTIONS.length];
+    private final StrategyParser.Expr ally = new StrategyParser.Expr.Info(StrategyParser.InfoKind.ALLY, null);
+    private final StrategyParser.Expr opponent = new StrategyParser.Expr.Info(StrategyParser.InfoKind.OPPONENT, null);
+    private final StrategyParser.Expr[] nearby = new StrategyParser.Expr[DIRECTIONS.length];
+
+    private final ConcurrentHashMap<String, String> strings = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<Object, Object> nodes = new ConcurrentHashMap<>();
+    private final LongAdder requested = new LongAdder();
+    private final LongAdder reused = new LongAdder();
+    private final LongAdder bytesSaved = new LongAdder();
+
+    public AstInterner() {
+        for (StrategyParser.Direction d : DIRECTIONS) {
+            moves[d.ordinal()] = new StrategyParser.Stmt.Move(d);
+            nearby[d.ordinal()] = new StrategyParser.Expr.Info(StrategyParser.InfoKind.NEARBY, d);
+        }
+    }
+
+    /** Key over a node's tag, scalar payload and already-canonical children, compared by identity. */
+    private record Key(int tag, long value, Object a, Object b, Object c) {
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key k && k.tag == tag && k.value == value && k.a == a && k.b == b && k.c == c;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = tag * 31 + Long.hashCode(value);
+            h = h * 31 + System.identityHashCode(a);
+            h = h * 31 + System.identityHashCode(b);
+            return h * 31 + System.identityHashCode(c);
+        }
+    }
+
+    private record BlockKey(StrategyParser.Stmt[] items) {
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof BlockKey k) || k.items.length != items.length) return false;
+            for (int i = 0; i < items.length; i++) {
+                if (k.items[i] != items[i]) return false;
+            }
+            return true;
+        }
+
+        @Override
+        public int hashCode() {
+            int h = 1;
+            for (StrategyParser.Stmt s : items) h = h * 31 + System.identityHashCode(s);
+            return h;
+        }
+    }
+
+    @Override
+    public StrategyParser.Expr num(long value) {
+        return intern(new Key(1, value, null, null, null), () -> new StrategyParser.Expr.Num(value), NUM_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Expr var(String name) {
+        String n = string(name);
+        return intern(new Key(2, 0, n, null, null), () -> new StrategyParser.Expr.Var(n), REF1_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Expr binary(String op, StrategyParser.Expr left, StrategyParser.Expr right) {
+        String o = string(op);
+        return intern(new Key(3, 0, o, left, right), () -> new StrategyParser.Expr.Binary(o, left, right), REF3_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Expr paren(StrategyParser.Expr inner) {
+        return intern(new Key(4, 0, inner, null, null), () -> new StrategyParser.Expr.Paren(inner), REF1_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Expr info(StrategyParser.InfoKind kind, StrategyParser.Direction dirOrNull) {
+        StrategyParser.Expr node = switch (kind) {
+            case ALLY -> ally;
+            case OPPONENT -> opponent;
+            case NEARBY -> nearby[dirOrNull.ordinal()];
+        };
+        return shared(node, REF2_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Stmt assign(String name, StrategyParser.Expr value) {
+        String n = string(name);
+        return intern(new Key(5, 0, n, value, null), () -> new StrategyParser.Stmt.Assign(n, value), REF2_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Stmt done() {
+        return shared(done, 12);
+    }
+
+    @Override
+    public StrategyParser.Stmt move(StrategyParser.Direction dir) {
+        return shared(moves[dir.ordinal()], REF1_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Stmt shoot(StrategyParser.Direction dir, StrategyParser.Expr expenditure) {
+        return intern(new Key(6, 0, dir, expenditure, null), () -> new StrategyParser.Stmt.Shoot(dir, expenditure), REF2_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Stmt block(List<StrategyParser.Stmt> statements) {
+        StrategyParser.Stmt[] items = statements.toArray(new StrategyParser.Stmt[0]);
+        return intern(new BlockKey(items), () -> new StrategyParser.Stmt.Block(List.of(items)),
+                BLOCK_BYTES + LIST_SLOT_BYTES * items.length);
+    }
+
+    @Override
+    public StrategyParser.Stmt ifElse(StrategyParser.Expr cond, StrategyParser.Stmt thenBranch, StrategyParser.Stmt elseBranch) {
+        return intern(new Key(7, 0, cond, thenBranch, elseBranch),
+                () -> new StrategyParser.Stmt.If(cond, thenBranch, elseBranch), REF3_BYTES);
+    }
+
+    @Override
+    public StrategyParser.Stmt whileLoop(StrategyParser.Expr cond, StrategyParser.Stmt body) {
+        return intern(new Key(8, 0, cond, body, null), () -> new StrategyParser.Stmt.While(cond, body), REF2_BYTES);
+    }
+
+    public Stats stats() {
+        long unique = nodes.size() + 3 + moves.length + nearby.length; // done, ally, opponent, moves and nearby are preallocated
+        return new Stats(requested.sum(), reused.sum(), unique, bytesSaved.sum());
+    }
+
+    public void clear() {
+        nodes.clear();
+        strings.clear();
+    }
+
+    private String string(String s) {
+        String canonical = strings.putIfAbsent(s, s);
+        if (canonical == null) return s;
+        if (canonical != s) bytesSaved.add(STRING_BYTES + s.length());
+        return canonical;
+    }
+
+    private <T> T shared(T node, int bytes) {
+        requested.increment();
+        reused.increment();
+        bytesSaved.add(bytes);
+        return node;
+    }
+
+    private interface Maker<T> { T make(); }
+
+    @SuppressWarnings("unchecked")
+    private <T> T intern(Object key, Maker<T> maker, int bytes) {
+        requested.increment();
+        Object existing = nodes.get(key);
+        if (existing == null) {
+            T made = maker.make();
+            existing = nodes.putIfAbsent(key, made);
+            if (existing == null) return made;
+        }
+        reused.increment();
+        bytesSaved.add(bytes);
+        return (T) existing;
+    }
+}
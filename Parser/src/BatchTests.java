@@ -0,0 +1,118 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+public class BatchTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== StrategyBatchParser ===");
+
+        List<String> sources = new ArrayList<>();
+        for (int i = 0; i < 1000; i++) {
+            sources.add(i % 7 == 0 ? "x = " + i + " + nearby" : "x = " + i + " if (x) then move up else shoot down x");
+        }
+        sources.add("x = " + "(".repeat(200_000) + "1" + ")".repeat(200_000));
+
+        try (StrategyBatchParser batch = new StrategyBatchParser(4)) {
+            List<StrategyBatchParser.Outcome> outcomes = batch.parseAll(sources);
+            boolean ordered = true, matches = true;
+            for (int i = 0; i < 1000; i++) {
+                StrategyBatchParser.Outcome o = outcomes.get(i);
+                ordered &= o.index() == i;
+                if (i % 7 == 0) matches &= !o.isValid() && o.error().getMessage().equals(errorOf(sources.get(i)));
+                else matches &= o.isValid() && o.program().equals(StrategyParser.parse(sources.get(i)));
+            }
+            check("outcomes come back in input order", ordered && outcomes.size() == sources.size());
+            check("each outcome matches a sequential parse", matches);
+            StrategyParser.ParseException deep = outcomes.get(1000).error();
+            check("over-deep nesting is one failed outcome", deep != null
+                    && deep.getMessage().equals(errorOf(sources.get(1000))) && deep.getMessage().contains("Nesting"));
+
+            AtomicInteger inFlight = new AtomicInteger(), peak = new AtomicInteger();
+            Set<Integer> seen = new HashSet<>();
+            Stream<String> endlessish = IntStream.range(0, 5000).mapToObj(i -> {
+                peak.accumulateAndGet(inFlight.incrementAndGet(), Math::max);
+                return "y = " + i;
+            });
+            int count = batch.parseStream(endlessish, 32, o -> {
+                inFlight.decrementAndGet();
+                seen.add(o.index());
+            });
+            check("stream delivers every source once", count == 5000 && seen.size() == 5000);
+            check("stream never runs ahead of the bound", peak.get() <= 32);
+
+            boolean propagated;
+            try {
+                batch.parseStream(Stream.of("a = 1", "b = 2"), 2, o -> {
+                    throw new IllegalStateException("sink failed");
+                });
+                propagated = false;
+            } catch (IllegalStateException e) {
+                propagated = true;
+            }
+            check("a failing sink stops the stream", propagated);
+
+            boolean errorReported;
+            try {
+                batch.parseStream(Stream.of("a = 1"), 2, o -> {
+                    throw new Error("sink broke");
+                });
+                errorReported = false;
+            } catch (Error e) {
+                errorReported = e.getMessage().equals("sink broke");
+            }
+            check("an Error in the sink is reported", errorReported);
+
+            Stream<String> broken = IntStream.range(0, 100).mapToObj(i -> {
+                if (i == 40) throw new java.io.UncheckedIOException(new java.io.IOException("disk gone"));
+                return "y = " + i;
+            });
+            check("a failing source stream stops the run", fails(() -> batch.parseStream(broken, 8, o -> {})));
+        }
+
+        StrategyBatchParser closed = new StrategyBatchParser(2);
+        closed.close();
+        check("a closed parser refuses a stream", fails(() -> closed.parseStream(Stream.of("a = 1"), 1, o -> {})));
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some batch tests failed. See output above.");
+        }
+        System.out.println("✅ All batch tests passed!");
+    }
+
+    /** Whether {@code run} throws within a few seconds rather than returning or hanging. */
+    private static boolean fails(Callable<Integer> run) throws InterruptedException {
+        ExecutorService probe = Executors.newSingleThreadExecutor();
+        try {
+            probe.submit(run).get(5, TimeUnit.SECONDS);
+            return false;
+        } catch (ExecutionException e) {
+            return true;
+        } catch (TimeoutException e) {
+            return false;
+        } finally {
+            probe.shutdownNow();
+        }
+    }
+
+    private static String errorOf(String src) {
+        try {
+            StrategyParser.parse(src);
+            return null;
+        } catch (StrategyParser.ParseException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
@@ -0,0 +1,155 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class BinaryFormatTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private static final String[] SOURCES = {
+            "t = t + 1",
+            "m = 0 while (3 - m) { if (budget - 100) then { } else done opponentLoc = opponent "
+                    + "if (opponentLoc / 10 - 1) then if (opponentLoc % 10 - 5) then cost = 3 ^ 2 ^ 2 else move upleft "
+                    + "else if (opponentLoc) then shoot up cost else done m = m + 1 }",
+            "x = 0 - 9223372036854775807 - 1 y = 9223372036854775807 z = (((x))) * 0",
+            "a = nearby up + nearby down + nearby upleft + nearby upright + nearby downleft + nearby downright + ally",
+            "while (x) { move down move downright shoot downleft 0 } done",
+            "Cost2 = 5 shoot upright Cost2",
+    };
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== StrategyBinaryFormat ===");
+
+        boolean roundTrips = true;
+        for (String src : SOURCES) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            byte[] bytes = StrategyBinaryFormat.encode(program);
+            roundTrips &= program.equals(StrategyBinaryFormat.decode(ByteBuffer.wrap(bytes)));
+        }
+        check("decode(encode(p)) equals p", roundTrips);
+
+        // the grammar has neither negative literals nor non-ASCII names, but built trees may
+        List<StrategyParser.Stmt> folded = List.of(
+                new StrategyParser.Stmt.Assign("lo", new StrategyParser.Expr.Num(Long.MIN_VALUE)),
+                new StrategyParser.Stmt.Assign("ชื่อ", new StrategyParser.Expr.Num(Long.MAX_VALUE)),
+                new StrategyParser.Stmt.Shoot(StrategyParser.Direction.UP, new StrategyParser.Expr.Num(-1)));
+        check("negative and extreme numbers round-trip",
+                folded.equals(StrategyBinaryFormat.decode(ByteBuffer.wrap(StrategyBinaryFormat.encode(folded)))));
+
+        String big = SOURCES[1];
+        int encoded = StrategyBinaryFormat.encode(StrategyParser.parse(big)).length;
+        check("encoding is smaller than the source", encoded < big.length());
+
+        AstInterner interner = new AstInterner();
+        List<StrategyParser.Stmt> viaInterner = StrategyBinaryFormat.decode(
+                ByteBuffer.wrap(StrategyBinaryFormat.encode(StrategyParser.parse(big))), interner);
+        check("decoding through a NodeFactory", viaInterner.equals(StrategyParser.parse(big))
+                && interner.stats().reused() > 0);
+
+        byte[] truncated = Arrays.copyOf(StrategyBinaryFormat.encode(StrategyParser.parse(big)), 20);
+        check("truncated input is a FormatException", formatError(() -> StrategyBinaryFormat.decode(ByteBuffer.wrap(truncated))));
+        check("bad tag is a FormatException", formatError(() -> StrategyBinaryFormat.decode(ByteBuffer.wrap(new byte[] { 0, 1, 0x7F }))));
+
+        Path dir = Files.createTempDirectory("strategies");
+        try {
+            Map<String, List<StrategyParser.Stmt>> programs = new LinkedHashMap<>();
+            for (int i = 0; i < SOURCES.length; i++) programs.put("player" + i, StrategyParser.parse(SOURCES[i]));
+            Path file = dir.resolve("all.kst");
+            StrategyBinaryFormat.write(file, programs);
+
+            StrategyBinaryFormat.Store store = StrategyBinaryFormat.Store.open(file);
+            check("store lists every strategy", store.ids().equals(programs.keySet()));
+            boolean all = true;
+            for (Map.Entry<String, List<StrategyParser.Stmt>> e : programs.entrySet()) {
+                all &= store.load(e.getKey()).equals(e.getValue());
+            }
+            check("store loads each strategy intact", all);
+            check("unknown id is rejected", missing(() -> store.load("nobody")));
+
+            Path junk = dir.resolve("junk.kst");
+            Files.write(junk, new byte[64]);
+            check("non-store file is rejected", formatError(() -> {
+                try {
+                    StrategyBinaryFormat.Store.open(junk);
+                } catch (java.io.IOException e) {
+                    throw new AssertionError(e);
+                }
+            }));
+
+            for (int bad : new int[] { -1, Integer.MAX_VALUE, SOURCES.length + 1, SOURCES.length - 1 }) {
+                Path corrupt = dir.resolve("count" + bad + ".kst");
+                byte[] bytes = Files.readAllBytes(file);
+                ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN).putInt(8, bad);
+                Files.write(corrupt, bytes);
+                check("index count " + bad + " is rejected", formatError(() -> {
+                    try {
+                        StrategyBinaryFormat.Store.open(corrupt);
+                    } catch (java.io.IOException e) {
+                        throw new AssertionError(e);
+                    }
+                }));
+            }
+
+            // the first entry claims one byte of the second strategy's encoding
+            byte[] bytes = Files.readAllBytes(file);
+            ByteBuffer header = ByteBuffer.wrap(bytes).order(ByteOrder.LITTLE_ENDIAN);
+            int lengthAt = (int) header.getLong(12) + 1 + "player0".length() + 8;
+            header.putInt(lengthAt, header.getInt(lengthAt) + 1);
+            Path overlong = dir.resolve("overlong.kst");
+            Files.write(overlong, bytes);
+            StrategyBinaryFormat.Store stretched = StrategyBinaryFormat.Store.open(overlong);
+            check("trailing bytes in a slice are rejected", formatError(() -> stretched.load("player0"))
+                    && stretched.load("player1").equals(programs.get("player1")));
+
+            Path sources = Files.createDirectory(dir.resolve("src"));
+            Files.writeString(sources.resolve("good.strategy"), SOURCES[1]);
+            Files.writeString(sources.resolve("bad.strategy"), "x = nearby");
+            Files.writeString(Files.createDirectories(sources.resolve("a")).resolve("twin.strategy"), SOURCES[0]);
+            Files.writeString(Files.createDirectories(sources.resolve("b")).resolve("twin.strategy"), SOURCES[2]);
+            Path out = dir.resolve("converted.kst");
+            StrategyBinaryFormat.main(new String[] { sources.toString(), out.toString() });
+            StrategyBinaryFormat.Store converted = StrategyBinaryFormat.Store.open(out);
+            check("converter keeps valid sources only", converted.ids().equals(Set.of("good", "a/twin", "b/twin"))
+                    && converted.load("good").equals(StrategyParser.parse(SOURCES[1])));
+            check("converter keys nested files by relative path", converted.load("a/twin").equals(StrategyParser.parse(SOURCES[0]))
+                    && converted.load("b/twin").equals(StrategyParser.parse(SOURCES[2])));
+        } finally {
+            try (var paths = Files.walk(dir)) {
+                paths.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+        }
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some binary format tests failed. See output above.");
+        }
+        System.out.println("✅ All binary format tests passed!");
+    }
+
+    private static boolean formatError(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (StrategyBinaryFormat.FormatException e) {
+            return true;
+        }
+    }
+
+    private static boolean missing(Runnable r) {
+        try {
+            r.run();
+            return false;
+        } catch (NoSuchElementException e) {
+            return true;
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
@@ -0,0 +1,258 @@
+import java.util.*;
+
+public class BoardTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private static final StrategyResolver.Globals GLOBALS = StrategyResolver.Globals.of("Shared");
+
+    private static final String HUNTER = """
+            t = t + 1
+            Shared = Shared + 1
+            if (nearby up) then shoot up 3
+            else if (nearby down) then shoot down 3
+            else if (nearby upright) then shoot upright 2
+            else if (t % 3) then move upright
+            else move downleft
+            n = nearby downright
+            if (0 - n) then move upleft else x = opponent
+            """;
+    private static final String POLLER = """
+            k = 0
+            while (6 - k) {
+              s = s * 7 + nearby up + nearby down * 3 + nearby upleft + nearby downright * 5 + ally + opponent * 11
+              s = s + nearby upright * 13 + nearby downleft + nearby up
+              if (k % 3) then move up else if (k % 2) then move downright else move downleft
+              k = k + 1
+            }
+            """;
+    private static final String DRIFTER = """
+            a = ally
+            if (a - 20) then move down else move up
+            while (i % 5) { i = i + 1 }
+            i = i + 1
+            if (opponent % 10 - 3) then shoot downright 1 else shoot up 1
+            """;
+
+    public static void main(String[] args) {
+        System.out.println("=== HexBoard / TurnScheduler ===");
+
+        HexBoard board = new HexBoard(8, 8, 2, 1000);
+        int even = board.cell(2, 2), odd = board.cell(2, 3);
+        check("even column neighbours", neighbours(board, even).equals(List.of("1,2", "3,2", "1,1", "1,3", "2,1", "2,3")));
+        check("odd column neighbours", neighbours(board, odd).equals(List.of("1,3", "3,3", "2,2", "2,4", "3,2", "3,4")));
+        check("top-left corner has two neighbours", neighbours(board, 0).stream().filter(Objects::nonNull).count() == 2);
+
+        int me = board.spawn(0, 4, 4, 10);
+        board.spawn(0, 1, 4, 10);          // 3 up
+        board.spawn(1, 6, 4, 10);          // 2 down
+        board.spawn(1, 4, 6, 10);          // off every ray from 4,4
+        int at = board.cellOf(me);
+        check("ally is distance and direction", board.ally(at, 0, HexBoard.EMPTY) == 31);
+        check("opponent takes the closest", board.opponent(at, 0, HexBoard.EMPTY) == 24);
+        check("nearby is signed", board.nearby(at, 0, StrategyParser.Direction.UP, HexBoard.EMPTY) == -3
+                && board.nearby(at, 0, StrategyParser.Direction.DOWN, HexBoard.EMPTY) == 2
+                && board.nearby(at, 0, StrategyParser.Direction.UPLEFT, HexBoard.EMPTY) == 0);
+        check("ignored hex reads as empty", board.nearby(board.cell(0, 4), 0, StrategyParser.Direction.DOWN, board.cell(1, 4)) == -4);
+
+        checkBitboardMatchesWalking();
+        checkLargeBoards();
+        checkCommitOrder();
+        checkOwnMovesAreVisible();
+        checkParallelMatchesSequential();
+        checkMemoChangesNothing();
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some board tests failed. See output above.");
+        }
+        System.out.println("✅ All board tests passed!");
+    }
+
+    private static List<String> neighbours(HexBoard board, int cell) {
+        List<String> out = new ArrayList<>();
+        for (StrategyParser.Direction d : List.of(StrategyParser.Direction.UP, StrategyParser.Direction.DOWN,
+                StrategyParser.Direction.UPLEFT, StrategyParser.Direction.UPRIGHT,
+                StrategyParser.Direction.DOWNLEFT, StrategyParser.Direction.DOWNRIGHT)) {
+            int n = board.neighbor(cell, d);
+            out.add(n == HexBoard.EMPTY ? null : board.row(n) + "," + board.col(n));
+        }
+        return out;
+    }
+
+    private static void checkBitboardMatchesWalking() {
+        Random random = new Random(16);
+        int[][] shapes = {{8, 8}, {9, 9}, {1, 12}, {12, 1}, {2, 3}, {5, 40}, {20, 17}, {70, 4}, {3, 45}, {65, 3}};
+        boolean same = true;
+        long queries = 0;
+        for (int[] shape : shapes) {
+            for (int round = 0; round < 20 && same; round++) {
+                HexBoard board = new HexBoard(shape[0], shape[1], 3, 100);
+                int fill = random.nextInt(board.cells() + 1);
+                for (int i = 0; i < fill; i++) {
+                    int r = random.nextInt(shape[0]), c = random.nextInt(shape[1]);
+                    if (board.occupant(board.cell(r, c)) == HexBoard.EMPTY) board.spawn(random.nextInt(3), r, c, 1 + random.nextInt(3));
+                }
+                for (int step = 0; step < 30; step++) { // moves and kills keep the bitsets in step with the board
+                    int m = random.nextInt(Math.max(1, board.minionCount()));
+                    if (m >= board.minionCount()) break;
+                    StrategyParser.Direction d = StrategyParser.Direction.values()[random.nextInt(6)];
+                    if (random.nextBoolean()) board.move(m, d);
+                    else board.shoot(m, d, random.nextInt(3));
+                }
+                for (int cell = 0; cell < board.cells() && same; cell++) {
+                    int ignore = random.nextInt(4) == 0 ? random.nextInt(board.cells()) : HexBoard.EMPTY;
+                    for (int owner = 0; owner < 3; owner++) {
+                        same &= board.ally(cell, owner, ignore) == board.walkAlly(cell, owner, ignore)
+                                && board.opponent(cell, owner, ignore) == board.walkOpponent(cell, owner, ignore);
+                        for (StrategyParser.Direction d : StrategyParser.Direction.values()) {
+                            same &= board.nearby(cell, owner, d, ignore) == board.walkNearby(cell, owner, d, ignore);
+                        }
+                        queries += 8;
+                    }
+                }
+            }
+        }
+        check("bitboard matches walking the hexes", same && queries > 100_000);
+    }
+
+    /** Rays are stored for two columns only, so a board's bitsets grow with its cells, not their square. */
+    private static void checkLargeBoards() {
+        Random random = new Random(17);
+        HexBoard board = new HexBoard(300, 300, 2, 100);
+        for (int i = 0; i < 2000; i++) {
+            int r = random.nextInt(300), c = random.nextInt(300);
+            if (board.occupant(board.cell(r, c)) == HexBoard.EMPTY) board.spawn(random.nextInt(2), r, c, 1);
+        }
+        boolean same = true;
+        for (int i = 0; i < 2000; i++) {
+            int cell = random.nextInt(board.cells()), owner = random.nextInt(2);
+            same &= board.ally(cell, owner, HexBoard.EMPTY) == board.walkAlly(cell, owner, HexBoard.EMPTY)
+                    && board.opponent(cell, owner, HexBoard.EMPTY) == board.walkOpponent(cell, owner, HexBoard.EMPTY);
+            for (StrategyParser.Direction d : StrategyParser.Direction.values()) {
+                same &= board.nearby(cell, owner, d, HexBoard.EMPTY) == board.walkNearby(cell, owner, d, HexBoard.EMPTY);
+            }
+        }
+        check("a 300x300 board builds and matches walking", same);
+    }
+
+    private static TurnScheduler.Player player(String src) {
+        return player(src, 200);
+    }
+
+    private static TurnScheduler.Player player(String src, long budget) {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse(src), GLOBALS);
+        return new TurnScheduler.Player(StrategyMeter.meter(StrategyIR.lower(resolved)), budget, StrategyMetrics.hash(src));
+    }
+
+    private static void checkCommitOrder() {
+        try (TurnScheduler scheduler = new TurnScheduler(4)) {
+            HexBoard board = new HexBoard(4, 4, 2, 100);
+            int shooter = board.spawn(0, 0, 0, 10);
+            int runner = board.spawn(1, 1, 0, 3);
+            TurnScheduler.TurnReport report = scheduler.playTurn(board,
+                    new TurnScheduler.Player[]{player("shoot down 5"), player("move down")});
+            check("lower id commits first", !board.isAlive(runner) && board.budget(0) == 94 && board.budget(1) == 100
+                    && report.commandsApplied() == 1);
+
+            board = new HexBoard(4, 4, 2, 100);
+            runner = board.spawn(1, 1, 0, 3);
+            shooter = board.spawn(0, 0, 0, 10);
+            scheduler.playTurn(board, new TurnScheduler.Player[]{player("shoot down 5"), player("move down")});
+            check("shot at a hex already left misses", board.isAlive(runner) && board.cellOf(runner) == board.cell(2, 0)
+                    && board.isAlive(shooter) && board.budget(0) == 94);
+        }
+    }
+
+    private static void checkOwnMovesAreVisible() {
+        try (TurnScheduler scheduler = new TurnScheduler(2)) {
+            HexBoard board = new HexBoard(6, 1, 2, 100);
+            int walker = board.spawn(0, 2, 0, 10);
+            board.spawn(1, 5, 0, 10);
+            TurnScheduler.Player p = player("before = nearby down move down after = nearby down back = nearby up");
+            scheduler.playTurn(board, new TurnScheduler.Player[]{p, null});
+            long[] locals = p.frame(walker).locals();
+            StrategyResolver.ResolvedProgram r = StrategyResolver.resolve(
+                    StrategyParser.parse("before = nearby down move down after = nearby down back = nearby up"), GLOBALS);
+            check("a minion sees its own moves", locals[r.slot("before")] == 3 && locals[r.slot("after")] == 2
+                    && locals[r.slot("back")] == 0 && board.cellOf(walker) == board.cell(3, 0));
+        }
+    }
+
+    private static void checkParallelMatchesSequential() {
+        Random random = new Random(15);
+        HexBoard start = new HexBoard(12, 12, 2, 5000);
+        while (start.minionCount() < 60) {
+            int r = random.nextInt(12), c = random.nextInt(12);
+            if (start.occupant(start.cell(r, c)) == HexBoard.EMPTY) start.spawn(random.nextInt(2), r, c, 5 + random.nextInt(20));
+        }
+        HexBoard sequential = start.copy(), parallel = start.copy();
+        TurnScheduler.Player[] one = {player(HUNTER), player(DRIFTER)};
+        TurnScheduler.Player[] many = {player(HUNTER), player(DRIFTER)};
+        boolean same = true;
+        int applied = 0;
+        try (TurnScheduler reference = new TurnScheduler(1); TurnScheduler pool = new TurnScheduler(8)) {
+            for (int turn = 0; turn < 40 && same; turn++) {
+                TurnScheduler.TurnReport a = reference.playTurn(sequential, one);
+                TurnScheduler.TurnReport b = pool.playTurn(parallel, many);
+                applied += a.commandsApplied();
+                same = a.equals(b) && sequential.sameState(parallel)
+                        && Arrays.equals(one[0].globals(), many[0].globals()) && Arrays.equals(one[1].globals(), many[1].globals());
+                for (int m = 0; m < sequential.minionCount() && same; m++) {
+                    if (!sequential.isAlive(m)) continue;
+                    int owner = sequential.ownerOf(m);
+                    same = Arrays.equals(one[owner].frame(m).locals(), many[owner].frame(m).locals());
+                }
+            }
+        }
+        check("8 threads match 1 thread over 40 turns", same && applied > 500);
+        check("the game actually moved on", !sequential.sameState(start));
+    }
+
+    private static void checkMemoChangesNothing() {
+        Random random = new Random(17);
+        HexBoard start = new HexBoard(10, 10, 2, 100_000);
+        while (start.minionCount() < 40) {
+            int r = random.nextInt(10), c = random.nextInt(10);
+            if (start.occupant(start.cell(r, c)) == HexBoard.EMPTY) start.spawn(random.nextInt(2), r, c, 50);
+        }
+        HexBoard cached = start.copy(), direct = start.copy();
+        TurnScheduler.Player[] withMemo = {player(POLLER, 5000), player(HUNTER)};
+        TurnScheduler.Player[] without = {player(POLLER, 5000), player(HUNTER)};
+        boolean same = true;
+        try (TurnScheduler memo = new TurnScheduler(4, true); TurnScheduler plain = new TurnScheduler(4, false)) {
+            for (int turn = 0; turn < 30 && same; turn++) {
+                memo.playTurn(cached, withMemo);
+                plain.playTurn(direct, without);
+                same = cached.sameState(direct);
+                for (int m = 0; m < cached.minionCount() && same; m++) {
+                    if (!cached.isAlive(m) || cached.ownerOf(m) != 0) continue;
+                    same = Arrays.equals(withMemo[0].frame(m).locals(), without[0].frame(m).locals());
+                }
+            }
+            check("memoized info answers match the board", same && !cached.sameState(start));
+            check("memo hits are counted", memo.infoHitRate() > 0.3
+                    && memo.infoHits(StrategyParser.InfoKind.NEARBY) > 0 && plain.infoHitRate() == 0
+                    && memo.infoMisses(StrategyParser.InfoKind.ALLY) > 0);
+        }
+
+        InfoMemo m = new InfoMemo();
+        m.put(StrategyParser.Direction.UP.ordinal(), 4);
+        m.put(StrategyParser.Direction.DOWN.ordinal(), -2);
+        m.put(StrategyParser.Direction.UPLEFT.ordinal(), 3);
+        m.put(InfoMemo.ALLY, 11);
+        m.moved(StrategyParser.Direction.UP);
+        check("a move adjusts its axis and drops the rest", m.has(StrategyParser.Direction.UP.ordinal())
+                && m.get(StrategyParser.Direction.UP.ordinal()) == 3
+                && m.has(StrategyParser.Direction.DOWN.ordinal()) && m.get(StrategyParser.Direction.DOWN.ordinal()) == -3
+                && !m.has(StrategyParser.Direction.UPLEFT.ordinal()) && !m.has(InfoMemo.ALLY)
+                && m.hits(StrategyParser.InfoKind.NEARBY) == 2 && m.misses(StrategyParser.InfoKind.NEARBY) == 1);
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
@@ -0,0 +1,86 @@
+import java.util.*;
+import java.util.concurrent.*;
+
+public class CacheTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) throws Exception {
+        System.out.println("=== StrategyCache ===");
+
+        StrategyCache cache = new StrategyCache(1 << 20);
+        String src = "x=1+2*3 while(x) { x=x-1 move up }";
+
+        List<StrategyParser.Stmt> first = cache.parse(src);
+        List<StrategyParser.Stmt> second = cache.parse(new String(src.toCharArray()));
+        check("hit returns the very same tree", first == second);
+        check("cached tree equals a fresh parse", first.equals(StrategyParser.parse(src)));
+        check("one miss then one hit", cache.stats().misses() == 1 && cache.stats().hits() == 1);
+
+        String bad = "x=nearby";
+        String firstError = message(() -> cache.parse(bad));
+        String secondError = message(() -> cache.parse(bad));
+        check("invalid source throws ParseException", firstError != null);
+        check("negative entry rethrows the same error", Objects.equals(firstError, secondError));
+        check("negative hit counted", cache.stats().negativeHits() == 1);
+
+        StrategyCache.Entry entry = cache.get(src);
+        StrategyResolver.ResolvedProgram resolved = entry.derived(StrategyResolver.class, StrategyResolver::resolve);
+        check("derived form computed once", resolved == entry.derived(StrategyResolver.class, p -> {
+            throw new AssertionError("recomputed");
+        }));
+
+        // single segment, room for about three entries of this size
+        StrategyCache small = new StrategyCache(3 * (20 + 64), 1);
+        for (int i = 0; i < 10; i++) small.parse("x=" + (1000000000000000L + i) + "+y");
+        StrategyCache.Stats stats = small.stats();
+        check("weight budget respected", stats.weight() <= 3 * (20 + 64) && stats.entries() > 0);
+        check("evictions counted", stats.evictions() == 10 - stats.entries());
+        small.parse("x=" + (1000000000000000L + 9) + "+y");
+        check("most recent entry survives eviction", small.stats().hits() == 1);
+        String huge = "x=1" + "+1".repeat(200);
+        List<StrategyParser.Stmt> oversized = small.parse(huge);
+        check("an entry over the budget is returned uncached", oversized.equals(StrategyParser.parse(huge))
+                && small.parse(huge) != oversized && small.stats().weight() <= 3 * (20 + 64)
+                && small.parse("x=" + (1000000000000000L + 9) + "+y") != null && small.stats().hits() == 2);
+
+        // many threads hammering a handful of sources agree on one tree per source
+        StrategyCache shared = new StrategyCache(1 << 20);
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        List<Future<List<StrategyParser.Stmt>>> results = new ArrayList<>();
+        for (int i = 0; i < 2000; i++) {
+            String s = "v=" + (i % 5) + " if(v) then move up else shoot down v";
+            results.add(pool.submit(() -> shared.parse(s)));
+        }
+        Map<List<StrategyParser.Stmt>, Set<Object>> identities = new HashMap<>();
+        for (Future<List<StrategyParser.Stmt>> f : results) {
+            identities.computeIfAbsent(f.get(), k -> Collections.newSetFromMap(new IdentityHashMap<>())).add(f.get());
+        }
+        pool.shutdown();
+        check("concurrent lookups share one tree per source",
+                identities.size() == 5 && identities.values().stream().allMatch(ids -> ids.size() == 1));
+        check("concurrent counters add up", shared.stats().hits() + shared.stats().misses() == 2000);
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some cache tests failed. See output above.");
+        }
+        System.out.println("✅ All cache tests passed!");
+    }
+
+    private static String message(Runnable r) {
+        try {
+            r.run();
+            return null;
+        } catch (StrategyParser.ParseException e) {
+            return e.getMessage();
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
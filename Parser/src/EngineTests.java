@@ -0,0 +1,385 @@
+import java.util.*;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+public class EngineTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    /** Deterministic fake board: info answers depend on how many commands were issued so far. */
+    static final class RecordingEnv implements StrategyInterpreter.Environment {
+        final List<String> log = new ArrayList<>();
+
+        @Override public long ally() { log.add("ally"); return 11 + log.size(); }
+        @Override public long opponent() { log.add("opponent"); return 24 - log.size() % 7; }
+        @Override public long nearby(StrategyParser.Direction dir) {
+            log.add("nearby " + dir);
+            return dir.ordinal() * 100L - log.size();
+        }
+        @Override public void move(StrategyParser.Direction dir) { log.add("move " + dir); }
+        @Override public void shoot(StrategyParser.Direction dir, long expenditure) {
+            log.add("shoot " + dir + " " + expenditure);
+        }
+    }
+
+    /** Unset variables read as 0, so zero-valued entries are dropped before comparing. */
+    record Outcome(Map<String, Long> vars, List<String> log, String error) {
+        Outcome {
+            vars = new TreeMap<>(vars);
+            vars.values().removeIf(v -> v == 0L);
+        }
+    }
+
+    /** A slot-based engine, run against the reference interpreter's name-keyed variables. */
+    interface Engine {
+        void run(StrategyResolver.ResolvedProgram program, StrategyResolver.Frame frame, long[] globals,
+                 StrategyInterpreter.Environment env);
+    }
+
+    static final StrategyResolver.Globals GLOBALS = StrategyResolver.Globals.of("Budget", "Shared");
+    static final Map<String, Long> INITIAL = Map.of("Budget", 10L, "x", 4L);
+
+    static final String[] PROGRAMS = {
+            "x=1+2*3 y=x^3 z=y/4 w=y%5 move up shoot down z done move down",
+            "i=0 while(10-i) { i=i+1 if(i%2) then move up else shoot upleft i } done",
+            "a=ally b=opponent c=nearby upright d=nearby downleft e=(a+b)*(c-d)",
+            "t=0 n=20 while(n) { t=t+n n=n-1 if(t-100) then done else {} }",
+            "x=2^62 y=x*4 z=0-9223372036854775807 z=z-2 q=z/(0-1)",
+            "x=7 y=x/0",
+            "x=7 y=2^(0-1)",
+            "k=3 while(k) { k=k-1 while(k-1) { k=k-1 move down } } shoot up k",
+            "x=y+1 y=x*2",
+            "while(x) { x=x-1 } done",
+            "n=5 while(n-1) { n=n-1 m=m+n*2 } while(3-m) { m=m-1 } p=(n)+((m)) q=n%m r=n^m",
+            "Shared=Shared+Budget x=Budget*x while(Budget) { Budget=Budget-3 move up } y=Shared-x",
+            "x=(1+2)*3 y=x*1+0 z=(0-4)*(2^3) if(2-1) then move up else move down while(0) done a=1/0",
+            "k=5%0 m=2^(3-4)",
+            "x=ally*0 y=nearby up^0 z=(x/0)*0 { { move up } { done move down } } shoot up 1",
+            "while(1-2) { move up } if(0) then done else { } p=q*0 r=q%1 s=q^0",
+            "if(0) then move up else if(0-5) then move down else { move upleft shoot upright 40000 }",
+    };
+
+    public static void main(String[] args) {
+        System.out.println("=== Execution engine equivalence ===");
+
+        Engine compiled = (p, f, g, e) -> StrategyCompiler.compile(p).execute(f, g, e);
+        Engine flat = (p, f, g, e) -> StrategyIR.lower(p).execute(f, g, e);
+        Engine metered = (p, f, g, e) -> StrategyMeter.meter(StrategyIR.lower(p)).run(f, g, e, new StrategyMeter.Meter(Long.MAX_VALUE));
+
+        for (String src : PROGRAMS) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            Outcome expected = reference(program, 1);
+            expectSame("compiled: " + src, expected, run(compiled, program, 1));
+            expectSame("flat IR: " + src, expected, run(flat, program, 1));
+            expectSame("metered: " + src, expected, run(metered, program, 1));
+        }
+
+        // a run spread over many small budgets must add up to one unbounded run
+        for (String src : PROGRAMS) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            expectSame("metered in slices: " + src, reference(program, 1), run((p, f, g, e) -> {
+                StrategyMeter.Program m = StrategyMeter.meter(StrategyIR.lower(p));
+                StrategyMeter.Meter meter = new StrategyMeter.Meter(0);
+                do meter.refill(m.maxCost()); while (m.run(f, g, e, meter) == StrategyMeter.Status.SUSPENDED);
+            }, program, 1));
+        }
+
+        // the tiered runner must switch engines mid-stream without changing observable behaviour
+        for (String src : PROGRAMS) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(program, GLOBALS);
+            StrategyCompiler.TieredStrategy tiered = new StrategyCompiler.TieredStrategy(resolved, 3);
+            expectSame("tiered: " + src, reference(program, 6), run((p, f, g, e) -> tiered.execute(f, g, e), program, 6));
+            if (!tiered.isCompiled()) {
+                System.out.println("✗ tiered strategy was never promoted: " + src);
+                failed++;
+            }
+        }
+
+        tieredRejectsBadThresholds();
+
+        // one batch over many minions must leave every lane as a separate scalar run would
+        for (String src : PROGRAMS) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            expectSame("lanes: " + src, perMinion(program, EngineTests::reference), perMinion(program, EngineTests::lanes));
+        }
+        // the Vector API path, when the module is loaded, and the plain loops must agree lane for lane
+        for (String src : PROGRAMS) {
+            List<StrategyParser.Stmt> program = StrategyParser.parse(src);
+            expectSame((StrategyLanes.VECTOR_API ? "vector" : "scalar") + " lanes: " + src,
+                    merge(runLanes(program, false)), merge(runLanes(program, true)));
+        }
+
+        framePoolKeepsStatePerMinion();
+        meteringStopsRunawayLoops();
+        optimizerShrinksTrees();
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some engine tests failed. See output above.");
+        }
+        System.out.println("✅ All engines agree with the reference interpreter!");
+    }
+
+    static Outcome reference(List<StrategyParser.Stmt> program, int turns) {
+        Map<String, Long> vars = new HashMap<>(INITIAL);
+        RecordingEnv env = new RecordingEnv();
+        String error = null;
+        for (int turn = 0; turn < turns; turn++) {
+            try {
+                StrategyInterpreter.execute(program, vars, env);
+            } catch (StrategyInterpreter.EvalException e) {
+                error = e.getMessage();
+            }
+        }
+        return new Outcome(vars, env.log, error);
+    }
+
+    static Outcome run(Engine engine, List<StrategyParser.Stmt> program, int turns) {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(program, GLOBALS);
+        StrategyResolver.Frame frame = resolved.newFrame();
+        long[] globals = GLOBALS.newStore();
+        for (int i = 0; i < resolved.localCount(); i++) frame.locals()[i] = INITIAL.getOrDefault(resolved.localName(i), 0L);
+        for (int i = 0; i < GLOBALS.size(); i++) globals[i] = INITIAL.getOrDefault(GLOBALS.names().get(i), 0L);
+
+        RecordingEnv env = new RecordingEnv();
+        String error = null;
+        for (int turn = 0; turn < turns; turn++) {
+            try {
+                engine.run(resolved, frame, globals, env);
+            } catch (StrategyInterpreter.EvalException e) {
+                error = e.getMessage();
+            }
+        }
+
+        Map<String, Long> vars = new HashMap<>(INITIAL);
+        for (int i = 0; i < resolved.localCount(); i++) vars.put(resolved.localName(i), frame.locals()[i]);
+        for (int i = 0; i < GLOBALS.size(); i++) vars.put(GLOBALS.names().get(i), globals[i]);
+        return new Outcome(vars, env.log, error);
+    }
+
+    static final int LANES = 37;
+
+    /** Initial variables for minion {@code m}: the usual ones, shifted so lanes take different paths. */
+    static Map<String, Long> initial(int m) {
+        Map<String, Long> vars = new HashMap<>(INITIAL);
+        vars.put("x", m - 5L);
+        vars.put("Budget", m % 7 * 3L);
+        vars.put("k", m % 4L);
+        return vars;
+    }
+
+    static Outcome reference(List<StrategyParser.Stmt> program, Map<String, Long> vars) {
+        RecordingEnv env = new RecordingEnv();
+        String error = null;
+        try {
+            StrategyInterpreter.execute(program, vars, env);
+        } catch (StrategyInterpreter.EvalException e) {
+            error = e.getMessage();
+        }
+        return new Outcome(vars, env.log, error);
+    }
+
+    static List<Outcome> lanes(List<StrategyParser.Stmt> program) {
+        return runLanes(program, StrategyLanes.VECTOR_API);
+    }
+
+    static List<Outcome> runLanes(List<StrategyParser.Stmt> program, boolean vectorized) {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(program, GLOBALS);
+        StrategyLanes lanes = new StrategyLanes(resolved, 64, vectorized);
+        StrategyResolver.Frame[] frames = new StrategyResolver.Frame[LANES];
+        long[][] globals = new long[LANES][];
+        RecordingEnv[] envs = new RecordingEnv[LANES];
+        for (int m = 0; m < LANES; m++) {
+            Map<String, Long> init = initial(m);
+            frames[m] = resolved.newFrame();
+            globals[m] = GLOBALS.newStore();
+            for (int i = 0; i < resolved.localCount(); i++) frames[m].locals()[i] = init.getOrDefault(resolved.localName(i), 0L);
+            for (int i = 0; i < GLOBALS.size(); i++) globals[m][i] = init.getOrDefault(GLOBALS.names().get(i), 0L);
+            envs[m] = new RecordingEnv();
+            lanes.load(m, frames[m], globals[m]);
+        }
+        lanes.run(LANES, envs);
+
+        List<Outcome> out = new ArrayList<>();
+        for (int m = 0; m < LANES; m++) {
+            lanes.store(m, frames[m], globals[m]);
+            Map<String, Long> vars = initial(m);
+            for (int i = 0; i < resolved.localCount(); i++) vars.put(resolved.localName(i), frames[m].locals()[i]);
+            for (int i = 0; i < GLOBALS.size(); i++) vars.put(GLOBALS.names().get(i), globals[m][i]);
+            StrategyInterpreter.EvalException e = lanes.error(m);
+            out.add(new Outcome(vars, envs[m].log, e == null ? null : e.getMessage()));
+        }
+        return out;
+    }
+
+    static Outcome perMinion(List<StrategyParser.Stmt> program, BiFunction<List<StrategyParser.Stmt>, Map<String, Long>, Outcome> scalar) {
+        List<Outcome> each = new ArrayList<>();
+        for (int m = 0; m < LANES; m++) each.add(scalar.apply(program, initial(m)));
+        return merge(each);
+    }
+
+    static Outcome perMinion(List<StrategyParser.Stmt> program, Function<List<StrategyParser.Stmt>, List<Outcome>> batch) {
+        return merge(batch.apply(program));
+    }
+
+    /** All minions' outcomes as one, variables and log entries prefixed with the minion number. */
+    static Outcome merge(List<Outcome> each) {
+        Map<String, Long> vars = new HashMap<>();
+        List<String> log = new ArrayList<>();
+        StringBuilder errors = new StringBuilder();
+        for (int m = 0; m < each.size(); m++) {
+            Outcome o = each.get(m);
+            for (Map.Entry<String, Long> e : o.vars().entrySet()) vars.put(m + ":" + e.getKey(), e.getValue());
+            for (String entry : o.log()) log.add(m + ":" + entry);
+            if (o.error() != null) errors.append(m).append(':').append(o.error()).append(' ');
+        }
+        return new Outcome(vars, log, errors.toString());
+    }
+
+    static void optimizerShrinksTrees() {
+        String[][] cases = {
+                { "x=(1+2)*3", "x=9" },
+                { "x=2^3^2", "x=512" },
+                { "x=y*1+0-0", "x=y" },
+                { "if(1) then move up else move down", "move up" },
+                { "if(0-1) then move up else { move down move up }", "move down move up" },
+                { "while(0) move up done", "done" },
+                { "{ { x=1 } { y=2 } }", "x=1 y=2" },
+                { "move up done move down", "move up done" },
+                { "if(x) then done else { move up done } move down", "if(x) then done else { move up done }" },
+                { "x=y*0 z=ally*0", "x=0 z=ally*0" },
+                { "x=1/0 y=7%(2-2)", "x=1/0 y=7%0" },
+        };
+        for (String[] c : cases) {
+            expectOptimized(c[0], stripParens(StrategyParser.parse(c[1])));
+        }
+        // a negative exponent must still fail at runtime, so only its operand is folded
+        expectOptimized("z=2^(0-1)", List.of(new StrategyParser.Stmt.Assign("z",
+                new StrategyParser.Expr.Binary("^", new StrategyParser.Expr.Num(2), new StrategyParser.Expr.Num(-1)))));
+    }
+
+    private static void expectOptimized(String src, List<StrategyParser.Stmt> want) {
+        List<StrategyParser.Stmt> got = StrategyOptimizer.optimize(StrategyParser.parse(src));
+        expectSame("optimize: " + src,
+                new Outcome(Map.of(), List.of(want.toString()), null),
+                new Outcome(Map.of(), List.of(got.toString()), null));
+    }
+
+    private static List<StrategyParser.Stmt> stripParens(List<StrategyParser.Stmt> program) {
+        List<StrategyParser.Stmt> out = new ArrayList<>();
+        for (StrategyParser.Stmt s : program) out.add(stripParens(s));
+        return out;
+    }
+
+    private static StrategyParser.Stmt stripParens(StrategyParser.Stmt s) {
+        if (s instanceof StrategyParser.Stmt.Assign a) return new StrategyParser.Stmt.Assign(a.name(), stripParens(a.value()));
+        if (s instanceof StrategyParser.Stmt.Block b) return new StrategyParser.Stmt.Block(stripParens(b.statements()));
+        if (s instanceof StrategyParser.Stmt.If i) return new StrategyParser.Stmt.If(stripParens(i.cond()), stripParens(i.thenBranch()), stripParens(i.elseBranch()));
+        return s;
+    }
+
+    private static StrategyParser.Expr stripParens(StrategyParser.Expr e) {
+        if (e instanceof StrategyParser.Expr.Paren p) return stripParens(p.inner());
+        if (e instanceof StrategyParser.Expr.Binary b) return new StrategyParser.Expr.Binary(b.op(), stripParens(b.left()), stripParens(b.right()));
+        return e;
+    }
+
+    /** A threshold the invocation count can never equal would silently never promote. */
+    static void tieredRejectsBadThresholds() {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse("move up"));
+        List<String> errors = new ArrayList<>();
+        for (int threshold : new int[]{0, -1}) {
+            try {
+                new StrategyCompiler.TieredStrategy(resolved, threshold);
+                errors.add("accepted " + threshold);
+            } catch (IllegalArgumentException e) {
+                errors.add(e.getMessage());
+            }
+        }
+        StrategyCompiler.TieredStrategy first = new StrategyCompiler.TieredStrategy(resolved, 1);
+        first.execute(resolved.newFrame(), null, new RecordingEnv());
+        expectSame("tiered threshold must be positive",
+                new Outcome(Map.of(), List.of("Threshold must be positive", "Threshold must be positive"), "compiled"),
+                new Outcome(Map.of(), errors, first.isCompiled() ? "compiled" : "interpreted"));
+    }
+
+    static void framePoolKeepsStatePerMinion() {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse("t=t+1"));
+        StrategyIR.Program program = StrategyIR.lower(resolved);
+        StrategyResolver.FramePool pool = new StrategyResolver.FramePool(resolved);
+        RecordingEnv env = new RecordingEnv();
+        for (int turn = 0; turn < 3; turn++) {
+            for (int minion = 0; minion < 40; minion += minion + 1) program.execute(pool.frame(minion), null, env);
+        }
+        program.execute(pool.frame(3), null, env);
+        StrategyResolver.Frame released = pool.frame(7);
+        pool.release(7);
+        StrategyResolver.Frame reused = pool.frame(99);
+
+        Outcome expected = new Outcome(Map.of("t0", 3L, "t3", 4L, "reused", 0L), List.of(), "same frame");
+        Outcome got = new Outcome(
+                Map.of("t0", pool.frame(0).locals()[0], "t3", pool.frame(3).locals()[0], "reused", reused.locals()[0]),
+                List.of(), released == reused ? "same frame" : "new frame");
+        expectSame("frame pool keeps state per minion and recycles frames", expected, got);
+    }
+
+    static void meteringStopsRunawayLoops() {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse("while(1) { i=i+1 move up }"));
+        StrategyMeter.Program program = StrategyMeter.meter(StrategyIR.lower(resolved));
+        List<String> stops = new ArrayList<>();
+        for (int replay = 0; replay < 2; replay++) {
+            StrategyResolver.Frame frame = resolved.newFrame();
+            RecordingEnv env = new RecordingEnv();
+            StrategyMeter.Meter meter = new StrategyMeter.Meter(1000);
+            StrategyMeter.Status status = program.run(frame, null, env, meter);
+            stops.add(status + " i=" + frame.locals()[0] + " moves=" + env.log.size() + " spent=" + meter.spent()
+                    + " left=" + meter.remaining() + " suspended=" + frame.isSuspended());
+        }
+        // each lap: CONST+JUMP_IF_NOT (2), INC (4), MOVE (10), JUMP (1) = 17; 58 laps = 986, then INC fits, MOVE does not
+        expectSame("runaway loop stops at the same instruction every time",
+                new Outcome(Map.of(), List.of("SUSPENDED i=59 moves=58 spent=992 left=8 suspended=true",
+                        "SUSPENDED i=59 moves=58 spent=992 left=8 suspended=true"), null),
+                new Outcome(Map.of(), stops, null));
+
+        StrategyResolver.ResolvedProgram shot = StrategyResolver.resolve(StrategyParser.parse("shoot up 1"));
+        StrategyMeter.Program expensive = StrategyMeter.meter(StrategyIR.lower(shot));
+        RecordingEnv env = new RecordingEnv();
+        StrategyResolver.Frame frame = shot.newFrame();
+        StrategyMeter.Status first = expensive.run(frame, null, env, new StrategyMeter.Meter(10));
+        StrategyMeter.Status second = expensive.run(frame, null, env, new StrategyMeter.Meter(10));
+        expectSame("a command the budget cannot cover waits for the next turn",
+                new Outcome(Map.of(), List.of("SUSPENDED", "FINISHED", "shoot UP 1"), null),
+                new Outcome(Map.of(), List.of(first.toString(), second.toString(), String.join(",", env.log)), null));
+
+        // stopping before the very first instruction is still a suspension, resumed at pc 0
+        StrategyResolver.ResolvedProgram opener = StrategyResolver.resolve(StrategyParser.parse("move up\nx = x + 1"));
+        StrategyMeter.Program starved = StrategyMeter.meter(StrategyIR.lower(opener));
+        StrategyResolver.Frame idle = opener.newFrame();
+        RecordingEnv moves = new RecordingEnv();
+        List<String> runs = new ArrayList<>();
+        for (long budget : new long[]{2, 100, 100}) {
+            StrategyMeter.Status status = starved.run(idle, null, moves, new StrategyMeter.Meter(budget));
+            runs.add(status + " suspended=" + idle.isSuspended() + " pc=" + idle.resumePc + " x=" + idle.locals()[0]);
+        }
+        runs.add(String.join(",", moves.log));
+        expectSame("a run starved before its first instruction is suspended",
+                new Outcome(Map.of(), List.of("SUSPENDED suspended=true pc=0 x=0", "FINISHED suspended=false pc=0 x=1",
+                        "FINISHED suspended=false pc=0 x=2", "move UP,move UP"), null),
+                new Outcome(Map.of(), runs, null));
+    }
+
+    static void expectSame(String name, Outcome expected, Outcome got) {
+        System.out.printf("%-60s ... ", name.length() > 60 ? name.substring(0, 57) + "..." : name);
+        if (expected.equals(got)) {
+            System.out.println("✓");
+            passed++;
+        } else {
+            System.out.println("✗");
+            System.out.println("  EXPECTED: " + expected);
+            System.out.println("  GOT     : " + got);
+            failed++;
+        }
+    }
+}
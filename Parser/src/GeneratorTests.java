@@ -0,0 +1,131 @@
+import java.util.*;
+
+public class GeneratorTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) {
+        System.out.println("=== StrategyGenerator / StrategyPrinter ===");
+
+        check("same seed, same program", new StrategyGenerator(42).source().equals(new StrategyGenerator(42).source())
+                && !new StrategyGenerator(42).source().equals(new StrategyGenerator(43).source()));
+
+        Set<String> seen = new TreeSet<>();
+        boolean roundTrips = true;
+        for (int seed = 0; seed < 2000 && roundTrips; seed++) {
+            List<StrategyParser.Stmt> program = new StrategyGenerator(seed).program();
+            roundTrips = StrategyParser.parse(StrategyPrinter.print(program)).equals(program);
+            for (StrategyParser.Stmt s : program) collect(s, seen);
+        }
+        check("printed programs reparse to equal trees", roundTrips);
+        Set<String> every = new TreeSet<>(List.of("Assign", "Done", "Move", "Shoot", "Block", "If", "While",
+                "Num", "Var", "Binary", "Paren", "Info", "+", "-", "*", "/", "%", "^", "ALLY", "OPPONENT", "NEARBY"));
+        for (StrategyParser.Direction d : StrategyParser.Direction.values()) every.add(d.name());
+        check("every production, operator, direction and info kind", seen.containsAll(every));
+
+        StrategyGenerator.Options onlyPower = new StrategyGenerator.Options(5, 2, 6, "=", "^");
+        Set<String> powers = new TreeSet<>();
+        for (StrategyParser.Stmt s : new StrategyGenerator(7, onlyPower).program()) collect(s, powers);
+        check("statement and operator mix are honoured", powers.contains("^") && powers.contains("Assign")
+                && Collections.disjoint(powers, List.of("+", "-", "*", "/", "%", "If", "While", "Block", "Move", "Shoot", "Done")));
+        check("printer regroups trees without parentheses", reparsesSame(
+                List.of(new StrategyParser.Stmt.Assign("x", new StrategyParser.Expr.Binary("-",
+                        new StrategyParser.Expr.Num(1), new StrategyParser.Expr.Binary("-",
+                        new StrategyParser.Expr.Num(-2), new StrategyParser.Expr.Num(Long.MIN_VALUE)))))));
+
+        String corpus = new StrategyGenerator(1, new StrategyGenerator.Options(1, 6, 5, "==msd{iiww", "+-*/%^")).corpus(2_000_000);
+        check("multi-megabyte corpus parses", corpus.length() >= 2_000_000 && !StrategyParser.parse(corpus).isEmpty());
+
+        boolean allBroken = true, allReported = true;
+        int produced = 0;
+        StrategyGenerator breaker = new StrategyGenerator(99);
+        for (int seed = 0; seed < 100; seed++) {
+            String src = new StrategyGenerator(seed).source();
+            for (StrategyGenerator.Mutation m : StrategyGenerator.Mutation.values()) {
+                String broken = breaker.nearMiss(src, m);
+                if (broken == null) continue;
+                produced++;
+                try {
+                    StrategyParser.parse(broken);
+                    allBroken = false;
+                } catch (StrategyParser.ParseException e) {
+                    allReported &= !StrategyParser.validate(broken).isValid();
+                }
+            }
+        }
+        check("near misses never parse", allBroken && produced > 600);
+        check("validation reports every near miss", allReported);
+        check("no else, no missing-else near miss", breaker.nearMiss("x = 1", StrategyGenerator.Mutation.MISSING_ELSE) == null);
+
+        boolean enginesAgree = true;
+        StrategyGenerator.Options straight = new StrategyGenerator.Options(12, 3, 3, "=====mmssd{ii", "+++---***/%^");
+        EngineTests.Engine flat = (p, f, g, e) -> StrategyIR.lower(p).execute(f, g, e);
+        for (int seed = 0; seed < 500 && enginesAgree; seed++) {
+            List<StrategyParser.Stmt> program = new StrategyGenerator(seed, straight).program();
+            enginesAgree = EngineTests.reference(program, 1).equals(EngineTests.run(flat, program, 1));
+        }
+        check("optimized IR agrees on generated programs", enginesAgree);
+
+        // at the depth limit only the mix's own simple statements come out
+        Set<String> leaves = new HashSet<>();
+        StrategyGenerator doneOnly = new StrategyGenerator(8, new StrategyGenerator.Options(40, 1, 2, "{iwwd", "+"));
+        for (StrategyParser.Stmt st : doneOnly.program()) collect(st, leaves);
+        leaves.retainAll(Set.of("Assign", "Move", "Shoot", "Done"));
+        boolean rejected = false;
+        try {
+            new StrategyGenerator.Options(5, 2, 2, "{iw", "+");
+        } catch (IllegalArgumentException e) {
+            rejected = true;
+        }
+        check("depth-limit statements come from the mix", leaves.equals(Set.of("Done")) && rejected);
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some generator tests failed. See output above.");
+        }
+        System.out.println("✅ All generator tests passed!");
+    }
+
+    private static boolean reparsesSame(List<StrategyParser.Stmt> program) {
+        List<StrategyParser.Stmt> again = StrategyParser.parse(StrategyPrinter.print(program));
+        Map<String, Long> a = new HashMap<>(), b = new HashMap<>();
+        StrategyInterpreter.execute(program, a, new EngineTests.RecordingEnv());
+        StrategyInterpreter.execute(again, b, new EngineTests.RecordingEnv());
+        return a.equals(b);
+    }
+
+    private static void collect(StrategyParser.Stmt s, Set<String> seen) {
+        seen.add(s.getClass().getSimpleName());
+        if (s instanceof StrategyParser.Stmt.Assign a) collect(a.value(), seen);
+        if (s instanceof StrategyParser.Stmt.Move m) seen.add(m.dir().name());
+        if (s instanceof StrategyParser.Stmt.Shoot sh) collect(sh.expenditure(), seen);
+        if (s instanceof StrategyParser.Stmt.Block b) for (StrategyParser.Stmt c : b.statements()) collect(c, seen);
+        if (s instanceof StrategyParser.Stmt.If i) {
+            collect(i.cond(), seen);
+            collect(i.thenBranch(), seen);
+            collect(i.elseBranch(), seen);
+        }
+        if (s instanceof StrategyParser.Stmt.While w) {
+            collect(w.cond(), seen);
+            collect(w.body(), seen);
+        }
+    }
+
+    private static void collect(StrategyParser.Expr e, Set<String> seen) {
+        seen.add(e.getClass().getSimpleName());
+        if (e instanceof StrategyParser.Expr.Binary b) {
+            seen.add(b.op());
+            collect(b.left(), seen);
+            collect(b.right(), seen);
+        }
+        if (e instanceof StrategyParser.Expr.Paren p) collect(p.inner(), seen);
+        if (e instanceof StrategyParser.Expr.Info i) seen.add(i.kind().name());
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
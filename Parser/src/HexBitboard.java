@@ -0,0 +1,191 @@
+import java.util.Arrays;
+
+/**
+ * Occupancy of a {@link HexBoard} as bitsets: one for every occupied hex and one per player, with a
+ * mask for each hex's ray in each of the six directions. Answering {@code ally}, {@code opponent} or
+ * {@code nearby} is then a mask, a {@link Long#numberOfTrailingZeros} or
+ * {@link Long#numberOfLeadingZeros}, and a shift per direction, for boards of up to 64 hexes; larger
+ * boards take one more word per 64 hexes a ray spans.
+ *
+ * <p>Bits follow {@link HexBoard} cell numbers, which run down each column in turn. Each step along a
+ * ray changes the column by one, or the row by one for {@code up} and {@code down}, so a ray's cells
+ * only ever increase ({@code down}, {@code upright}, {@code downright}) or only ever decrease (the
+ * other three) in number: the nearest cell on a ray is its lowest or highest set bit.
+ *
+ * <p>Odd columns sit half a hex lower, so a ray's shape depends only on its row, its direction and its
+ * column's parity; moving the start two columns over moves the ray by {@code 2 * rows} bits. Only rays
+ * from two reference columns are stored, the first two for increasing directions and the last two for
+ * decreasing ones, and the others are those shifted; cells a shift carries off the board fall outside
+ * the bitsets. That is {@code 12 * rows} masks however many columns there are.
+ */
+public final class HexBitboard {
+
+    private static final int ALLY = 0, OPPONENT = 1, ANY = 2;
+    private static final boolean[] INCREASING = new boolean[6];
+    private static final boolean[] VERTICAL = new boolean[6];
+
+    static {
+        INCREASING[StrategyParser.Direction.DOWN.ordinal()] = true;
+        INCREASING[StrategyParser.Direction.UPRIGHT.ordinal()] = true;
+        INCREASING[StrategyParser.Direction.DOWNRIGHT.ordinal()] = true;
+        VERTICAL[StrategyParser.Direction.UP.ordinal()] = true;
+        VERTICAL[StrategyParser.Direction.DOWN.ordinal()] = true;
+    }
+
+    private final int rows, cols, words;
+    private final long[] rays;   // ((direction * 2 + column parity) * rows + row) * words + word, from a reference column
+    private final int[] ends;    // the farthest cell of each stored ray, or -1 for an empty one
+    private final int[] rowOf, colOf;
+    private final long[] occupied;
+    private final long[] owned;  // player * words + word
+
+    /** @param neighbors {@code cell * 6 + direction ordinal -> cell}, or {@link HexBoard#EMPTY} off the board */
+    HexBitboard(int rows, int cols, int players, int[] neighbors) {
+        int cells = rows * cols;
+        this.rows = rows;
+        this.cols = cols;
+        this.words = (cells + 63) >>> 6;
+        this.rays = new long[12 * rows * words];
+        this.ends = new int[12 * rows];
+        this.rowOf = new int[cells];
+        this.colOf = new int[cells];
+        this.occupied = new long[words];
+        this.owned = new long[players * words];
+        for (int cell = 0; cell < cells; cell++) {
+            rowOf[cell] = cell % rows;
+            colOf[cell] = cell / rows;
+        }
+        for (int d = 0; d < 6; d++) {
+            for (int parity = 0; parity < 2; parity++) {
+                int col = INCREASING[d] ? parity : cols - 1 - parity;
+                if (col < 0 || col >= cols) continue; // a one-column board has no second reference
+                for (int row = 0; row < rows; row++) {
+                    int r = ray(d, col, row), end = -1;
+                    for (int at = neighbors[(col * rows + row) * 6 + d]; at != HexBoard.EMPTY; at = neighbors[at * 6 + d]) {
+                        rays[r * words + (at >>> 6)] |= 1L << at;
+                        end = at;
+                    }
+                    ends[r] = end;
+                }
+            }
+        }
+    }
+
+    /** Which stored ray a start in {@code col}'s parity class uses; it begins at that many times {@code words} in {@link #rays}. */
+    private int ray(int d, int col, int row) {
+        int parity = INCREASING[d] ? col & 1 : (cols - 1 - col) & 1;
+        return (d * 2 + parity) * rows + row;
+    }
+
+    private HexBitboard(HexBitboard other) {
+        words = other.words;
+        rows = other.rows;
+        cols = other.cols;
+        rays = other.rays; // never change
+        ends = other.ends;
+        rowOf = other.rowOf;
+        colOf = other.colOf;
+        occupied = other.occupied.clone();
+        owned = other.owned.clone();
+    }
+
+    HexBitboard copy() { return new HexBitboard(this); }
+
+    void clear() {
+        Arrays.fill(occupied, 0L);
+        Arrays.fill(owned, 0L);
+    }
+
+    void place(int cell, int owner) {
+        occupied[cell >>> 6] |= 1L << cell;
+        owned[owner * words + (cell >>> 6)] |= 1L << cell;
+    }
+
+    void remove(int cell, int owner) {
+        occupied[cell >>> 6] &= ~(1L << cell);
+        owned[owner * words + (cell >>> 6)] &= ~(1L << cell);
+    }
+
+    public boolean isOccupied(int cell) {
+        return (occupied[cell >>> 6] & 1L << cell) != 0;
+    }
+
+    /** See {@link HexBoard}; {@code ignore} is a cell to treat as empty, or {@link HexBoard#EMPTY}. */
+    public long ally(int cell, int owner, int ignore) {
+        return closest(cell, owner, ALLY, ignore);
+    }
+
+    public long opponent(int cell, int owner, int ignore) {
+        return closest(cell, owner, OPPONENT, ignore);
+    }
+
+    public long nearby(int cell, int owner, StrategyParser.Direction dir, int ignore) {
+        int d = dir.ordinal();
+        int at = nearest(cell, d, owner, ANY, ignore);
+        if (at < 0) return 0;
+        long distance = distance(cell, d, at);
+        return (owned[owner * words + (at >>> 6)] & 1L << at) != 0 ? -distance : distance;
+    }
+
+    private long closest(int cell, int owner, int mode, int ignore) {
+        long best = 0;
+        for (int d = 0; d < 6; d++) {
+            int at = nearest(cell, d, owner, mode, ignore);
+            if (at < 0) continue;
+            long v = 10L * distance(cell, d, at) + HexBoard.CODE[d];
+            if (best == 0 || v < best) best = v;
+        }
+        return best;
+    }
+
+    private int distance(int cell, int d, int at) {
+        return VERTICAL[d] ? Math.abs(rowOf[at] - rowOf[cell]) : Math.abs(colOf[at] - colOf[cell]);
+    }
+
+    /**
+     * The nearest cell on the ray from {@code cell} in direction {@code d} holding a candidate, or -1.
+     * The scan stops at the word holding the ray's farthest cell, not at the end of the board.
+     */
+    private int nearest(int cell, int d, int owner, int mode, int ignore) {
+        int row = rowOf[cell], col = colOf[cell];
+        int r = ray(d, col, row), base = r * words, end = ends[r];
+        if (end < 0) return -1;
+        if (INCREASING[d]) {
+            int shift = (col & ~1) * rows, q = shift >>> 6, s = shift & 63; // the ray from column 0 or 1, moved up
+            int last = Math.min(words - 1, (end + shift) >>> 6);
+            for (int w = cell >>> 6; w <= last; w++) {
+                long x = shiftedUp(base, w - q, s) & candidates(w, owner, mode, ignore);
+                if (x != 0) return (w << 6) + Long.numberOfTrailingZeros(x);
+            }
+        } else {
+            int shift = ((cols - 1 - col) & ~1) * rows, q = shift >>> 6, s = shift & 63; // from the last two columns, moved down
+            int first = Math.max(0, end - shift) >>> 6;
+            for (int w = cell >>> 6; w >= first; w--) {
+                long x = shiftedDown(base, w + q, s) & candidates(w, owner, mode, ignore);
+                if (x != 0) return (w << 6) + 63 - Long.numberOfLeadingZeros(x);
+            }
+        }
+        return -1;
+    }
+
+    /** Word {@code w + q} of the stored ray at {@code base} shifted up by {@code q * 64 + s} bits, given {@code w}. */
+    private long shiftedUp(int base, int w, int s) {
+        if (w < 0) return 0;
+        long x = rays[base + w] << s;
+        return s != 0 && w > 0 ? x | rays[base + w - 1] >>> (64 - s) : x;
+    }
+
+    /** Word {@code w - q} of the stored ray at {@code base} shifted down by {@code q * 64 + s} bits, given {@code w}. */
+    private long shiftedDown(int base, int w, int s) {
+        if (w >= words) return 0;
+        long x = rays[base + w] >>> s;
+        return s != 0 && w + 1 < words ? x | rays[base + w + 1] << (64 - s) : x;
+    }
+
+    private long candidates(int w, int owner, int mode, int ignore) {
+        long mine = owned[owner * words + w];
+        long x = mode == ALLY ? mine : mode == OPPONENT ? occupied[w] & ~mine : occupied[w];
+        if (ignore >>> 6 == w) x &= ~(1L << ignore); // EMPTY >>> 6 matches no word
+        return x;
+    }
+}
@@ -0,0 +1,300 @@
+import java.nio.LongBuffer;
+import java.util.Arrays;
+
+/**
+ * The game board: a {@code rows x cols} grid of hexes in columns, odd columns sitting half a hex lower
+ * than even ones, holding the minions of two or more players. Cells are numbered down each column in
+ * turn: {@code cell = col * rows + row}.
+ *
+ * <p>Answers to the strategy info expressions, seen from a minion at {@code cell} owned by {@code owner}:
+ * <ul>
+ *   <li>{@code ally} / {@code opponent}: {@code 10 * distance + direction} of the closest friendly /
+ *       hostile minion in a straight line along one of the six directions, 0 if there is none. Direction
+ *       codes run clockwise from 1 for {@code up} to 6 for {@code upleft}; a tie in distance goes to the
+ *       lower code, which is what taking the minimum gives.
+ *   <li>{@code nearby dir}: the distance to the first minion along {@code dir}, positive for an opponent
+ *       and negative for an ally, 0 if the line reaches the edge first.
+ * </ul>
+ * Queries take an {@code ignore} cell that is treated as empty, so a minion that has moved in its head
+ * during a turn (see {@link TurnScheduler}) does not see itself where it started. They are answered by
+ * the board's {@link HexBitboard}; the {@code walk*} methods answer them by walking the hexes instead,
+ * as a reference.
+ *
+ * <p>Commands: {@code move} costs the owner 1 and steps into an adjacent empty hex; {@code shoot dir e}
+ * costs {@code e + 1} and takes {@code e} hit points from whatever stands in the adjacent hex, removing it
+ * at 0. A command the owner cannot pay for, or that leaves the board, does nothing.
+ */
+public final class HexBoard {
+
+    public static final int EMPTY = -1;
+
+    /** Direction codes of {@link StrategyParser.Direction} values, by ordinal. */
+    static final int[] CODE = new int[6];
+
+    static {
+        CODE[StrategyParser.Direction.UP.ordinal()] = 1;
+        CODE[StrategyParser.Direction.UPRIGHT.ordinal()] = 2;
+        CODE[StrategyParser.Direction.DOWNRIGHT.ordinal()] = 3;
+        CODE[StrategyParser.Direction.DOWN.ordinal()] = 4;
+        CODE[StrategyParser.Direction.DOWNLEFT.ordinal()] = 5;
+        CODE[StrategyParser.Direction.UPLEFT.ordinal()] = 6;
+    }
+
+    private static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+
+    private final int rows, cols;
+    private final int[] neighbors; // cell * 6 + direction ordinal -> cell, or EMPTY off the board
+    private final int[] occupant;  // cell -> minion, or EMPTY
+    private final long[] budget;   // by player
+    private final HexBitboard bits;
+
+    private int[] cellOf = new int[16]; // by minion; EMPTY once removed
+    private int[] ownerOf = new int[16];
+    private long[] hp = new long[16];
+    private int minions;
+
+    public HexBoard(int rows, int cols, int players, long startingBudget) {
+        if (rows <= 0 || cols <= 0 || players <= 0) throw new IllegalArgumentException("Board and player counts must be positive");
+        this.rows = rows;
+        this.cols = cols;
+        this.neighbors = new int[rows * cols * 6];
+        this.occupant = new int[rows * cols];
+        this.budget = new long[players];
+        Arrays.fill(occupant, EMPTY);
+        Arrays.fill(budget, startingBudget);
+        for (int cell = 0; cell < rows * cols; cell++) {
+            for (StrategyParser.Direction d : DIRECTIONS) neighbors[cell * 6 + d.ordinal()] = step(cell, d);
+        }
+        this.bits = new HexBitboard(rows, cols, players, neighbors);
+    }
+
+    private HexBoard(HexBoard other) {
+        rows = other.rows;
+        cols = other.cols;
+        neighbors = other.neighbors; // never changes
+        occupant = other.occupant.clone();
+        budget = other.budget.clone();
+        bits = other.bits.copy();
+        cellOf = other.cellOf.clone();
+        ownerOf = other.ownerOf.clone();
+        hp = other.hp.clone();
+        minions = other.minions;
+    }
+
+    public HexBoard copy() { return new HexBoard(this); }
+
+    public int rows() { return rows; }
+
+    public int cols() { return cols; }
+
+    public int cells() { return rows * cols; }
+
+    public int cell(int row, int col) {
+        if (row < 0 || row >= rows || col < 0 || col >= cols) throw new IndexOutOfBoundsException("No hex at " + row + "," + col);
+        return col * rows + row;
+    }
+
+    public int row(int cell) { return cell % rows; }
+
+    public int col(int cell) { return cell / rows; }
+
+    /** The hex next to {@code cell} in direction {@code dir}, or {@link #EMPTY} off the edge. */
+    public int neighbor(int cell, StrategyParser.Direction dir) {
+        return neighbors[cell * 6 + dir.ordinal()];
+    }
+
+    private int step(int cell, StrategyParser.Direction dir) {
+        int r = row(cell), c = col(cell);
+        boolean odd = (c & 1) == 1; // odd columns sit half a hex lower
+        switch (dir) {
+            case UP -> r--;
+            case DOWN -> r++;
+            case UPLEFT -> { c--; if (!odd) r--; }
+            case UPRIGHT -> { c++; if (!odd) r--; }
+            case DOWNLEFT -> { c--; if (odd) r++; }
+            case DOWNRIGHT -> { c++; if (odd) r++; }
+        }
+        return r < 0 || r >= rows || c < 0 || c >= cols ? EMPTY : c * rows + r;
+    }
+
+    // ------------------------------------------------------------------ minions and players
+
+    public int spawn(int owner, int row, int col, long hitPoints) {
+        int cell = cell(row, col);
+        if (owner < 0 || owner >= budget.length) throw new IllegalArgumentException("No player " + owner);
+        if (occupant[cell] != EMPTY) throw new IllegalStateException("Hex " + row + "," + col + " is occupied");
+        if (minions == cellOf.length) {
+            cellOf = Arrays.copyOf(cellOf, minions * 2);
+            ownerOf = Arrays.copyOf(ownerOf, minions * 2);
+            hp = Arrays.copyOf(hp, minions * 2);
+        }
+        int id = minions++;
+        cellOf[id] = cell;
+        ownerOf[id] = owner;
+        hp[id] = hitPoints;
+        occupant[cell] = id;
+        bits.place(cell, owner);
+        return id;
+    }
+
+    /** Removes every minion and sets every budget to {@code startingBudget}, as on a new board. */
+    public void reset(long startingBudget) {
+        Arrays.fill(occupant, EMPTY);
+        Arrays.fill(budget, startingBudget);
+        bits.clear();
+        minions = 0;
+    }
+
+    /** Minions spawned since the board was made or reset; ids run from 0 and are not reused until a reset. */
+    public int minionCount() { return minions; }
+
+    public boolean isAlive(int minion) { return cellOf[minion] != EMPTY; }
+
+    public int cellOf(int minion) { return cellOf[minion]; }
+
+    public int ownerOf(int minion) { return ownerOf[minion]; }
+
+    public long hp(int minion) { return hp[minion]; }
+
+    public int occupant(int cell) { return occupant[cell]; }
+
+    public int players() { return budget.length; }
+
+    /** The occupancy bitsets, for evaluators that query them directly. */
+    public HexBitboard bitboard() { return bits; }
+
+    public long budget(int player) { return budget[player]; }
+
+    // ------------------------------------------------------------------ queries
+
+    public long ally(int cell, int owner, int ignore) {
+        return bits.ally(cell, owner, ignore);
+    }
+
+    public long opponent(int cell, int owner, int ignore) {
+        return bits.opponent(cell, owner, ignore);
+    }
+
+    public long nearby(int cell, int owner, StrategyParser.Direction dir, int ignore) {
+        return bits.nearby(cell, owner, dir, ignore);
+    }
+
+    long walkAlly(int cell, int owner, int ignore) {
+        return walkClosest(cell, owner, ignore, true);
+    }
+
+    long walkOpponent(int cell, int owner, int ignore) {
+        return walkClosest(cell, owner, ignore, false);
+    }
+
+    long walkNearby(int cell, int owner, StrategyParser.Direction dir, int ignore) {
+        int distance = 0;
+        for (int at = neighbor(cell, dir); at != EMPTY; at = neighbor(at, dir)) {
+            distance++;
+            int m = occupant[at];
+            if (m != EMPTY && at != ignore) return ownerOf[m] == owner ? -distance : distance;
+        }
+        return 0;
+    }
+
+    private long walkClosest(int cell, int owner, int ignore, boolean friendly) {
+        long best = 0;
+        for (StrategyParser.Direction dir : DIRECTIONS) {
+            int distance = 0;
+            for (int at = neighbor(cell, dir); at != EMPTY; at = neighbor(at, dir)) {
+                distance++;
+                int m = occupant[at];
+                if (m != EMPTY && at != ignore && (ownerOf[m] == owner) == friendly) {
+                    long v = 10L * distance + CODE[dir.ordinal()];
+                    if (best == 0 || v < best) best = v;
+                    break;
+                }
+            }
+        }
+        return best;
+    }
+
+    // ------------------------------------------------------------------ commands
+
+    public boolean move(int minion, StrategyParser.Direction dir) {
+        int from = cellOf[minion];
+        if (from == EMPTY) return false;
+        int to = neighbor(from, dir);
+        int owner = ownerOf[minion];
+        if (to == EMPTY || occupant[to] != EMPTY || budget[owner] < 1) return false;
+        budget[owner] -= 1;
+        occupant[from] = EMPTY;
+        occupant[to] = minion;
+        cellOf[minion] = to;
+        bits.remove(from, owner);
+        bits.place(to, owner);
+        return true;
+    }
+
+    public boolean shoot(int minion, StrategyParser.Direction dir, long expenditure) {
+        int from = cellOf[minion];
+        if (from == EMPTY || expenditure < 0) return false;
+        int owner = ownerOf[minion];
+        if (expenditure >= budget[owner]) return false; // costs expenditure + 1
+        budget[owner] -= expenditure + 1;
+        int target = neighbor(from, dir);
+        if (target == EMPTY || occupant[target] == EMPTY) return true;
+        int victim = occupant[target];
+        hp[victim] -= expenditure;
+        if (hp[victim] <= 0) {
+            hp[victim] = 0;
+            occupant[target] = EMPTY;
+            cellOf[victim] = EMPTY;
+            bits.remove(target, ownerOf[victim]);
+        }
+        return true;
+    }
+
+    // ------------------------------------------------------------------ snapshots
+
+    /** Words {@link #save} writes: the minion count, the budgets, then a cell and owner word and an hp word per minion. */
+    int savedWords() { return 1 + budget.length + 2 * minions; }
+
+    /** Writes the minions and budgets at {@code out}'s position; the occupancy follows from them. */
+    void save(LongBuffer out) {
+        out.put(minions);
+        out.put(budget);
+        for (int m = 0; m < minions; m++) {
+            out.put((long) cellOf[m] << 32 | ownerOf[m]);
+            out.put(hp[m]);
+        }
+    }
+
+    /** Reads back what {@link #save} wrote, from {@code in}'s position, and rebuilds the occupancy. */
+    void load(LongBuffer in) {
+        int count = (int) in.get();
+        if (count > cellOf.length) {
+            cellOf = Arrays.copyOf(cellOf, count);
+            ownerOf = Arrays.copyOf(ownerOf, count);
+            hp = Arrays.copyOf(hp, count);
+        }
+        minions = count;
+        in.get(budget);
+        Arrays.fill(occupant, EMPTY);
+        bits.clear();
+        for (int m = 0; m < minions; m++) {
+            long word = in.get();
+            cellOf[m] = (int) (word >> 32);
+            ownerOf[m] = (int) word;
+            hp[m] = in.get();
+            if (cellOf[m] != EMPTY) {
+                occupant[cellOf[m]] = m;
+                bits.place(cellOf[m], ownerOf[m]);
+            }
+        }
+    }
+
+    /** Same hexes, minions and budgets. */
+    public boolean sameState(HexBoard other) {
+        return rows == other.rows && cols == other.cols && minions == other.minions
+                && Arrays.equals(occupant, other.occupant) && Arrays.equals(budget, other.budget)
+                && Arrays.equals(cellOf, 0, minions, other.cellOf, 0, minions)
+                && Arrays.equals(ownerOf, 0, minions, other.ownerOf, 0, minions)
+                && Arrays.equals(hp, 0, minions, other.hp, 0, minions);
+    }
+}
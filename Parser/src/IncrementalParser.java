@@ -0,0 +1,216 @@
+import java.util.*;
+
+/**
+ * Keeps a strategy parsed while it is being edited. The text is split into tiles, one per top-level
+ * statement: a tile runs from the statement's first token up to the next statement's first token, so
+ * the whitespace and comments after a statement belong to it (the first tile also owns any leading
+ * ones). An edit relexes and reparses only the tiles it touches, growing the region while its last
+ * token or comment would run into the next tile, and doubling it while the new text runs out before a
+ * statement is complete. Everything outside the region is kept, and inside it statements and blocks
+ * equal to the old ones are reused rather than replaced.
+ *
+ * <p>Top-level statements never absorb the start of the next one (only operators continue a statement,
+ * and no statement starts with one), so reparsing a region gives exactly what a full parse would: the
+ * same program, or the same {@link StrategyParser.ParseException}. An error before the region's end is
+ * one a full parse meets too, since it has read the same tokens by then, so it is reported at once. The
+ * failing region is then kept as one unparsed tile, and the next edit reparses it along with its own.
+ */
+public final class IncrementalParser {
+
+    private final StrategyParser.NodeFactory nodes;
+    private final StringBuilder text;
+    private final StrategyParser.TokenBuffer buf = new StrategyParser.TokenBuffer();
+
+    private int[] starts = new int[16];
+    private StrategyParser.Stmt[] stmts = new StrategyParser.Stmt[16]; // null for an unparsed tail
+    private int count;
+    private int broken = -1; // the unparsed tile, if any
+
+    private List<StrategyParser.Stmt> program;
+    private StrategyParser.ParseException error;
+    private int lastReparsed;
+
+    public IncrementalParser(String src) {
+        this(src, StrategyParser.NodeFactory.PLAIN);
+    }
+
+    public IncrementalParser(String src, StrategyParser.NodeFactory nodes) {
+        this.nodes = nodes;
+        this.text = new StringBuilder(src);
+        reparse(0, 0);
+    }
+
+    public String text() { return text.toString(); }
+
+    /** Whether the current text parses. */
+    public boolean isValid() { return error == null; }
+
+    /** The current program; throws the current error if the text does not parse. */
+    public List<StrategyParser.Stmt> program() {
+        if (error != null) throw error;
+        return program;
+    }
+
+    /** How many characters the last edit (or the initial parse) relexed and reparsed. */
+    public int lastReparsed() { return lastReparsed; }
+
+    /**
+     * Replaces {@code removed} characters at {@code offset} with {@code inserted} and returns the new
+     * program, which is always what {@link StrategyParser#parse(String)} gives for the new text.
+     */
+    public List<StrategyParser.Stmt> edit(int offset, int removed, String inserted) {
+        if (offset < 0 || removed < 0 || offset + removed > text.length()) {
+            throw new IndexOutOfBoundsException("Edit [" + offset + ", " + (offset + removed) + ") outside text of length " + text.length());
+        }
+        // tiles touching the closed range [offset, offset + removed]; a tile touches its successor's start
+        int a = 0, b = count;
+        if (count > 0) {
+            a = tileAt(offset);
+            if (a > 0 && starts[a] == offset) a--;
+            b = tileAt(offset + removed) + 1;
+            if (broken >= 0) {
+                a = Math.min(a, broken);
+                b = Math.max(b, broken + 1);
+            }
+        }
+        int delta = inserted.length() - removed;
+        for (int i = b; i < count; i++) starts[i] += delta;
+        text.replace(offset, offset + removed, inserted);
+        reparse(a, b);
+        return program();
+    }
+
+    /** Last tile starting at or before {@code pos}. */
+    private int tileAt(int pos) {
+        int lo = 0, hi = count - 1;
+        while (lo < hi) {
+            int mid = (lo + hi + 1) >>> 1;
+            if (starts[mid] <= pos) lo = mid;
+            else hi = mid - 1;
+        }
+        return lo;
+    }
+
+    /**
+     * Reparses tiles {@code [a, b)}, widening to the right until the region stands on its own. An error
+     * at the region's end may only mean the region is too short, so it doubles; growing one tile at a
+     * time would reparse an unclosed <code>{</code> near the top once per tile below it.
+     */
+    private void reparse(int a, int b) {
+        int from = a == 0 ? 0 : starts[a];
+        while (true) {
+            int to = b == count ? text.length() : starts[b];
+            if (b < count && !cleanBoundary(from, to)) {
+                b++;
+                continue;
+            }
+            lastReparsed = to - from;
+            List<StrategyParser.Stmt> fresh = new ArrayList<>();
+            List<Integer> freshStarts = new ArrayList<>();
+            try {
+                StrategyParser.Lexer.lexInto(text.substring(from, to), from, buf);
+                StrategyParser.Parser parser = new StrategyParser.Parser(buf, nodes);
+                while (!parser.atEnd()) {
+                    freshStarts.add(parser.position());
+                    fresh.add(parser.parseNextStatement());
+                }
+            } catch (StrategyParser.ParseException e) {
+                if (b < count && e.pos() >= to) {
+                    b = (int) Math.min(count, b + Math.max(1L, b - a));
+                    continue;
+                }
+                splice(a, b, Collections.singletonList(null), List.of(from));
+                broken = a;
+                fail(e);
+                return;
+            } finally {
+                buf.reset("");
+            }
+            splice(a, b, align(fresh, Arrays.asList(stmts).subList(a, b)), freshStarts);
+            broken = -1;
+            if (count == 0) {
+                fail(new StrategyParser.ParseException("Expected at least one statement", "", text.length()));
+                return;
+            }
+            error = null;
+            program = List.copyOf(Arrays.asList(stmts).subList(0, count));
+            return;
+        }
+    }
+
+    private void fail(StrategyParser.ParseException e) {
+        error = e;
+        program = null;
+    }
+
+    /**
+     * Whether lexing {@code [from, to)} on its own ends where lexing the whole text would: not inside a
+     * comment, and not in the middle of an identifier that continues at {@code to}.
+     */
+    private boolean cleanBoundary(int from, int to) {
+        if (to <= from) return true;
+        if (Character.isLetterOrDigit(text.charAt(to - 1)) && Character.isLetterOrDigit(text.charAt(to))) return false;
+        for (int i = to - 1; i >= from; i--) {
+            char c = text.charAt(i);
+            if (c == '\n') return true;
+            if (c == '#') return false;
+        }
+        return true;
+    }
+
+    private void splice(int a, int b, List<StrategyParser.Stmt> fresh, List<Integer> freshStarts) {
+        int newCount = count - (b - a) + fresh.size();
+        if (newCount > stmts.length) {
+            int cap = Math.max(newCount, stmts.length * 2);
+            starts = Arrays.copyOf(starts, cap);
+            stmts = Arrays.copyOf(stmts, cap);
+        }
+        System.arraycopy(starts, b, starts, a + fresh.size(), count - b);
+        System.arraycopy(stmts, b, stmts, a + fresh.size(), count - b);
+        for (int i = 0; i < fresh.size(); i++) {
+            starts[a + i] = freshStarts.get(i);
+            stmts[a + i] = fresh.get(i);
+        }
+        for (int i = newCount; i < count; i++) stmts[i] = null;
+        count = newCount;
+        if (count > 0) starts[0] = 0;
+    }
+
+    /** {@code fresh}, with every statement that equals its old counterpart replaced by the old object. */
+    private List<StrategyParser.Stmt> align(List<StrategyParser.Stmt> fresh, List<StrategyParser.Stmt> old) {
+        int n = fresh.size(), m = old.size();
+        int prefix = 0;
+        while (prefix < n && prefix < m && Objects.equals(fresh.get(prefix), old.get(prefix))) prefix++;
+        int suffix = 0;
+        while (suffix < n - prefix && suffix < m - prefix
+                && Objects.equals(fresh.get(n - 1 - suffix), old.get(m - 1 - suffix))) suffix++;
+
+        List<StrategyParser.Stmt> out = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            if (i < prefix) out.add(old.get(i));
+            else if (i >= n - suffix) out.add(old.get(m - (n - i)));
+            else if (i < m - suffix && old.get(i) != null) out.add(reuse(fresh.get(i), old.get(i)));
+            else out.add(fresh.get(i));
+        }
+        return out;
+    }
+
+    private StrategyParser.Stmt reuse(StrategyParser.Stmt fresh, StrategyParser.Stmt old) {
+        if (fresh.equals(old)) return old;
+        if (fresh instanceof StrategyParser.Stmt.Block fb && old instanceof StrategyParser.Stmt.Block ob) {
+            return nodes.block(align(fb.statements(), ob.statements()));
+        }
+        if (fresh instanceof StrategyParser.Stmt.If fi && old instanceof StrategyParser.Stmt.If oi) {
+            return nodes.ifElse(reuse(fi.cond(), oi.cond()),
+                    reuse(fi.thenBranch(), oi.thenBranch()), reuse(fi.elseBranch(), oi.elseBranch()));
+        }
+        if (fresh instanceof StrategyParser.Stmt.While fw && old instanceof StrategyParser.Stmt.While ow) {
+            return nodes.whileLoop(reuse(fw.cond(), ow.cond()), reuse(fw.body(), ow.body()));
+        }
+        return fresh;
+    }
+
+    private static StrategyParser.Expr reuse(StrategyParser.Expr fresh, StrategyParser.Expr old) {
+        return fresh.equals(old) ? old : fresh;
+    }
+}
@@ -0,0 +1,153 @@
+import java.util.*;
+
+public class IncrementalTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private static final String[] SNIPPETS = {
+            " ", "\n", "x", "y1", "7", "+", "-", "*", "^", "=", "(", ")", "{", "}", "#", "done ", "move up ",
+            "shoot down 3 ", "if (a) then b = 1 else c = 2 ", "while (x) { x = x - 1 } ", "nearby left", "then", "else",
+    };
+
+    public static void main(String[] args) {
+        System.out.println("=== IncrementalParser ===");
+
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+            sb.append("v").append(i).append(" = v").append(i).append(" + ").append(i).append(" # step ").append(i).append('\n');
+            if (i % 100 == 0) sb.append("while (v").append(i).append(") { move up v").append(i).append(" = 0 }\n");
+        }
+        String big = sb.toString();
+        IncrementalParser editor = new IncrementalParser(big);
+        List<StrategyParser.Stmt> before = editor.program();
+
+        int at = big.indexOf("v1000 = v1000 + 1000") + "v1000 = v1000 + ".length();
+        List<StrategyParser.Stmt> after = editor.edit(at, 4, "42");
+        check("edit matches a full reparse", after.equals(StrategyParser.parse(editor.text())));
+        check("cost tracks the edit, not the file", editor.lastReparsed() < 100);
+        int same = 0;
+        for (int i = 0; i < before.size(); i++) if (before.get(i) == after.get(i)) same++;
+        check("untouched statements are the same objects", same == before.size() - 1);
+
+        at = editor.text().indexOf("{ move up v1500");
+        after = editor.edit(at + 2, 7, "done");
+        StrategyParser.Stmt loop = after.stream().filter(s -> s instanceof StrategyParser.Stmt.While w
+                && w.cond().equals(new StrategyParser.Expr.Var("v1500"))).findFirst().orElseThrow();
+        StrategyParser.Stmt oldLoop = before.stream().filter(s -> s instanceof StrategyParser.Stmt.While w
+                && w.cond().equals(new StrategyParser.Expr.Var("v1500"))).findFirst().orElseThrow();
+        List<StrategyParser.Stmt> body = ((StrategyParser.Stmt.Block) ((StrategyParser.Stmt.While) loop).body()).statements();
+        List<StrategyParser.Stmt> oldBody = ((StrategyParser.Stmt.Block) ((StrategyParser.Stmt.While) oldLoop).body()).statements();
+        check("unchanged parts of an edited block are reused", body.get(1) == oldBody.get(1)
+                && ((StrategyParser.Stmt.While) loop).cond() == ((StrategyParser.Stmt.While) oldLoop).cond());
+
+        boolean threw = false;
+        try {
+            editor.edit(at, 1, "");
+        } catch (StrategyParser.ParseException e) {
+            threw = true;
+        }
+        check("broken edit throws like a full parse", threw && !editor.isValid() && sameOutcome(editor, editor.text()));
+        editor.edit(at, 0, "{");
+        check("repairing the text recovers", editor.isValid() && editor.program().equals(StrategyParser.parse(editor.text())));
+
+        check("edit at the very end", sameAfter(new IncrementalParser("x = 1"), 5, 0, "2 y = 3"));
+        check("edit joining two statements", sameAfter(new IncrementalParser("x = 1\ny = 2"), 5, 0, " + "));
+        check("comment swallowing the next statement", sameAfter(new IncrementalParser("x = 1 y = 2"), 5, 0, " #"));
+        check("identifier merging across statements", sameAfter(new IncrementalParser("x = a b = 2"), 6, 1, ""));
+        check("deleting everything", sameAfter(new IncrementalParser("x = 1 y = 2"), 0, 11, "  "));
+
+        Random random = new Random(11);
+        boolean fuzzAgrees = true;
+        for (int round = 0; round < 20 && fuzzAgrees; round++) {
+            IncrementalParser fuzz = new IncrementalParser("a = 1 if (a) then move up else { b = a * 2 done }\nwhile (b) b = b - 1 # tail\nshoot up 5");
+            for (int step = 0; step < 200 && fuzzAgrees; step++) {
+                String t = fuzz.text();
+                int offset = random.nextInt(t.length() + 1);
+                int removed = Math.min(random.nextInt(4), t.length() - offset);
+                String inserted = random.nextInt(3) == 0 ? "" : SNIPPETS[random.nextInt(SNIPPETS.length)];
+                String removedText = t.substring(offset, offset + removed);
+                try {
+                    fuzz.edit(offset, removed, inserted);
+                } catch (StrategyParser.ParseException e) {
+                    // mostly undo breaking edits, so the fuzz also spends time in valid states
+                    if (random.nextInt(10) < 8) sameAfter(fuzz, offset, inserted.length(), removedText);
+                }
+                fuzzAgrees = sameOutcome(fuzz, fuzz.text());
+                if (!fuzzAgrees) System.out.println("  diverged on: " + fuzz.text().replace("\n", "\\n"));
+            }
+        }
+        check("random edits always equal a full reparse", fuzzAgrees);
+
+        checkUnbalancedEditsStayCheap();
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some incremental parsing tests failed. See output above.");
+        }
+        System.out.println("✅ All incremental parsing tests passed!");
+    }
+
+    /**
+     * Text that stays broken while it is typed must not cost a reparse per tile: an unclosed brace at
+     * the top, and an operator left dangling, on a 4,000-statement document, against a full parse.
+     */
+    private static void checkUnbalancedEditsStayCheap() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 4000; i++) sb.append("v").append(i).append(" = v").append(i).append(" * 3 + ").append(i).append('\n');
+        String doc = sb.toString();
+        IncrementalParser editor = new IncrementalParser(doc);
+        int dangling = doc.indexOf('\n', doc.indexOf("v20 ="));
+        long full = Long.MAX_VALUE;
+        long[] best = {Long.MAX_VALUE, Long.MAX_VALUE};
+        boolean same = true;
+        for (int round = 0; round < 10; round++) {
+            long start = System.nanoTime();
+            StrategyParser.parse(doc);
+            full = Math.min(full, System.nanoTime() - start);
+            String[] inserts = {"{ ", " +"};
+            int[] offsets = {0, dangling};
+            for (int e = 0; e < 2; e++) {
+                start = System.nanoTime();
+                same &= sameAfter(editor, offsets[e], 0, inserts[e]) && !editor.isValid();
+                long took = System.nanoTime() - start;
+                same &= sameAfter(editor, offsets[e], inserts[e].length(), "") && editor.isValid();
+                best[e] = Math.min(best[e], took);
+            }
+        }
+        long worst = Math.max(best[0], best[1]);
+        check("unbalanced edits cost about a full parse (" + worst / 1_000_000 + " ms vs " + full / 1_000_000 + " ms)",
+                same && worst < 10 * full + 20_000_000);
+    }
+
+    private static boolean sameAfter(IncrementalParser p, int offset, int removed, String inserted) {
+        try {
+            p.edit(offset, removed, inserted);
+        } catch (StrategyParser.ParseException ignored) {
+            // compared below
+        }
+        return sameOutcome(p, p.text());
+    }
+
+    /** Same program, or the same error message, as a full parse of {@code src}. */
+    private static boolean sameOutcome(IncrementalParser p, String src) {
+        String expectedError = null;
+        List<StrategyParser.Stmt> expected = null;
+        try {
+            expected = StrategyParser.parse(src);
+        } catch (StrategyParser.ParseException e) {
+            expectedError = e.getMessage();
+        }
+        try {
+            return p.program().equals(expected);
+        } catch (StrategyParser.ParseException e) {
+            return e.getMessage().equals(expectedError);
+        }
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
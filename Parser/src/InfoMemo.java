@@ -0,0 +1,83 @@
+import java.util.Arrays;
+
+/**
+ * One minion's answers to {@code ally}, {@code opponent} and {@code nearby <dir>} for the current turn:
+ * eight {@code long} slots and a validity mask, so a strategy polling the same info in a loop pays for
+ * the board query once.
+ *
+ * <p>Clear it when the turn starts. Between clears, the board a strategy sees changes only through its
+ * own moves (see {@link TurnScheduler}), and {@link #moved} handles those precisely: after a step in
+ * direction {@code d}, whatever {@code nearby d} saw is one hex closer and whatever {@code nearby} the
+ * opposite way saw is one hex farther, so those two are adjusted in place; the other four directions and
+ * {@code ally} / {@code opponent} are dropped.
+ */
+public final class InfoMemo {
+
+    /** Slots 0 to 5 are {@code nearby} by direction ordinal. */
+    public static final int ALLY = 6, OPPONENT = 7;
+
+    private static final int[] OPPOSITE = new int[6];
+    private static final int[] KIND = new int[8]; // slot -> InfoKind ordinal
+
+    static {
+        pair(StrategyParser.Direction.UP, StrategyParser.Direction.DOWN);
+        pair(StrategyParser.Direction.UPLEFT, StrategyParser.Direction.DOWNRIGHT);
+        pair(StrategyParser.Direction.UPRIGHT, StrategyParser.Direction.DOWNLEFT);
+        Arrays.fill(KIND, StrategyParser.InfoKind.NEARBY.ordinal());
+        KIND[ALLY] = StrategyParser.InfoKind.ALLY.ordinal();
+        KIND[OPPONENT] = StrategyParser.InfoKind.OPPONENT.ordinal();
+    }
+
+    private static void pair(StrategyParser.Direction a, StrategyParser.Direction b) {
+        OPPOSITE[a.ordinal()] = b.ordinal();
+        OPPOSITE[b.ordinal()] = a.ordinal();
+    }
+
+    private final long[] values = new long[8];
+    private int valid;
+    private final long[] hits = new long[3];   // by InfoKind ordinal
+    private final long[] misses = new long[3];
+
+    /** Whether {@code slot} holds an answer, counting a hit or a miss. */
+    public boolean has(int slot) {
+        if ((valid & 1 << slot) != 0) {
+            hits[KIND[slot]]++;
+            return true;
+        }
+        misses[KIND[slot]]++;
+        return false;
+    }
+
+    public long get(int slot) { return values[slot]; }
+
+    /** Stores and returns {@code value}. */
+    public long put(int slot, long value) {
+        values[slot] = value;
+        valid |= 1 << slot;
+        return value;
+    }
+
+    /** Call after the minion actually stepped one hex in {@code dir}. */
+    public void moved(StrategyParser.Direction dir) {
+        int ahead = dir.ordinal(), behind = OPPOSITE[ahead];
+        int keep = valid & (1 << ahead | 1 << behind);
+        values[ahead] = toward(values[ahead]);  // never 1 away: the move would have been blocked
+        values[behind] = away(values[behind]);
+        valid = keep;
+    }
+
+    private static long toward(long v) { return v > 0 ? v - 1 : v < 0 ? v + 1 : 0; }
+
+    private static long away(long v) { return v > 0 ? v + 1 : v < 0 ? v - 1 : 0; }
+
+    public void clear() { valid = 0; }
+
+    public long hits(StrategyParser.InfoKind kind) { return hits[kind.ordinal()]; }
+
+    public long misses(StrategyParser.InfoKind kind) { return misses[kind.ordinal()]; }
+
+    public void resetCounters() {
+        Arrays.fill(hits, 0);
+        Arrays.fill(misses, 0);
+    }
+}
@@ -0,0 +1,267 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Plays many whole games between a fixed pool of strategies, headless, on a bounded pool of worker
+ * threads. Strategies come as {@link StrategyCache} entries, so their runs are tagged in
+ * {@link StrategyMetrics} with their sources' hashes; each is resolved, lowered and metered once per
+ * entry and shared by every worker and every runner given that entry. Each worker
+ * keeps one {@link HexBoard}, one sequential {@link TurnScheduler} and the {@link TurnScheduler.Player}s
+ * it has needed, and resets them between games.
+ *
+ * <p>Game {@code g} of a run pits strategy {@code g % n} against strategy {@code (g / n) % n}, so every
+ * {@code n * n} games cover each ordered pairing once. Starting hexes come from the game's own seed,
+ * derived from the run's seed and {@code g} alone, so no result depends on which worker played it
+ * and {@link #replay} plays any game again. Results are handed to the consumer one at a time, in game
+ * order, by the calling thread; at most {@code window} finished games wait to be handed over, however
+ * long the run.
+ */
+public final class MatchRunner implements AutoCloseable {
+
+    /**
+     * How a game is played.
+     *
+     * @param minions        minions each side starts with
+     * @param hitPoints      each minion's starting hit points
+     * @param startingBudget each side's budget for commands over the whole game (see {@link HexBoard})
+     * @param budgetPerTurn  what each minion's strategy may spend per turn (see {@link StrategyMeter})
+     * @param maxTurns       after this many turns the side with more hit points left wins, or it is a draw
+     */
+    public record Options(int rows, int cols, int minions, long hitPoints, long startingBudget, long budgetPerTurn, int maxTurns) {
+        public static final Options DEFAULT = new Options(9, 9, 6, 20, 2000, 200, 100);
+
+        public Options {
+            if (rows <= 0 || cols <= 0 || minions <= 0 || hitPoints <= 0 || maxTurns <= 0) {
+                throw new IllegalArgumentException("Sizes must be positive");
+            }
+            if (2L * minions > (long) rows * cols) throw new IllegalArgumentException("Too many minions for the board");
+            if (startingBudget < 0 || budgetPerTurn < 0) throw new IllegalArgumentException("Budgets must not be negative");
+        }
+    }
+
+    /**
+     * One finished game; the survivors are each side's living minions at the end.
+     *
+     * @param winner 0 if {@code first} won, 1 if {@code second} did, -1 for a draw
+     */
+    public record Result(long game, long seed, int first, int second, int winner, int turns,
+                         int firstSurvivors, int secondSurvivors) {
+        /** The winning strategy's index, or -1 for a draw. */
+        public int winningStrategy() {
+            return winner < 0 ? -1 : winner == 0 ? first : second;
+        }
+    }
+
+    /** Totals for one {@link #run}; {@code wins} is indexed by strategy. */
+    public record Summary(long games, long draws, long[] wins, long turns, long nanos) {
+        public double gamesPerSecond() {
+            return nanos == 0 ? 0 : games * 1e9 / nanos;
+        }
+    }
+
+    private final List<StrategyMeter.Program> programs;
+    private final long[] hashes;
+    private final Options options;
+    private final int threads;
+    private final int window;
+    private final ExecutorService pool;
+
+    /**
+     * @param strategies cached sources, for instance from {@link StrategyCache#get}
+     * @param threads    worker threads
+     * @throws StrategyParser.ParseException if one of the sources does not parse
+     */
+    public MatchRunner(List<StrategyCache.Entry> strategies, Options options, int threads) {
+        this(strategies, options, threads, 64 * threads);
+    }
+
+    /** @param window finished games that may wait to be handed to the consumer */
+    public MatchRunner(List<StrategyCache.Entry> strategies, Options options, int threads, int window) {
+        if (strategies.isEmpty()) throw new IllegalArgumentException("No strategies");
+        if (threads <= 0 || window <= 0) throw new IllegalArgumentException("Threads and window must be positive");
+        List<StrategyMeter.Program> programs = new ArrayList<>(strategies.size());
+        this.hashes = new long[strategies.size()];
+        for (int i = 0; i < strategies.size(); i++) {
+            StrategyCache.Entry entry = strategies.get(i);
+            programs.add(entry.derived(StrategyMeter.Program.class,
+                    p -> StrategyMeter.meter(StrategyIR.lower(StrategyResolver.resolve(p)))));
+            hashes[i] = entry.key().a(); // StrategyMetrics.hash of the source
+        }
+        this.programs = List.copyOf(programs);
+        this.options = options;
+        this.threads = threads;
+        this.window = window;
+        this.pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "match-runner");
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    public int strategies() { return programs.size(); }
+
+    /** The seed game {@code game} of a run seeded with {@code seed} plays with. */
+    public static long gameSeed(long seed, long game) {
+        return new SplittableRandom(seed ^ game * 0x9E3779B97F4A7C15L).nextLong();
+    }
+
+    /**
+     * Plays games {@code [0, games)} and hands each result to {@code results} as soon as every earlier
+     * game's has been. Blocks until all are played.
+     */
+    public Summary run(long games, long seed, Consumer<Result> results) {
+        if (games < 0) throw new IllegalArgumentException("Game count must not be negative");
+        long start = System.nanoTime();
+        Result[] ready = new Result[window];
+        Object lock = new Object();
+        AtomicLong next = new AtomicLong();
+        long[] emitted = {0};           // guarded by lock
+        Throwable[] failure = {null};   // guarded by lock
+        int n = programs.size();
+
+        List<Future<?>> workers = new ArrayList<>(threads);
+        for (int w = 0; w < threads; w++) {
+            workers.add(pool.submit(() -> {
+                try (Worker worker = new Worker()) {
+                    for (long g; (g = next.getAndIncrement()) < games; ) {
+                        synchronized (lock) {
+                            while (g >= emitted[0] + window && failure[0] == null) lock.wait();
+                            if (failure[0] != null) return null;
+                        }
+                        Result r = worker.play(g, gameSeed(seed, g), (int) (g % n), (int) (g / n % n));
+                        synchronized (lock) {
+                            ready[(int) (g % window)] = r;
+                            lock.notifyAll();
+                        }
+                    }
+                } catch (Throwable t) {
+                    synchronized (lock) {
+                        if (failure[0] == null) failure[0] = t;
+                        lock.notifyAll();
+                    }
+                }
+                return null;
+            }));
+        }
+
+        long draws = 0, turns = 0;
+        long[] wins = new long[n];
+        try {
+            for (long g = 0; g < games; g++) {
+                Result r;
+                synchronized (lock) {
+                    int slot = (int) (g % window);
+                    while ((r = ready[slot]) == null) {
+                        if (failure[0] != null) throw new IllegalStateException("Game failed", failure[0]);
+                        lock.wait();
+                    }
+                    ready[slot] = null;
+                    emitted[0]++;
+                    lock.notifyAll();
+                }
+                if (r.winningStrategy() < 0) draws++;
+                else wins[r.winningStrategy()]++;
+                turns += r.turns();
+                results.accept(r);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted", e);
+        } finally {
+            synchronized (lock) {
+                if (failure[0] == null && emitted[0] < games) failure[0] = new IllegalStateException("Run abandoned");
+                lock.notifyAll();
+            }
+            for (Future<?> f : workers) {
+                try {
+                    f.get();
+                } catch (Exception ignored) {
+                    // a worker's own failure was reported above
+                }
+            }
+        }
+        return new Summary(games, draws, wins, turns, System.nanoTime() - start);
+    }
+
+    /** Plays {@code result}'s game again, from its seed alone. */
+    public Result replay(Result result) {
+        try (Worker worker = new Worker()) {
+            return worker.play(result.game(), result.seed(), result.first(), result.second());
+        }
+    }
+
+    @Override
+    public void close() {
+        pool.shutdownNow();
+    }
+
+    /** A board, a scheduler and players, reused from game to game on one thread. */
+    private final class Worker implements AutoCloseable {
+        private final HexBoard board = new HexBoard(options.rows(), options.cols(), 2, options.startingBudget());
+        private final TurnScheduler scheduler = new TurnScheduler(1);
+        private final TurnScheduler.Player[][] players = new TurnScheduler.Player[2][programs.size()]; // by seat, strategy
+        private final TurnScheduler.Player[] seated = new TurnScheduler.Player[2];
+        private final int[] alive = new int[2];
+        private final long[] hp = new long[2];
+
+        Result play(long game, long seed, int first, int second) {
+            SplittableRandom random = new SplittableRandom(seed);
+            board.reset(options.startingBudget());
+            seated[0] = player(0, first);
+            seated[1] = player(1, second);
+            for (int i = 0; i < options.minions(); i++) {
+                for (int side = 0; side < 2; side++) {
+                    int cell;
+                    do {
+                        cell = random.nextInt(board.cells());
+                    } while (board.occupant(cell) != HexBoard.EMPTY);
+                    board.spawn(side, board.row(cell), board.col(cell), options.hitPoints());
+                }
+            }
+            int turns = 0;
+            while (turns < options.maxTurns() && count()) {
+                scheduler.playTurn(board, seated);
+                turns++;
+            }
+            count();
+            int winner;
+            if (alive[0] > 0 != alive[1] > 0) winner = alive[0] > 0 ? 0 : 1;
+            else winner = hp[0] == hp[1] ? -1 : hp[0] > hp[1] ? 0 : 1;
+            return new Result(game, seed, first, second, winner, turns, alive[0], alive[1]);
+        }
+
+        /** Tallies each side; whether both still have minions. */
+        private boolean count() {
+            alive[0] = alive[1] = 0;
+            hp[0] = hp[1] = 0;
+            for (int m = 0; m < board.minionCount(); m++) {
+                if (!board.isAlive(m)) continue;
+                alive[board.ownerOf(m)]++;
+                hp[board.ownerOf(m)] += board.hp(m);
+            }
+            return alive[0] > 0 && alive[1] > 0;
+        }
+
+        private TurnScheduler.Player player(int seat, int strategy) {
+            TurnScheduler.Player p = players[seat][strategy];
+            if (p == null) {
+                p = new TurnScheduler.Player(programs.get(strategy), options.budgetPerTurn(), hashes[strategy]);
+                players[seat][strategy] = p;
+            } else {
+                p.reset();
+            }
+            return p;
+        }
+
+        @Override
+        public void close() {
+            scheduler.close();
+        }
+    }
+}
@@ -0,0 +1,211 @@
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.util.Arrays;
+import java.util.Objects;
+
+/**
+ * Checkpoints of a match kept off the Java heap, for replays, rollback and what-if simulation. A
+ * snapshot holds everything a turn depends on: the {@link HexBoard} (minions, hit points, budgets),
+ * each {@link TurnScheduler.Player}'s globals, and each living minion's {@link StrategyResolver.Frame}
+ * (its variables, and where a run that ran out of budget will resume, with its operand stack). The
+ * per-turn meter is refilled at every turn, so it needs no saving.
+ *
+ * <p>State is laid out as a flat image of 64-bit words. Snapshots go one after another into a direct
+ * buffer arena: every {@code keyframeInterval}-th one as the whole image, the others as the runs of
+ * words that changed since the one before. Capturing writes the image into a second direct buffer,
+ * compares and appends; restoring copies a keyframe back and applies the runs after it, all as bulk
+ * buffer copies. Neither allocates on the heap, except to grow when new minions lengthen the image or
+ * the snapshot index fills up.
+ */
+public final class MatchSnapshots {
+
+    private static final long KEY = 1L << 62, DELTA = 2L << 62, LENGTH = (1L << 62) - 1; // record header: tag | image words
+    private static final long SUSPENDED = 1L << 63; // frame header: SUSPENDED | resume pc | resume sp
+
+    private final HexBoard board;
+    private final TurnScheduler.Player[] players;
+    private final int keyframeInterval;
+    private final LongBuffer arena;
+    private LongBuffer image = words(1024);   // the state as of the last capture or restore
+    private LongBuffer scratch = words(1024);
+    private int imageWords = -1;
+    private int end;                          // arena words in use
+    private int[] offsets = new int[256];     // by snapshot id: where its record starts
+    private int[] keyframes = new int[256];   // by snapshot id: the keyframe it builds on
+    private int count;
+    private boolean keyframeDue = true;
+
+    /** @param players as for {@link TurnScheduler#playTurn}; the same array, players and board are saved and restored */
+    public MatchSnapshots(HexBoard board, TurnScheduler.Player[] players, int arenaBytes) {
+        this(board, players, arenaBytes, 16);
+    }
+
+    public MatchSnapshots(HexBoard board, TurnScheduler.Player[] players, int arenaBytes, int keyframeInterval) {
+        if (arenaBytes < 8) throw new IllegalArgumentException("Arena too small");
+        if (keyframeInterval <= 0) throw new IllegalArgumentException("Keyframe interval must be positive");
+        this.board = board;
+        this.players = players;
+        this.keyframeInterval = keyframeInterval;
+        this.arena = ByteBuffer.allocateDirect(arenaBytes).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    /** Snapshots taken; ids run from 0. */
+    public int size() { return count; }
+
+    public long bytesUsed() { return 8L * end; }
+
+    public long capacityBytes() { return 8L * arena.capacity(); }
+
+    /**
+     * Saves the current state and returns its id.
+     *
+     * @throws IllegalStateException if the arena cannot hold it
+     */
+    public int capture() {
+        int n = imageWords();
+        if (scratch.capacity() < n) scratch = words(n * 2);
+        scratch.clear();
+        write(scratch);
+        if (arena.capacity() - end < 2 + 2L * n) throw new IllegalStateException("Snapshot arena is full after " + count + " snapshots");
+        if (count == offsets.length) {
+            offsets = Arrays.copyOf(offsets, count * 2);
+            keyframes = Arrays.copyOf(keyframes, count * 2);
+        }
+        offsets[count] = end;
+        if (keyframeDue || n != imageWords || count - keyframes[count - 1] >= keyframeInterval) {
+            arena.put(end++, KEY | n);
+            arena.put(end, scratch, 0, n);
+            end += n;
+            keyframes[count] = count;
+        } else {
+            arena.put(end++, DELTA | n);
+            int runsAt = end++, runs = 0;
+            for (int i = 0; i < n; ) {
+                if (scratch.get(i) == image.get(i)) {
+                    i++;
+                    continue;
+                }
+                int start = i;
+                while (i < n && scratch.get(i) != image.get(i)) i++;
+                arena.put(end++, (long) start << 32 | (i - start));
+                arena.put(end, scratch, start, i - start);
+                end += i - start;
+                runs++;
+            }
+            arena.put(runsAt, runs);
+            keyframes[count] = keyframes[count - 1];
+        }
+        LongBuffer swap = image;
+        image = scratch;
+        scratch = swap;
+        imageWords = n;
+        keyframeDue = false;
+        return count++;
+    }
+
+    /**
+     * Puts the board, globals and frames back as snapshot {@code id} had them. Later snapshots are
+     * kept, so this can jump anywhere; the next capture starts a new keyframe.
+     */
+    public void restore(int id) {
+        Objects.checkIndex(id, count);
+        int key = keyframes[id], at = offsets[key];
+        int n = (int) (arena.get(at) & LENGTH);
+        if (image.capacity() < n) image = words(n * 2);
+        image.put(0, arena, at + 1, n);
+        for (int s = key + 1; s <= id; s++) {
+            int p = offsets[s] + 1;
+            int runs = (int) arena.get(p++);
+            for (int r = 0; r < runs; r++) {
+                long run = arena.get(p++);
+                int start = (int) (run >>> 32), length = (int) run;
+                image.put(start, arena, p, length);
+                p += length;
+            }
+        }
+        imageWords = n;
+        image.clear();
+        read(image);
+        keyframeDue = true;
+    }
+
+    /** Restores snapshot {@code id} and forgets every later one, so the match can go on from there. */
+    public void rollback(int id) {
+        restore(id);
+        end = id + 1 < count ? offsets[id + 1] : end;
+        count = id + 1;
+        keyframeDue = false; // the image is snapshot id again, so the next capture can be a delta
+    }
+
+    // ------------------------------------------------------------------ the image
+
+    private static LongBuffer words(int n) {
+        return ByteBuffer.allocateDirect(8 * n).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private TurnScheduler.Player playerOf(int minion) {
+        int owner = board.ownerOf(minion);
+        return owner < players.length ? players[owner] : null;
+    }
+
+    private static int frameWords(TurnScheduler.Player p) {
+        StrategyResolver.ResolvedProgram program = p.frames().program();
+        return 1 + program.maxStack() + program.localCount();
+    }
+
+    private int imageWords() {
+        int n = board.savedWords();
+        for (TurnScheduler.Player p : players) if (p != null) n += p.globals().length;
+        for (int m = 0; m < board.minionCount(); m++) {
+            TurnScheduler.Player p = playerOf(m);
+            if (p != null) n += frameWords(p);
+        }
+        return n;
+    }
+
+    /** The board, then each player's globals, then a frame for each minion whose player is playing. */
+    private void write(LongBuffer out) {
+        board.save(out);
+        for (TurnScheduler.Player p : players) if (p != null) out.put(p.globals());
+        for (int m = 0; m < board.minionCount(); m++) {
+            TurnScheduler.Player p = playerOf(m);
+            if (p == null) continue;
+            StrategyResolver.Frame f = board.isAlive(m) ? p.frames().existing(m) : null;
+            if (f == null) {
+                for (int i = frameWords(p); i > 0; i--) out.put(0L);
+                continue;
+            }
+            long[] stack = f.stack();
+            out.put((f.suspended ? SUSPENDED : 0) | (long) f.resumePc << 32 | f.resumeSp);
+            out.put(stack, 0, f.resumeSp);
+            for (int i = f.resumeSp; i < stack.length; i++) out.put(0L); // stale slots would only bloat deltas
+            out.put(f.locals());
+        }
+    }
+
+    private void read(LongBuffer in) {
+        int before = board.minionCount();
+        board.load(in);
+        for (TurnScheduler.Player p : players) if (p != null) in.get(p.globals());
+        for (int m = 0; m < board.minionCount(); m++) {
+            TurnScheduler.Player p = playerOf(m);
+            if (p == null) continue;
+            if (!board.isAlive(m)) {
+                p.frames().release(m);
+                in.position(in.position() + frameWords(p));
+                continue;
+            }
+            StrategyResolver.Frame f = p.frames().frame(m);
+            long header = in.get();
+            f.suspended = (header & SUSPENDED) != 0;
+            f.resumePc = (int) ((header & ~SUSPENDED) >>> 32);
+            f.resumeSp = (int) header;
+            in.get(f.stack());
+            in.get(f.locals());
+        }
+        for (int m = board.minionCount(); m < before; m++) { // spawned after the snapshot
+            for (TurnScheduler.Player p : players) if (p != null) p.frames().release(m);
+        }
+    }
+}
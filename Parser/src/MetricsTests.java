@@ -0,0 +1,149 @@
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+
+public class MetricsTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    public static void main(String[] args) throws IOException {
+        System.out.println("=== StrategyMetrics ===");
+
+        String src = "x = 1 + 2\nmove up\n";
+        long hash = StrategyMetrics.hash(src);
+        check("hash matches the cache key", hash == StrategyCache.Key.of(src).a());
+
+        StrategyParser.parse(src);
+        StrategyParser.Lexer.lex(src);
+        check("nothing is recorded while disabled", StrategyMetrics.all().isEmpty());
+
+        Recording recording = new Recording();
+        recording.enable("kombat.Lex");
+        recording.enable("kombat.Parse");
+        recording.enable("kombat.Execution");
+        recording.start();
+        StrategyMetrics.enable();
+        List<StrategyParser.Stmt> measured;
+        String bad = "x = (1 + 2\nmove up";
+        // laid out as written, not as the printer would: parse and run must still agree on the hash
+        String strategy = "a = ally   # one of each\nb = nearby up + nearby up\nif (opponent) then shoot down 1 else move down\nG = 1";
+        TurnScheduler.Player player;
+        HexBoard board = new HexBoard(6, 6, 2, 1000);
+        try {
+            measured = StrategyParser.parse(src);
+            StrategyParser.Lexer.lex(src);
+            try {
+                StrategyParser.parse(bad);
+            } catch (StrategyParser.ParseException expected) {
+                // recorded below
+            }
+
+            StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse(strategy),
+                    StrategyResolver.Globals.of("G"));
+            player = new TurnScheduler.Player(StrategyMeter.meter(StrategyIR.lower(resolved)), 100, StrategyMetrics.hash(strategy));
+            board.spawn(0, 1, 1, 10);
+            board.spawn(0, 1, 3, 10);
+            board.spawn(1, 4, 1, 10);
+            try (TurnScheduler scheduler = new TurnScheduler(2)) {
+                scheduler.playTurn(board, new TurnScheduler.Player[]{player, null});
+                scheduler.playTurn(board, new TurnScheduler.Player[]{player, null});
+            }
+        } finally {
+            StrategyMetrics.disable();
+            recording.stop();
+        }
+
+        check("instrumented parse gives the same tree", measured.equals(StrategyParser.parse(src)));
+        StrategyMetrics.Stats stats = StrategyMetrics.stats(hash);
+        check("lexes and parses are counted", stats != null && stats.lexes.sum() == 2 && stats.parses.sum() == 1
+                && stats.failures.sum() == 0 && stats.tokens.sum() == 2 * StrategyParser.Lexer.lex(src).size());
+        check("node count and depth", stats != null && stats.nodes.sum() == 5 && stats.depth.max() == 3);
+        check("parse time is recorded", stats != null && stats.parseNanos.count() == 1 && stats.lexNanos.count() == 2);
+        StrategyMetrics.Stats badStats = StrategyMetrics.stats(StrategyMetrics.hash(bad));
+        check("failures are counted", badStats != null && badStats.parses.sum() == 1 && badStats.failures.sum() == 1
+                && badStats.nodes.count() == 0);
+
+        StrategyMetrics.Stats run = StrategyMetrics.stats(player.strategyHash());
+        check("executions are counted per minion", run != null && run.executions.sum() == 4);
+        check("every info query is counted", run != null && run.infoQueries.sum() == 4 * 4);
+        check("moves and shoots are counted, globals are not", run != null && run.commands.sum() == 4);
+        check("a parse and a run of one source share stats", run != null && run == StrategyMetrics.stats(StrategyMetrics.hash(strategy))
+                && run.parses.sum() == 1 && !StrategyPrinter.print(StrategyParser.parse(strategy)).equals(strategy));
+        check("steps are the budget charged", run != null && run.steps.sum() > 0 && run.stepsPerExecution.count() == 4
+                && run.stepsPerExecution.max() <= 100);
+
+        Path file = Files.createTempFile("metrics", ".jfr");
+        try {
+            recording.dump(file);
+            List<RecordedEvent> events = RecordingFile.readAllEvents(file);
+            List<RecordedEvent> lexes = named(events, "kombat.Lex"), parses = named(events, "kombat.Parse"),
+                    runs = named(events, "kombat.Execution");
+            check("lex events carry the hash", lexes.stream().filter(e -> e.getLong("strategyHash") == hash).count() == 2
+                    && lexes.stream().anyMatch(e -> e.getInt("characters") == src.length()));
+            check("parse events carry shape", parses.stream().anyMatch(e -> e.getLong("strategyHash") == hash
+                    && e.getInt("nodes") == 5 && e.getInt("maxDepth") == 3 && e.getInt("errorPosition") == -1));
+            check("failed parse carries the error position", parses.stream().anyMatch(e -> e.getLong("strategyHash") == StrategyMetrics.hash(bad)
+                    && e.getInt("errorPosition") == bad.indexOf("move") && e.getString("error") != null));
+            check("execution events carry counts", runs.size() == 4 && runs.stream().allMatch(e ->
+                    e.getLong("strategyHash") == player.strategyHash() && e.getLong("infoQueries") == 4 && e.getLong("commands") == 1));
+        } finally {
+            recording.close();
+            Files.deleteIfExists(file);
+        }
+
+        StrategyMetrics.reset();
+        StrategyParser.parse(src);
+        check("disabled again records nothing", StrategyMetrics.all().isEmpty());
+
+        StrategyMetrics.enable();
+        StrategyMetrics.capacity(3);
+        for (int i = 0; i < 5; i++) StrategyParser.parse("x = " + i);
+        StrategyParser.parse("x = 0");
+        boolean bounded = StrategyMetrics.all().size() == 3 && StrategyMetrics.overflow().parses.sum() == 2
+                && StrategyMetrics.stats(StrategyMetrics.hash("x = 0")).parses.sum() == 2
+                && StrategyMetrics.stats(StrategyMetrics.hash("x = 4")) == null;
+        StrategyMetrics.reset();
+        check("a full registry records newcomers as overflow", bounded && StrategyMetrics.overflow().parses.sum() == 0);
+        StrategyMetrics.capacity(StrategyMetrics.DEFAULT_CAPACITY);
+        StrategyMetrics.disable();
+
+        StringBuilder deep = new StringBuilder("x = ");
+        for (int i = 0; i < 900; i++) deep.append('(');
+        deep.append('1');
+        for (int i = 0; i < 900; i++) deep.append(')');
+        int[] shape = StrategyMetrics.shape(StrategyParser.parse(deep.toString()));
+        check("shape of a deep tree", shape[0] == 902 && shape[1] == 902);
+
+        StrategyMetrics.Histogram h = new StrategyMetrics.Histogram();
+        for (long v : new long[]{0, 1, 2, 3, 4, 100, 1000}) h.record(v);
+        check("histogram buckets by highest bit", h.bucket(0) == 1 && h.bucket(1) == 1 && h.bucket(2) == 2
+                && h.bucket(3) == 1 && h.bucket(7) == 1 && h.bucket(10) == 1);
+        check("histogram totals", h.count() == 7 && h.sum() == 1110 && h.max() == 1000);
+        check("histogram quantiles are bucket tops", h.quantile(0) == 0 && h.quantile(0.5) == 3
+                && h.quantile(0.8) == 127 && h.quantile(1) == 1000);
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some metrics tests failed. See output above.");
+        }
+        System.out.println("✅ All metrics tests passed!");
+    }
+
+    private static List<RecordedEvent> named(List<RecordedEvent> events, String name) {
+        List<RecordedEvent> out = new ArrayList<>();
+        for (RecordedEvent e : events) if (e.getEventType().getName().equals(name)) out.add(e);
+        return out;
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
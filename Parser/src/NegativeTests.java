@@ -1,5 +1,6 @@
 
 
+import java.io.StringReader;
 import java.util.List;
 
 public class NegativeTests {
@@ -48,6 +49,7 @@ public class NegativeTests {
                 // F) unexpected characters / separators not in grammar
                 new Case("x=@", "unexpected character"),
                 new Case("x=1;", "semicolon not supported"),
+                new Case("x=9223372036854775808", "number literal overflows long"),
         };
 
         for (Case c : shouldFail) {
@@ -59,6 +61,7 @@ public class NegativeTests {
                 new Case("then1=3", "identifier that starts with keyword prefix (then1) should pass"),
                 new Case("if1=2", "identifier that starts with keyword prefix (if1) should pass"),
                 new Case("x=2^3^2^1", "right-assoc power chain should pass"),
+                new Case("x=9223372036854775807", "largest long literal should pass"),
                 new Case("{ x=1 while(1) { if(1) then done else move up } }", "nested block/while/if should pass"),
         };
 
@@ -66,6 +69,24 @@ public class NegativeTests {
             expectPass(c.src(), c.name());
         }
 
+        // nesting: a ParseException past the depth cap, never a StackOverflowError below it
+        expectFail("x=" + "(".repeat(50_000) + "1" + ")".repeat(50_000), "50k nested parens exceed default depth");
+        expectFail("x=2" + "^2".repeat(50_000), "50k-long power chain exceeds default depth");
+        expectFail("if(1) then ".repeat(50_000) + "done" + " else done".repeat(50_000), "50k nested ifs exceed default depth");
+        expectDeep("x=" + "(".repeat(50_000) + "1" + ")".repeat(50_000), "50k nested parens under a raised cap", 50_000);
+        expectDeep("x=2" + "^2".repeat(50_000), "50k-long power chain under a raised cap", 50_000);
+        expectDeep("x=" + "1+(".repeat(50_000) + "1" + ")".repeat(50_000), "50k parens behind a + under a raised cap", 50_000);
+        expectDeep("{".repeat(50_000) + "done" + "}".repeat(50_000), "50k nested blocks under a raised cap", 50_000);
+        expectDeep("while(1) ".repeat(50_000) + "move up", "50k nested whiles under a raised cap", 50_000);
+        expectDeepStatic("{".repeat(5_000) + "done" + "}".repeat(5_000), "static entry points take a raised cap", 5_000);
+
+        // validation mode: one pass reports every error, nothing is thrown
+        expectErrors("x = = 1 move upp shoot up done", "three errors in one pass", 3);
+        expectErrors("{ x = 1 + } while (1) { move } y = 2", "errors inside blocks", 2);
+        expectErrors("x = @ 1 # ok\ny = 99999999999999999999", "lexer errors are collected", 2);
+        expectErrors("} } move up", "stray braces are skipped", 1);
+        expectErrors("if (x then move up else done shoot", "resync after a broken if", 3);
+
         System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
         if (failed > 0) {
             throw new AssertionError("Some negative tests failed. See output above.");
@@ -76,7 +97,7 @@ public class NegativeTests {
     private static void expectFail(String src, String name) {
         System.out.printf("EXPECT_FAIL: %-40s ... ", name);
         try {
-            List<StrategyParser.Stmt> ast = StrategyParser.parse(src);
+            List<StrategyParser.Stmt> ast = parseBothWays(src);
             // ถ้ามาถึงตรงนี้ แปลว่าไม่พัง ทั้งที่ควรพัง
             System.out.println("✗ SHOULD HAVE FAILED (parsed: " + ast + ")");
             failed++;
@@ -92,7 +113,7 @@ public class NegativeTests {
     private static void expectPass(String src, String name) {
         System.out.printf("PASS:        %-40s ... ", name);
         try {
-            StrategyParser.parse(src);
+            parseBothWays(src);
             System.out.println("✓");
             passed++;
         } catch (Exception e) {
@@ -100,4 +121,125 @@ public class NegativeTests {
             failed++;
         }
     }
+
+    /** Parses with a cap just above {@code depth} and checks how deep the first statement's tree goes. */
+    private static void expectDeep(String src, String name, int depth) {
+        System.out.printf("DEEP:        %-40s ... ", name);
+        try {
+            List<StrategyParser.Stmt> ast = new StrategyParser.Parser(StrategyParser.Lexer.lexInto(src, new StrategyParser.TokenBuffer()))
+                    .maxDepth(depth + 1).parseStrategy();
+            int got = depthOf(ast.get(0));
+            if (got == depth) {
+                System.out.println("✓");
+                passed++;
+            } else {
+                System.out.println("✗ DEPTH " + got);
+                failed++;
+            }
+        } catch (RuntimeException | StackOverflowError e) {
+            System.out.println("✗ FAILED: " + e);
+            failed++;
+        }
+    }
+
+    /** Every static entry point refuses {@code src} by default and accepts it under a cap one above its depth. */
+    private static void expectDeepStatic(String src, String name, int depth) {
+        System.out.printf("DEEP:        %-40s ... ", name);
+        try {
+            boolean refused = !StrategyParser.validate(src).isValid();
+            try {
+                StrategyParser.parse(new StringReader(src));
+                refused = false;
+            } catch (StrategyParser.ParseException e) {
+                refused &= e.getMessage().contains("Nesting");
+            }
+            List<List<StrategyParser.Stmt>> asts = List.of(
+                    StrategyParser.parse(src, StrategyParser.NodeFactory.PLAIN, depth + 1),
+                    StrategyParser.parse(new StringReader(src), depth + 1),
+                    StrategyParser.validate(src, depth + 1).program(),
+                    new StrategyCache(1 << 20, 1, depth + 1).parse(src));
+            boolean same = refused;
+            for (List<StrategyParser.Stmt> ast : asts) same &= depthOf(ast.get(0)) == depth;
+            if (same) {
+                System.out.println("✓");
+                passed++;
+            } else {
+                System.out.println("✗ DEPTH");
+                failed++;
+            }
+        } catch (RuntimeException | StackOverflowError e) {
+            System.out.println("✗ FAILED: " + e);
+            failed++;
+        }
+    }
+
+    /** Nesting depth along the deepest-looking spine, walked without recursion. */
+    private static int depthOf(StrategyParser.Stmt stmt) {
+        int depth = 0;
+        Object node = stmt;
+        while (true) {
+            if (node instanceof StrategyParser.Stmt.Block b && !b.statements().isEmpty()) node = b.statements().get(0);
+            else if (node instanceof StrategyParser.Stmt.While w) node = w.body();
+            else if (node instanceof StrategyParser.Stmt.Assign a) { node = a.value(); continue; }
+            else if (node instanceof StrategyParser.Expr.Paren p) node = p.inner();
+            else if (node instanceof StrategyParser.Expr.Binary b && b.op().equals("^")) node = b.right();
+            else if (node instanceof StrategyParser.Expr.Binary b) { node = b.right(); continue; }
+            else return depth;
+            depth++;
+        }
+    }
+
+    private static void expectErrors(String src, String name, int count) {
+        System.out.printf("VALIDATE:    %-40s ... ", name);
+        StrategyParser.Validation v = StrategyParser.validate(src);
+        String firstError;
+        try {
+            StrategyParser.parse(src);
+            firstError = null;
+        } catch (StrategyParser.ParseException e) {
+            firstError = e.getMessage();
+        }
+        if (v.errors().size() == count && v.program() == null && v.errors().get(0).toString().equals(firstError)) {
+            System.out.println("✓");
+            passed++;
+        } else {
+            System.out.println("✗ GOT " + v.errors());
+            failed++;
+        }
+    }
+
+    /**
+     * Parses with the buffered and the streaming front end; they must agree on the AST or the error.
+     * Validation mode must agree too, reporting the thrown error first.
+     */
+    private static List<StrategyParser.Stmt> parseBothWays(String src) {
+        List<StrategyParser.Stmt> streamed = null;
+        StrategyParser.ParseException streamError = null;
+        try {
+            streamed = StrategyParser.parse(new StringReader(src));
+        } catch (StrategyParser.ParseException e) {
+            streamError = e;
+        }
+        StrategyParser.Validation validation = StrategyParser.validate(src);
+        List<StrategyParser.Stmt> ast;
+        try {
+            ast = StrategyParser.parse(src);
+        } catch (StrategyParser.ParseException e) {
+            if (streamError == null || !streamError.getMessage().equals(e.getMessage())) {
+                throw new IllegalStateException("streaming parser disagrees: " + (streamError == null ? streamed : streamError.getMessage()));
+            }
+            if (validation.isValid() || !validation.errors().get(0).toString().equals(e.getMessage())) {
+                throw new IllegalStateException("validation disagrees: " + validation.errors());
+            }
+            if (e.getStackTrace().length != 0) throw new IllegalStateException("ParseException captured a stack trace");
+            throw e;
+        }
+        if (streamError != null || !ast.equals(streamed)) {
+            throw new IllegalStateException("streaming parser disagrees: " + (streamError == null ? streamed : streamError.getMessage()));
+        }
+        if (!validation.isValid() || !ast.equals(validation.program())) {
+            throw new IllegalStateException("validation disagrees: " + validation.errors());
+        }
+        return ast;
+    }
 }
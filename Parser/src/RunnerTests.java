@@ -0,0 +1,107 @@
+import java.util.*;
+
+public class RunnerTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private static final List<String> SOURCES = List.of(
+            // hunter: shoots whatever is in line, otherwise closes in
+            """
+            if (nearby up) then shoot up 5 else if (nearby down) then shoot down 5
+            else if (nearby upleft) then shoot upleft 5 else if (nearby upright) then shoot upright 5
+            else if (nearby downleft) then shoot downleft 5 else if (nearby downright) then shoot downright 5
+            else {
+              o = opponent
+              d = o % 10
+              if (d - 5) then move downleft else if (d - 4) then move down else if (d - 3) then move downright
+              else if (d - 2) then move upright else if (d - 1) then move up else if (d) then move upleft else move up
+            }
+            """,
+            // sitter: never does anything
+            "done",
+            // drifter: wanders, and shoots straight down sometimes
+            """
+            t = t + 1
+            if (t % 3) then move upright else if (t % 2) then move downleft else shoot down 2
+            """);
+
+    public static void main(String[] args) {
+        System.out.println("=== MatchRunner ===");
+
+        StrategyCache cache = new StrategyCache(1 << 16);
+        List<StrategyCache.Entry> strategies = new ArrayList<>();
+        for (String src : SOURCES) strategies.add(cache.get(src));
+        MatchRunner.Options options = new MatchRunner.Options(8, 8, 4, 12, 1500, 150, 60);
+
+        List<MatchRunner.Result> sequential = new ArrayList<>(), parallel = new ArrayList<>();
+        MatchRunner.Summary one, many;
+        try (MatchRunner runner = new MatchRunner(strategies, options, 1)) {
+            one = runner.run(90, 42, sequential::add);
+        }
+        try (MatchRunner runner = new MatchRunner(strategies, options, 4, 3)) {
+            many = runner.run(90, 42, parallel::add);
+
+            boolean ordered = true;
+            for (int i = 0; i < parallel.size(); i++) ordered &= parallel.get(i).game() == i;
+            check("results arrive in game order", parallel.size() == 90 && ordered);
+            check("same seed, same games, any thread count", sequential.equals(parallel));
+            check("pairings cover every ordered pair", parallel.get(0).first() == 0 && parallel.get(0).second() == 0
+                    && parallel.get(5).first() == 2 && parallel.get(5).second() == 1 && parallel.get(8).first() == 2
+                    && parallel.get(8).second() == 2);
+            check("summaries agree", Arrays.equals(one.wins(), many.wins()) && one.draws() == many.draws()
+                    && one.turns() == many.turns());
+            check("wins and draws add up", many.draws() + Arrays.stream(many.wins()).sum() == 90 && many.gamesPerSecond() > 0);
+
+            boolean replays = true;
+            for (int g : new int[]{0, 17, 44, 89}) replays &= runner.replay(parallel.get(g)).equals(parallel.get(g));
+            check("any game replays from its seed", replays);
+            check("game seeds depend on seed and index only", parallel.get(7).seed() == MatchRunner.gameSeed(42, 7));
+
+            List<MatchRunner.Result> other = new ArrayList<>();
+            runner.run(90, 43, other::add);
+            check("another seed plays other games", !other.equals(parallel));
+
+            check("the hunter beats the sitter", many.wins()[0] > many.wins()[1]);
+            check("games end early once a side is wiped out", parallel.stream().anyMatch(r -> r.turns() < options.maxTurns()
+                    && (r.firstSurvivors() == 0) != (r.secondSurvivors() == 0)));
+
+            boolean threw = false;
+            try {
+                runner.run(50, 1, r -> {
+                    if (r.game() == 20) throw new IllegalArgumentException("sink failed");
+                });
+            } catch (IllegalArgumentException e) {
+                threw = true;
+            }
+            List<MatchRunner.Result> after = new ArrayList<>();
+            runner.run(9, 42, after::add);
+            check("a failing consumer stops the run cleanly", threw && after.equals(parallel.subList(0, 9)));
+        }
+
+        // runs are tagged with the hash of the source as written, which the printer would lay out otherwise
+        StrategyMetrics.reset();
+        StrategyMetrics.enable();
+        try (MatchRunner runner = new MatchRunner(strategies, options, 2)) {
+            runner.run(9, 5, r -> {});
+        } finally {
+            StrategyMetrics.disable();
+        }
+        StrategyMetrics.Stats hunter = StrategyMetrics.stats(StrategyMetrics.hash(SOURCES.get(0)));
+        check("metrics are keyed by the source's hash", !StrategyPrinter.print(strategies.get(0).program()).equals(SOURCES.get(0))
+                && hunter != null && hunter.executions.sum() > 0 && StrategyMetrics.all().size() == SOURCES.size());
+        StrategyMetrics.reset();
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some runner tests failed. See output above.");
+        }
+        System.out.println("✅ All runner tests passed!");
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
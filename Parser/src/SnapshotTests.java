@@ -0,0 +1,265 @@
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+public class SnapshotTests {
+
+    private static int passed = 0;
+    private static int failed = 0;
+
+    private static final StrategyResolver.Globals GLOBALS = StrategyResolver.Globals.of("Shared");
+
+    /** Long enough to run out of budget mid-loop, so frames carry resume points and stacks. */
+    private static final String GRINDER = """
+            k = 0
+            while (8 - k) {
+              s = s * 3 + nearby up + (opponent - ally * 2) * (k + 1)
+              if (k % 3) then move up else if (s % 2) then shoot downleft 1 else move downright
+              k = k + 1
+            }
+            Shared = Shared + s % 7
+            """;
+    private static final String WANDERER = """
+            t = t + 1
+            if (nearby down) then shoot down 2
+            else if (t % 2) then move upleft else move downright
+            w = w + opponent
+            """;
+
+    /** What a reference copy of the match looks like after one turn. */
+    private record State(HexBoard board, List<long[]> globals, Map<Integer, long[]> frames) {}
+
+    public static void main(String[] args) {
+        System.out.println("=== MatchSnapshots ===");
+
+        checkRestoreEveryTurn(16);
+        checkRestoreEveryTurn(1);
+        checkReplayIsDeterministic();
+        checkRollbackContinues();
+        checkDeltasAreSmall();
+        checkSpawnsChangeTheLayout();
+        checkArenaFull();
+        checkNoGarbage();
+
+        System.out.printf("%nSummary: %d passed, %d failed%n", passed, failed);
+        if (failed > 0) {
+            throw new AssertionError("Some snapshot tests failed. See output above.");
+        }
+        System.out.println("✅ All snapshot tests passed!");
+    }
+
+    private static void checkRestoreEveryTurn(int keyframeInterval) {
+        HexBoard board = board(7);
+        TurnScheduler.Player[] players = players();
+        MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 20, keyframeInterval);
+        List<State> states = new ArrayList<>();
+        boolean suspended = false;
+        try (TurnScheduler scheduler = new TurnScheduler(4)) {
+            for (int turn = 0; turn < 40; turn++) {
+                inOrder(snapshots.capture() == turn);
+                states.add(state(board, players));
+                suspended |= scheduler.playTurn(board, players).suspended() > 0;
+            }
+        }
+        boolean same = true;
+        Random random = new Random(23);
+        for (int i = 0; i < 80; i++) {
+            int id = random.nextInt(states.size());
+            snapshots.restore(id);
+            same &= matches(states.get(id), board, players);
+        }
+        check("restore any turn, keyframe every " + keyframeInterval, same && suspended);
+    }
+
+    /** Restoring turn 10 and playing on again ends exactly where the first run did. */
+    private static void checkReplayIsDeterministic() {
+        HexBoard board = board(8);
+        TurnScheduler.Player[] players = players();
+        MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 20);
+        State end;
+        boolean same;
+        try (TurnScheduler scheduler = new TurnScheduler(3)) {
+            for (int turn = 0; turn < 30; turn++) {
+                snapshots.capture();
+                scheduler.playTurn(board, players);
+            }
+            end = state(board, players);
+            snapshots.restore(10);
+            for (int turn = 10; turn < 30; turn++) scheduler.playTurn(board, players);
+            same = matches(end, board, players);
+        }
+        check("replay from a snapshot is deterministic", same);
+    }
+
+    private static void checkRollbackContinues() {
+        HexBoard board = board(9);
+        TurnScheduler.Player[] players = players();
+        MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 20, 4);
+        List<State> states = new ArrayList<>();
+        try (TurnScheduler scheduler = new TurnScheduler(2)) {
+            for (int turn = 0; turn < 12; turn++) {
+                snapshots.capture();
+                states.add(state(board, players));
+                scheduler.playTurn(board, players);
+            }
+            long used = snapshots.bytesUsed();
+            snapshots.rollback(6);
+            check("rollback drops later snapshots", snapshots.size() == 7 && snapshots.bytesUsed() < used);
+            // what-if: a different line of play from turn 6, with player 1 sitting out
+            states.subList(7, states.size()).clear();
+            TurnScheduler.Player[] onlyFirst = {players[0], null};
+            for (int turn = 7; turn < 15; turn++) {
+                scheduler.playTurn(board, onlyFirst);
+                inOrder(snapshots.capture() == turn);
+                states.add(state(board, players));
+            }
+        }
+        boolean same = true;
+        for (int id = 0; id < states.size(); id++) {
+            snapshots.restore(id);
+            same &= matches(states.get(id), board, players);
+        }
+        check("captures after a rollback restore", same);
+    }
+
+    private static void checkDeltasAreSmall() {
+        long[] used = new long[2];
+        int[] intervals = {1, 32};
+        for (int i = 0; i < 2; i++) {
+            HexBoard board = board(10);
+            TurnScheduler.Player[] players = players();
+            MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 22, intervals[i]);
+            try (TurnScheduler scheduler = new TurnScheduler(2)) {
+                for (int turn = 0; turn < 64; turn++) {
+                    snapshots.capture();
+                    scheduler.playTurn(board, players);
+                }
+            }
+            used[i] = snapshots.bytesUsed();
+        }
+        check("deltas take less room than keyframes", used[1] * 2 < used[0]);
+    }
+
+    private static void checkSpawnsChangeTheLayout() {
+        HexBoard board = board(11);
+        TurnScheduler.Player[] players = players();
+        MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 20);
+        List<State> states = new ArrayList<>();
+        Random random = new Random(11);
+        try (TurnScheduler scheduler = new TurnScheduler(2)) {
+            for (int turn = 0; turn < 20; turn++) {
+                if (turn % 5 == 4) {
+                    int r, c;
+                    do {
+                        r = random.nextInt(board.rows());
+                        c = random.nextInt(board.cols());
+                    } while (board.occupant(board.cell(r, c)) != HexBoard.EMPTY);
+                    board.spawn(turn % 2, r, c, 12);
+                }
+                snapshots.capture();
+                states.add(state(board, players));
+                scheduler.playTurn(board, players);
+            }
+        }
+        boolean same = true;
+        for (int id : new int[]{19, 2, 14, 0, 9, 19}) {
+            snapshots.restore(id);
+            same &= matches(states.get(id), board, players);
+        }
+        check("snapshots span spawns", same);
+    }
+
+    private static void checkArenaFull() {
+        HexBoard board = board(12);
+        MatchSnapshots snapshots = new MatchSnapshots(board, players(), 4096);
+        boolean threw = false;
+        try {
+            for (int i = 0; i < 1000; i++) snapshots.capture();
+        } catch (IllegalStateException e) {
+            threw = snapshots.size() > 0;
+        }
+        check("a full arena refuses more snapshots", threw && snapshots.bytesUsed() <= snapshots.capacityBytes());
+    }
+
+    private static void checkNoGarbage() {
+        HexBoard board = board(13);
+        TurnScheduler.Player[] players = players();
+        MatchSnapshots snapshots = new MatchSnapshots(board, players, 1 << 24);
+        try (TurnScheduler scheduler = new TurnScheduler(2)) {
+            for (int turn = 0; turn < 5; turn++) scheduler.playTurn(board, players);
+        }
+        for (int i = 0; i < 200; i++) snapshots.capture(); // grow the index and warm up
+        snapshots.rollback(0);
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long tid = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(tid);
+        for (int i = 0; i < 150; i++) snapshots.capture();
+        for (int i = 0; i < 150; i++) snapshots.restore(i);
+        long allocated = threads.getThreadAllocatedBytes(tid) - before;
+        check("capture and restore allocate nothing (" + allocated + " B)", allocated < 1024);
+    }
+
+    // ------------------------------------------------------------------ helpers
+
+    private static HexBoard board(long seed) {
+        Random random = new Random(seed);
+        HexBoard board = new HexBoard(9, 9, 2, 3000);
+        while (board.minionCount() < 24) {
+            int r = random.nextInt(9), c = random.nextInt(9);
+            if (board.occupant(board.cell(r, c)) == HexBoard.EMPTY) board.spawn(random.nextInt(2), r, c, 2 + random.nextInt(12));
+        }
+        return board;
+    }
+
+    private static TurnScheduler.Player[] players() {
+        return new TurnScheduler.Player[]{player(GRINDER, 60), player(WANDERER, 200)};
+    }
+
+    private static TurnScheduler.Player player(String src, long budget) {
+        StrategyResolver.ResolvedProgram resolved = StrategyResolver.resolve(StrategyParser.parse(src), GLOBALS);
+        return new TurnScheduler.Player(StrategyMeter.meter(StrategyIR.lower(resolved)), budget, StrategyMetrics.hash(src));
+    }
+
+    private static State state(HexBoard board, TurnScheduler.Player[] players) {
+        List<long[]> globals = new ArrayList<>();
+        for (TurnScheduler.Player p : players) globals.add(p.globals().clone());
+        Map<Integer, long[]> frames = new HashMap<>();
+        for (int m = 0; m < board.minionCount(); m++) {
+            if (!board.isAlive(m)) continue;
+            StrategyResolver.Frame f = players[board.ownerOf(m)].frames().existing(m);
+            if (f == null) continue;
+            long[] saved = new long[3 + f.locals().length + f.resumeSp];
+            saved[0] = f.isSuspended() ? 1 : 0;
+            saved[1] = f.resumePc;
+            saved[2] = f.resumeSp;
+            System.arraycopy(f.locals(), 0, saved, 3, f.locals().length);
+            System.arraycopy(f.stack(), 0, saved, 3 + f.locals().length, f.resumeSp);
+            frames.put(m, saved);
+        }
+        return new State(board.copy(), globals, frames);
+    }
+
+    private static boolean matches(State expected, HexBoard board, TurnScheduler.Player[] players) {
+        if (!board.sameState(expected.board())) return false;
+        for (int p = 0; p < players.length; p++) if (!Arrays.equals(players[p].globals(), expected.globals().get(p))) return false;
+        State actual = state(board, players);
+        for (Map.Entry<Integer, long[]> e : expected.frames().entrySet()) {
+            long[] got = actual.frames().get(e.getKey());
+            if (got == null || !Arrays.equals(got, e.getValue())) return false;
+        }
+        // frames that did not exist at the snapshot come back empty
+        for (Map.Entry<Integer, long[]> e : actual.frames().entrySet()) {
+            if (!expected.frames().containsKey(e.getKey()) && Arrays.stream(e.getValue()).anyMatch(v -> v != 0)) return false;
+        }
+        return true;
+    }
+
+    private static void inOrder(boolean ok) {
+        if (!ok) check("snapshot ids run in order", false);
+    }
+
+    private static void check(String name, boolean ok) {
+        System.out.printf("%-50s ... %s%n", name, ok ? "✓" : "✗");
+        if (ok) passed++;
+        else failed++;
+    }
+}
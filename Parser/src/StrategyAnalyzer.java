@@ -0,0 +1,249 @@
+import java.util.*;
+
+/**
+ * A cost profile of a strategy, worked out from the tree without running it: its size, its loops and
+ * how deeply they nest, which loops can ever act, which variables may be read before anything assigned
+ * them, and what a run costs where it has no loops. Costs are in {@link StrategyMeter.CostTable} units
+ * for the tree lowered as given; since fused instructions cost what they replace, a bound is exact for
+ * the dearest path, not an estimate. {@link StrategyResolver#resolve} optimizes first, which can only
+ * make runs cheaper: the profile of the parsed tree bounds the resolved one too.
+ *
+ * <p>Profiles are meant to be cached with the tree: {@link #profile(StrategyCache.Entry)}. Uploads can be
+ * flagged by {@link Profile#spinningLoops()}, budgets sized by {@link Profile#budget(long)}, and
+ * strategies grouped for load balancing by {@link Profile#costClass()}.
+ */
+public final class StrategyAnalyzer {
+
+    /** A cost with no static bound: the region has a loop. */
+    public static final long UNBOUNDED = Long.MAX_VALUE;
+
+    /**
+     * One {@code while}.
+     *
+     * @param depth         1 for a loop not inside another loop
+     * @param acts          whether its body contains a {@code done}, {@code move} or {@code shoot}; if
+     *                      not, it can only stop through its condition, and it does nothing meanwhile
+     * @param iterationCost the condition, the body and the jump back, or {@link #UNBOUNDED} if the body
+     *                      has a loop of its own
+     */
+    public record Loop(StrategyParser.Stmt.While loop, int depth, boolean acts, long iterationCost) {}
+
+    /**
+     * @param nodes              statements and expressions
+     * @param loopDepth          deepest nesting of {@code while}s; 0 for a loop-free strategy
+     * @param loops              every loop, outer loops before the loops inside them
+     * @param readBeforeAssigned names some path reads before any assignment on that path, in order of first
+     *                           such read; on a minion's first run they read 0, later runs see what the last
+     *                           run left; a global read before the strategy writes it is listed too
+     * @param maxCost            the dearest run, or {@link #UNBOUNDED} if there is a loop
+     * @param costToFirstLoop    the dearest path through the top-level statements before the first one
+     *                           that contains a loop; {@link #maxCost} if there is none
+     */
+    public record Profile(int nodes, int loopDepth, List<Loop> loops, Set<String> readBeforeAssigned,
+                          long maxCost, long costToFirstLoop) {
+
+        public boolean bounded() { return maxCost != UNBOUNDED; }
+
+        /** Loops that cannot act; a strategy with one is likely to spend whole turns doing nothing. */
+        public List<Loop> spinningLoops() {
+            List<Loop> out = new ArrayList<>();
+            for (Loop l : loops) if (!l.acts()) out.add(l);
+            return out;
+        }
+
+        /** A per-minion budget: enough for any run of a loop-free strategy, never more than {@code cap}. */
+        public long budget(long cap) {
+            return Math.min(cap, maxCost);
+        }
+
+        /**
+         * Strategies of similar cost share a class: {@code 64 - numberOfLeadingZeros(maxCost)}, so each class
+         * spans a factor of two; unbounded strategies are all class 64 and loop-free ones below it.
+         */
+        public int costClass() {
+            return bounded() ? 64 - Long.numberOfLeadingZeros(maxCost) : 64;
+        }
+    }
+
+    private StrategyAnalyzer() {}
+
+    public static Profile analyze(List<StrategyParser.Stmt> program) {
+        return analyze(program, StrategyMeter.CostTable.DEFAULT);
+    }
+
+    public static Profile analyze(List<StrategyParser.Stmt> program, StrategyMeter.CostTable costs) {
+        Analysis a = new Analysis(costs);
+        Set<String> assigned = new HashSet<>();
+        long cost = 0, prefix = 0;
+        boolean looped = false;
+        for (StrategyParser.Stmt s : program) {
+            assigned = a.flow(s, assigned);
+            long c = a.cost(s);
+            cost = add(cost, c);
+            if (c == UNBOUNDED) looped = true;
+            if (!looped) prefix = cost;
+        }
+        a.walk(program, 0);
+        return new Profile(a.nodes, a.loopDepth, List.copyOf(a.loops), Collections.unmodifiableSet(a.unassignedReads), cost, prefix);
+    }
+
+    /** The profile of a cached source, computed once and kept on the entry. */
+    public static Profile profile(StrategyCache.Entry entry) {
+        return entry.derived(StrategyAnalyzer.class, StrategyAnalyzer::analyze);
+    }
+
+    private static long add(long a, long b) {
+        return a == UNBOUNDED || b == UNBOUNDED ? UNBOUNDED : a + b;
+    }
+
+    private static final class Analysis {
+        private final StrategyMeter.CostTable costs;
+        private final List<Loop> loops = new ArrayList<>();
+        private final Set<String> unassignedReads = new LinkedHashSet<>();
+        private int nodes, loopDepth;
+
+        Analysis(StrategyMeter.CostTable costs) {
+            this.costs = costs;
+        }
+
+        // ---------------------------------------------------------------- shape
+
+        /** Counts nodes and records loops; {@code depth} is how many loops enclose {@code stmts}. */
+        void walk(List<StrategyParser.Stmt> stmts, int depth) {
+            for (StrategyParser.Stmt s : stmts) walk(s, depth);
+        }
+
+        /** Returns whether {@code stmt} contains a {@code done}, {@code move} or {@code shoot}. */
+        boolean walk(StrategyParser.Stmt stmt, int depth) {
+            nodes++;
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                walk(a.value());
+                return false;
+            }
+            if (stmt instanceof StrategyParser.Stmt.Done || stmt instanceof StrategyParser.Stmt.Move) return true;
+            if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                walk(s.expenditure());
+                return true;
+            }
+            if (stmt instanceof StrategyParser.Stmt.Block b) {
+                boolean acts = false;
+                for (StrategyParser.Stmt s : b.statements()) acts |= walk(s, depth);
+                return acts;
+            }
+            if (stmt instanceof StrategyParser.Stmt.If i) {
+                walk(i.cond());
+                return walk(i.thenBranch(), depth) | walk(i.elseBranch(), depth);
+            }
+            if (stmt instanceof StrategyParser.Stmt.While w) {
+                loopDepth = Math.max(loopDepth, depth + 1);
+                int at = loops.size();
+                loops.add(null); // keep outer loops first
+                walk(w.cond());
+                boolean acts = walk(w.body(), depth + 1);
+                long iteration = add(add(cost(w.cond()), cost(w.body())), 2L * costs.branch());
+                loops.set(at, new Loop(w, depth + 1, acts, iteration));
+                return acts;
+            }
+            throw new IllegalStateException("Unknown statement: " + stmt);
+        }
+
+        void walk(StrategyParser.Expr expr) {
+            nodes++;
+            if (expr instanceof StrategyParser.Expr.Paren p) walk(p.inner());
+            else if (expr instanceof StrategyParser.Expr.Binary b) {
+                walk(b.left());
+                walk(b.right());
+            }
+        }
+
+        // ---------------------------------------------------------------- definite assignment
+
+        /**
+         * The names certainly assigned after {@code stmt}, given those certainly assigned before it;
+         * {@code null} stands for "every name", after a {@code done}. Reads of anything else are noted.
+         */
+        Set<String> flow(StrategyParser.Stmt stmt, Set<String> assigned) {
+            if (assigned == null) return null; // unreachable
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                reads(a.value(), assigned);
+                Set<String> out = new HashSet<>(assigned);
+                out.add(a.name());
+                return out;
+            }
+            if (stmt instanceof StrategyParser.Stmt.Done) return null;
+            if (stmt instanceof StrategyParser.Stmt.Move) return assigned;
+            if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                reads(s.expenditure(), assigned);
+                return assigned;
+            }
+            if (stmt instanceof StrategyParser.Stmt.Block b) {
+                for (StrategyParser.Stmt s : b.statements()) assigned = flow(s, assigned);
+                return assigned;
+            }
+            if (stmt instanceof StrategyParser.Stmt.If i) {
+                reads(i.cond(), assigned);
+                Set<String> then = flow(i.thenBranch(), assigned), otherwise = flow(i.elseBranch(), assigned);
+                if (then == null) return otherwise;
+                if (otherwise == null) return then;
+                Set<String> both = new HashSet<>(then);
+                both.retainAll(otherwise);
+                return both;
+            }
+            if (stmt instanceof StrategyParser.Stmt.While w) {
+                reads(w.cond(), assigned);
+                flow(w.body(), assigned); // later iterations only know more
+                return assigned;          // the body may not run at all
+            }
+            throw new IllegalStateException("Unknown statement: " + stmt);
+        }
+
+        private void reads(StrategyParser.Expr expr, Set<String> assigned) {
+            if (expr instanceof StrategyParser.Expr.Var v) {
+                if (!assigned.contains(v.name())) unassignedReads.add(v.name());
+            } else if (expr instanceof StrategyParser.Expr.Paren p) {
+                reads(p.inner(), assigned);
+            } else if (expr instanceof StrategyParser.Expr.Binary b) {
+                reads(b.left(), assigned);
+                reads(b.right(), assigned);
+            }
+        }
+
+        // ---------------------------------------------------------------- cost
+
+        /** The dearest way through {@code stmt}, lowered as {@link StrategyIR} lowers it. */
+        long cost(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) return cost(a.value()) + costs.variable();
+            if (stmt instanceof StrategyParser.Stmt.Done) return 0;
+            if (stmt instanceof StrategyParser.Stmt.Move) return costs.move();
+            if (stmt instanceof StrategyParser.Stmt.Shoot s) return cost(s.expenditure()) + costs.shoot();
+            if (stmt instanceof StrategyParser.Stmt.Block b) {
+                long sum = 0;
+                for (StrategyParser.Stmt s : b.statements()) sum = add(sum, cost(s));
+                return sum;
+            }
+            if (stmt instanceof StrategyParser.Stmt.If i) {
+                // the test and its jump, then either the then-branch and the jump over the else, or the else
+                long then = add(cost(i.thenBranch()), costs.branch()), otherwise = cost(i.elseBranch());
+                return add(cost(i.cond()) + costs.branch(), Math.max(then, otherwise));
+            }
+            if (stmt instanceof StrategyParser.Stmt.While) return UNBOUNDED;
+            throw new IllegalStateException("Unknown statement: " + stmt);
+        }
+
+        long cost(StrategyParser.Expr expr) {
+            if (expr instanceof StrategyParser.Expr.Num || expr instanceof StrategyParser.Expr.Var) return costs.variable();
+            if (expr instanceof StrategyParser.Expr.Paren p) return cost(p.inner());
+            if (expr instanceof StrategyParser.Expr.Binary b) {
+                return cost(b.left()) + cost(b.right()) + (b.op().equals("^") ? costs.power() : costs.arithmetic());
+            }
+            if (expr instanceof StrategyParser.Expr.Info i) {
+                return switch (i.kind()) {
+                    case ALLY -> costs.ally();
+                    case OPPONENT -> costs.opponent();
+                    case NEARBY -> costs.nearby();
+                };
+            }
+            throw new IllegalStateException("Unknown expression: " + expr);
+        }
+    }
+}
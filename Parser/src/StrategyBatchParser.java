@@ -0,0 +1,158 @@
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * Parses many sources at once on a dedicated {@link ForkJoinPool}. Every source gets its own
+ * {@link Outcome}; a source that fails to parse never aborts the rest of the batch.
+ *
+ * <p>{@link #parseAll} splits a known collection across the pool. {@link #parseStream} takes sources
+ * lazily and keeps at most {@code maxInFlight} of them queued or parsing, so a huge or endless input
+ * does not pile up in memory ahead of the workers.
+ */
+public final class StrategyBatchParser implements AutoCloseable {
+
+    /** Sources per leaf task when splitting a collection. */
+    private static final int LEAF_SIZE = 16;
+
+    /** The result for the source at {@code index}: either its program or the error it failed with. */
+    public record Outcome(int index, List<StrategyParser.Stmt> program, StrategyParser.ParseException error) {
+        public boolean isValid() { return error == null; }
+
+        /** The parsed program; throws the error for a source that does not parse. */
+        public List<StrategyParser.Stmt> programOrThrow() {
+            if (error != null) throw error;
+            return program;
+        }
+    }
+
+    private final ForkJoinPool pool;
+    private final Function<String, List<StrategyParser.Stmt>> parser;
+
+    /** A batch parser using every available core. */
+    public StrategyBatchParser() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public StrategyBatchParser(int parallelism) {
+        this(parallelism, StrategyParser::parse);
+    }
+
+    /**
+     * @param parser what to run per source, for instance {@code cache::parse} to share a {@link StrategyCache},
+     *               or {@code src -> StrategyParser.parse(src, NodeFactory.PLAIN, depth)} for another nesting cap
+     */
+    public StrategyBatchParser(int parallelism, Function<String, List<StrategyParser.Stmt>> parser) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        this.pool = new ForkJoinPool(parallelism);
+        this.parser = parser;
+    }
+
+    public int parallelism() { return pool.getParallelism(); }
+
+    /** Outcomes for {@code sources}, in the same order. */
+    public List<Outcome> parseAll(Collection<String> sources) {
+        String[] in = sources.toArray(new String[0]);
+        Outcome[] out = new Outcome[in.length];
+        pool.invoke(new Split(in, out, 0, in.length));
+        return Arrays.asList(out);
+    }
+
+    /**
+     * Parses {@code sources} as they are pulled, handing each outcome to {@code sink} as soon as it is
+     * ready. The sink is called one outcome at a time but in completion order; {@link Outcome#index()}
+     * gives the position in the input. Blocks until every source has been delivered and returns how
+     * many there were.
+     *
+     * @param maxInFlight how many sources may be pulled but not yet delivered
+     */
+    public int parseStream(Stream<String> sources, int maxInFlight, Consumer<? super Outcome> sink) throws InterruptedException {
+        if (maxInFlight <= 0) throw new IllegalArgumentException("maxInFlight must be positive");
+        Semaphore permits = new Semaphore(maxInFlight);
+        Object sinkLock = new Object();
+        Throwable[] sinkFailure = new Throwable[1];
+
+        int index = 0;
+        Iterator<String> it = sources.iterator();
+        try {
+            while (true) {
+                permits.acquire(); // before hasNext(), which may already pull the next source
+                try {
+                    if (!it.hasNext()) {
+                        permits.release();
+                        break;
+                    }
+                    String src = it.next();
+                    int at = index;
+                    pool.execute(() -> {
+                        try {
+                            Outcome o = parseOne(at, src);
+                            synchronized (sinkLock) {
+                                if (sinkFailure[0] == null) sink.accept(o);
+                            }
+                        } catch (Throwable t) {
+                            synchronized (sinkLock) {
+                                if (sinkFailure[0] == null) sinkFailure[0] = t;
+                            }
+                        } finally {
+                            permits.release();
+                        }
+                    });
+                    index++;
+                } catch (RuntimeException | Error e) { // the stream failed or the pool refused: no task owns the permit
+                    permits.release();
+                    throw e;
+                }
+                synchronized (sinkLock) {
+                    if (sinkFailure[0] != null) break;
+                }
+            }
+        } finally {
+            permits.acquireUninterruptibly(maxInFlight); // wait for the stragglers
+            permits.release(maxInFlight);
+        }
+        Throwable failure = sinkFailure[0];
+        if (failure instanceof RuntimeException e) throw e;
+        if (failure instanceof Error e) throw e;
+        return index;
+    }
+
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    private Outcome parseOne(int index, String src) {
+        try {
+            return new Outcome(index, parser.apply(src), null);
+        } catch (StrategyParser.ParseException e) {
+            return new Outcome(index, null, e);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private final class Split extends RecursiveAction {
+        private final String[] in;
+        private final Outcome[] out;
+        private final int from, to;
+
+        Split(String[] in, Outcome[] out, int from, int to) {
+            this.in = in;
+            this.out = out;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) out[i] = parseOne(i, in[i]);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Split(in, out, from, mid), new Split(in, out, mid, to));
+        }
+    }
+}
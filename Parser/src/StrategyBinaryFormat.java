@@ -0,0 +1,428 @@
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.*;
+import java.util.*;
+import java.util.stream.Stream;
+
+/**
+ * Compact, versioned binary encoding of parsed strategies, and a store file holding many of them that
+ * is memory-mapped at startup and decoded lazily, one strategy at a time.
+ *
+ * <p>A strategy is encoded as an identifier table (varint count, then varint-length UTF-8 names)
+ * followed by a varint statement count and the statements in pre-order. Every node is one tag byte;
+ * {@code Expr.Binary} operators, directions and info kinds are folded into the tag, numbers are
+ * zig-zag varints and names are varint indexes into the table. Decoding returns a tree equal to the
+ * one that was encoded, {@code Expr.Paren} nodes included.
+ *
+ * <p>Store layout (little-endian): magic {@code "KSTB"}, u16 version, u16 reserved, u32 count,
+ * u64 index offset, then the encoded strategies back to back, then the index: for each strategy a
+ * varint-length UTF-8 id, u64 offset and u32 length.
+ */
+public final class StrategyBinaryFormat {
+
+    public static final int VERSION = 1;
+    private static final int MAGIC = 0x4254534B; // "KSTB" read little-endian
+    private static final int HEADER_BYTES = 4 + 2 + 2 + 4 + 8;
+    private static final int INDEX_ENTRY_MIN_BYTES = 1 + 8 + 4; // id length, offset, length
+
+    // Statement tags
+    private static final int ASSIGN = 0x01, DONE = 0x02, MOVE = 0x03, SHOOT = 0x09, BLOCK = 0x0F, IF = 0x10, WHILE = 0x11;
+    // Expression tags; MOVE, SHOOT and NEARBY are followed by six consecutive tags, one per direction
+    private static final int NUM = 0x20, VAR = 0x21, BINARY = 0x22, PAREN = 0x28, ALLY = 0x29, OPPONENT = 0x2A, NEARBY = 0x2B;
+    private static final String[] OPERATORS = { "+", "-", "*", "/", "%", "^" };
+
+    private static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+
+    public static final class FormatException extends RuntimeException {
+        public FormatException(String message) {
+            super(message);
+        }
+    }
+
+    private StrategyBinaryFormat() {}
+
+    // ------------------------------------------------------------------ single strategies
+
+    public static byte[] encode(List<StrategyParser.Stmt> program) {
+        Encoder e = new Encoder();
+        for (StrategyParser.Stmt s : program) e.collect(s);
+        e.out.varint(e.names.size());
+        for (String name : e.names.keySet()) {
+            byte[] utf8 = name.getBytes(StandardCharsets.UTF_8);
+            e.out.varint(utf8.length);
+            e.out.bytes(utf8);
+        }
+        e.out.varint(program.size());
+        for (StrategyParser.Stmt s : program) e.stmt(s);
+        return e.out.toByteArray();
+    }
+
+    public static List<StrategyParser.Stmt> decode(ByteBuffer in) {
+        return decode(in, StrategyParser.NodeFactory.PLAIN);
+    }
+
+    /** Decodes one strategy starting at {@code in.position()}, building nodes through {@code nodes}. */
+    public static List<StrategyParser.Stmt> decode(ByteBuffer in, StrategyParser.NodeFactory nodes) {
+        try {
+            return new Decoder(in, nodes).program();
+        } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+            throw new FormatException("Truncated or corrupt strategy encoding");
+        }
+    }
+
+    private static final class Bytes {
+        private byte[] buf = new byte[256];
+        private int size;
+
+        void u8(int b) {
+            if (size == buf.length) buf = Arrays.copyOf(buf, size * 2);
+            buf[size++] = (byte) b;
+        }
+
+        void varint(long v) {
+            while ((v & ~0x7FL) != 0) {
+                u8((int) ((v & 0x7F) | 0x80));
+                v >>>= 7;
+            }
+            u8((int) v);
+        }
+
+        void bytes(byte[] b) {
+            for (byte x : b) u8(x);
+        }
+
+        byte[] toByteArray() { return Arrays.copyOf(buf, size); }
+    }
+
+    private static final class Encoder {
+        final Bytes out = new Bytes();
+        final Map<String, Integer> names = new LinkedHashMap<>();
+
+        void collect(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                names.putIfAbsent(a.name(), names.size());
+                collect(a.value());
+            } else if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                collect(s.expenditure());
+            } else if (stmt instanceof StrategyParser.Stmt.Block b) {
+                for (StrategyParser.Stmt s : b.statements()) collect(s);
+            } else if (stmt instanceof StrategyParser.Stmt.If i) {
+                collect(i.cond());
+                collect(i.thenBranch());
+                collect(i.elseBranch());
+            } else if (stmt instanceof StrategyParser.Stmt.While w) {
+                collect(w.cond());
+                collect(w.body());
+            }
+        }
+
+        void collect(StrategyParser.Expr expr) {
+            if (expr instanceof StrategyParser.Expr.Var v) {
+                names.putIfAbsent(v.name(), names.size());
+            } else if (expr instanceof StrategyParser.Expr.Binary b) {
+                collect(b.left());
+                collect(b.right());
+            } else if (expr instanceof StrategyParser.Expr.Paren p) {
+                collect(p.inner());
+            }
+        }
+
+        void stmt(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                out.u8(ASSIGN);
+                out.varint(names.get(a.name()));
+                expr(a.value());
+            } else if (stmt instanceof StrategyParser.Stmt.Done) {
+                out.u8(DONE);
+            } else if (stmt instanceof StrategyParser.Stmt.Move m) {
+                out.u8(MOVE + m.dir().ordinal());
+            } else if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                out.u8(SHOOT + s.dir().ordinal());
+                expr(s.expenditure());
+            } else if (stmt instanceof StrategyParser.Stmt.Block b) {
+                out.u8(BLOCK);
+                out.varint(b.statements().size());
+                for (StrategyParser.Stmt s : b.statements()) stmt(s);
+            } else if (stmt instanceof StrategyParser.Stmt.If i) {
+                out.u8(IF);
+                expr(i.cond());
+                stmt(i.thenBranch());
+                stmt(i.elseBranch());
+            } else if (stmt instanceof StrategyParser.Stmt.While w) {
+                out.u8(WHILE);
+                expr(w.cond());
+                stmt(w.body());
+            } else {
+                throw new IllegalStateException("Unknown statement: " + stmt);
+            }
+        }
+
+        void expr(StrategyParser.Expr expr) {
+            if (expr instanceof StrategyParser.Expr.Num n) {
+                out.u8(NUM);
+                out.varint((n.value() << 1) ^ (n.value() >> 63)); // zig-zag
+            } else if (expr instanceof StrategyParser.Expr.Var v) {
+                out.u8(VAR);
+                out.varint(names.get(v.name()));
+            } else if (expr instanceof StrategyParser.Expr.Binary b) {
+                out.u8(BINARY + operator(b.op()));
+                expr(b.left());
+                expr(b.right());
+            } else if (expr instanceof StrategyParser.Expr.Paren p) {
+                out.u8(PAREN);
+                expr(p.inner());
+            } else if (expr instanceof StrategyParser.Expr.Info i) {
+                switch (i.kind()) {
+                    case ALLY -> out.u8(ALLY);
+                    case OPPONENT -> out.u8(OPPONENT);
+                    case NEARBY -> out.u8(NEARBY + i.dirOrNull().ordinal());
+                }
+            } else {
+                throw new IllegalStateException("Unknown expression: " + expr);
+            }
+        }
+
+        private static int operator(String op) {
+            for (int i = 0; i < OPERATORS.length; i++) {
+                if (OPERATORS[i].equals(op)) return i;
+            }
+            throw new IllegalStateException("Unknown operator: " + op);
+        }
+    }
+
+    private static final class Decoder {
+        private final ByteBuffer in;
+        private final StrategyParser.NodeFactory nodes;
+        private String[] names;
+
+        Decoder(ByteBuffer in, StrategyParser.NodeFactory nodes) {
+            this.in = in;
+            this.nodes = nodes;
+        }
+
+        List<StrategyParser.Stmt> program() {
+            names = new String[count()];
+            for (int i = 0; i < names.length; i++) {
+                byte[] utf8 = new byte[count()];
+                in.get(utf8);
+                names[i] = new String(utf8, StandardCharsets.UTF_8);
+            }
+            int n = count();
+            List<StrategyParser.Stmt> program = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) program.add(stmt());
+            return program;
+        }
+
+        private StrategyParser.Stmt stmt() {
+            int tag = in.get() & 0xFF;
+            if (tag == ASSIGN) return nodes.assign(names[count()], expr());
+            if (tag == DONE) return nodes.done();
+            if (tag >= MOVE && tag < MOVE + 6) return nodes.move(DIRECTIONS[tag - MOVE]);
+            if (tag >= SHOOT && tag < SHOOT + 6) return nodes.shoot(DIRECTIONS[tag - SHOOT], expr());
+            if (tag == BLOCK) {
+                int n = count();
+                List<StrategyParser.Stmt> statements = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) statements.add(stmt());
+                return nodes.block(statements);
+            }
+            if (tag == IF) {
+                StrategyParser.Expr cond = expr();
+                StrategyParser.Stmt thenBranch = stmt();
+                return nodes.ifElse(cond, thenBranch, stmt());
+            }
+            if (tag == WHILE) {
+                StrategyParser.Expr cond = expr();
+                return nodes.whileLoop(cond, stmt());
+            }
+            throw new FormatException("Bad statement tag 0x" + Integer.toHexString(tag) + " at " + (in.position() - 1));
+        }
+
+        private StrategyParser.Expr expr() {
+            int tag = in.get() & 0xFF;
+            if (tag == NUM) {
+                long z = varint();
+                return nodes.num((z >>> 1) ^ -(z & 1));
+            }
+            if (tag == VAR) return nodes.var(names[count()]);
+            if (tag >= BINARY && tag < BINARY + OPERATORS.length) {
+                StrategyParser.Expr left = expr();
+                return nodes.binary(OPERATORS[tag - BINARY], left, expr());
+            }
+            if (tag == PAREN) return nodes.paren(expr());
+            if (tag == ALLY) return nodes.info(StrategyParser.InfoKind.ALLY, null);
+            if (tag == OPPONENT) return nodes.info(StrategyParser.InfoKind.OPPONENT, null);
+            if (tag >= NEARBY && tag < NEARBY + 6) return nodes.info(StrategyParser.InfoKind.NEARBY, DIRECTIONS[tag - NEARBY]);
+            throw new FormatException("Bad expression tag 0x" + Integer.toHexString(tag) + " at " + (in.position() - 1));
+        }
+
+        private long varint() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = in.get();
+                v |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) return v;
+            }
+            throw new FormatException("Varint too long at " + in.position());
+        }
+
+        private int count() {
+            long v = varint();
+            if (v < 0 || v > in.remaining() + 1L) throw new FormatException("Implausible count " + v + " at " + in.position());
+            return (int) v;
+        }
+    }
+
+    // ------------------------------------------------------------------ store files
+
+    /**
+     * A memory-mapped store. Opening reads only the index; each strategy is decoded from the mapping
+     * when {@link #load} asks for it.
+     */
+    public static final class Store {
+        private final MappedByteBuffer data;
+        private final Map<String, long[]> index; // id -> {offset, length}
+
+        private Store(MappedByteBuffer data, Map<String, long[]> index) {
+            this.data = data;
+            this.index = index;
+        }
+
+        public static Store open(Path file) throws IOException {
+            try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+                if (ch.size() > Integer.MAX_VALUE) throw new FormatException("Store larger than 2 GiB: " + file);
+                if (ch.size() < HEADER_BYTES) throw new FormatException("Not a strategy store: " + file);
+                MappedByteBuffer data = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+                data.order(ByteOrder.LITTLE_ENDIAN);
+
+                if (data.getInt(0) != MAGIC) throw new FormatException("Not a strategy store: " + file);
+                int version = data.getShort(4) & 0xFFFF;
+                if (version != VERSION) throw new FormatException("Unsupported store version " + version + ": " + file);
+                int count = data.getInt(8);
+                long indexAt = data.getLong(12);
+                if (indexAt < HEADER_BYTES || indexAt > data.capacity()) throw new FormatException("Corrupt store index: " + file);
+
+                ByteBuffer in = data.duplicate().order(ByteOrder.LITTLE_ENDIAN).position((int) indexAt);
+                if (count < 0 || count > in.remaining() / INDEX_ENTRY_MIN_BYTES) throw new FormatException("Corrupt store index: " + file);
+                Map<String, long[]> index = new LinkedHashMap<>(count * 2);
+                try {
+                    for (int i = 0; i < count; i++) {
+                        long idLength = readVarint(in);
+                        if (idLength < 0 || idLength > in.remaining()) throw new FormatException("Corrupt store index: " + file);
+                        byte[] id = new byte[(int) idLength];
+                        in.get(id);
+                        long offset = in.getLong();
+                        long length = in.getInt() & 0xFFFFFFFFL;
+                        if (offset < HEADER_BYTES || offset + length > indexAt) throw new FormatException("Corrupt store index: " + file);
+                        index.put(new String(id, StandardCharsets.UTF_8), new long[] { offset, length });
+                    }
+                } catch (java.nio.BufferUnderflowException | IndexOutOfBoundsException e) {
+                    throw new FormatException("Truncated store index: " + file);
+                }
+                if (index.size() != count || in.hasRemaining()) throw new FormatException("Corrupt store index: " + file);
+                return new Store(data, index);
+            }
+        }
+
+        public int size() { return index.size(); }
+
+        public Set<String> ids() { return Collections.unmodifiableSet(index.keySet()); }
+
+        public boolean contains(String id) { return index.containsKey(id); }
+
+        public List<StrategyParser.Stmt> load(String id) {
+            return load(id, StrategyParser.NodeFactory.PLAIN);
+        }
+
+        /** Decodes one strategy; safe to call from several threads at once. */
+        public List<StrategyParser.Stmt> load(String id, StrategyParser.NodeFactory nodes) {
+            long[] at = index.get(id);
+            if (at == null) throw new NoSuchElementException("No strategy '" + id + "' in store");
+            ByteBuffer slice = data.duplicate().position((int) at[0]).limit((int) (at[0] + at[1]));
+            List<StrategyParser.Stmt> program = decode(slice, nodes);
+            if (slice.hasRemaining()) {
+                throw new FormatException("Strategy '" + id + "' has " + slice.remaining() + " trailing bytes");
+            }
+            return program;
+        }
+    }
+
+    /** Writes {@code strategies} (id to program, in iteration order) as a store file. */
+    public static void write(Path file, Map<String, List<StrategyParser.Stmt>> strategies) throws IOException {
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES).order(ByteOrder.LITTLE_ENDIAN);
+            ch.write(header, 0);
+            long pos = HEADER_BYTES;
+
+            Bytes index = new Bytes();
+            for (Map.Entry<String, List<StrategyParser.Stmt>> e : strategies.entrySet()) {
+                byte[] encoded = encode(e.getValue());
+                ch.write(ByteBuffer.wrap(encoded), pos);
+
+                byte[] id = e.getKey().getBytes(StandardCharsets.UTF_8);
+                index.varint(id.length);
+                index.bytes(id);
+                ByteBuffer entry = ByteBuffer.allocate(12).order(ByteOrder.LITTLE_ENDIAN).putLong(pos).putInt(encoded.length);
+                index.bytes(entry.array());
+                pos += encoded.length;
+            }
+            ch.write(ByteBuffer.wrap(index.toByteArray()), pos);
+
+            header.clear().putInt(MAGIC).putShort((short) VERSION).putShort((short) 0)
+                    .putInt(strategies.size()).putLong(pos).flip();
+            ch.write(header, 0);
+            ch.force(true);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static long readVarint(ByteBuffer in) {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.get();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) return v;
+        }
+        throw new FormatException("Varint too long at " + in.position());
+    }
+
+    /**
+     * Bulk converter: {@code StrategyBinaryFormat <source-dir> <store-file>} parses every
+     * {@code *.strategy} file under the directory and writes the valid ones into a store, keyed by
+     * path relative to the directory, with {@code /} separators and without the extension, so
+     * {@code a/x.strategy} and {@code b/x.strategy} are {@code a/x} and {@code b/x}. Files that do not
+     * parse are reported and skipped.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: StrategyBinaryFormat <source-dir> <store-file>");
+            System.exit(2);
+        }
+        Map<String, List<StrategyParser.Stmt>> programs = new TreeMap<>();
+        int rejected = 0;
+        Path root = Path.of(args[0]);
+        try (Stream<Path> files = Files.walk(root)) {
+            for (Path p : (Iterable<Path>) files.filter(f -> f.toString().endsWith(".strategy")).sorted()::iterator) {
+                String name = root.relativize(p).toString().replace(p.getFileSystem().getSeparator(), "/");
+                String id = name.substring(0, name.length() - ".strategy".length());
+                try {
+                    programs.put(id, StrategyParser.parse(Files.readString(p)));
+                } catch (StrategyParser.ParseException e) {
+                    System.err.println(p + ": " + e.getMessage());
+                    rejected++;
+                } catch (UncheckedIOException | IOException e) {
+                    System.err.println(p + ": " + e);
+                    rejected++;
+                }
+            }
+        }
+        write(Path.of(args[1]), programs);
+        System.out.printf("Wrote %d strategies to %s (%d rejected)%n", programs.size(), args[1], rejected);
+    }
+}
@@ -0,0 +1,195 @@
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Content-addressed cache in front of {@link StrategyParser#parse(String)}. Sources are keyed by their
+ * SHA-256, so resubmissions and copies of the same strategy share one parsed tree. Sources that fail
+ * to parse are cached too and rethrow the same {@link StrategyParser.ParseException}.
+ *
+ * <p>The cache is split into independently locked segments, each an access-ordered LRU with its share
+ * of a total weight budget; an entry weighs roughly its source length, which tracks AST size. A
+ * source heavier than a whole segment's share is parsed and returned but not kept. Forms hung off an
+ * entry with {@link Entry#derived} are not weighed: they live as long as the entry, outside the budget.
+ */
+public final class StrategyCache {
+
+    /** SHA-256 of the UTF-8 source, as four longs. */
+    public record Key(long a, long b, long c, long d) {
+        private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+
+        public static Key of(String src) {
+            byte[] h = SHA256.get().digest(src.getBytes(StandardCharsets.UTF_8));
+            return new Key(word(h, 0), word(h, 8), word(h, 16), word(h, 24));
+        }
+
+        private static long word(byte[] h, int at) {
+            long v = 0;
+            for (int i = 0; i < 8; i++) v = (v << 8) | (h[at + i] & 0xFF);
+            return v;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%016x%016x%016x%016x", a, b, c, d);
+        }
+    }
+
+    /**
+     * One cached source: the parsed program, or the error it failed with. Later stages (resolved,
+     * lowered, compiled forms, ...) hang off the entry via {@link #derived}.
+     */
+    public static final class Entry {
+        private final Key key;
+        private final List<StrategyParser.Stmt> program;
+        private final StrategyParser.ParseException error;
+        private final int weight;
+        private final ConcurrentHashMap<Object, Object> derived = new ConcurrentHashMap<>();
+
+        private Entry(Key key, List<StrategyParser.Stmt> program, StrategyParser.ParseException error, int weight) {
+            this.key = key;
+            this.program = program;
+            this.error = error;
+            this.weight = weight;
+        }
+
+        public Key key() { return key; }
+
+        public boolean isValid() { return error == null; }
+
+        /** The parsed program; throws the cached error for a source that does not parse. */
+        public List<StrategyParser.Stmt> program() {
+            if (error != null) throw error;
+            return program;
+        }
+
+        /**
+         * A form computed from the program once per entry, for instance
+         * {@code entry.derived(StrategyResolver.class, StrategyResolver::resolve)}.
+         */
+        @SuppressWarnings("unchecked")
+        public <T> T derived(Object kind, Function<List<StrategyParser.Stmt>, T> compute) {
+            List<StrategyParser.Stmt> p = program();
+            return (T) derived.computeIfAbsent(kind, k -> compute.apply(p));
+        }
+    }
+
+    public record Stats(long hits, long misses, long negativeHits, long evictions, int entries, long weight) {}
+
+    private static final int ENTRY_OVERHEAD = 64;
+
+    private final Segment[] segments;
+    private final int maxDepth;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder negativeHits = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /** @param maxWeight total budget, in source characters (plus a small per-entry overhead) */
+    public StrategyCache(long maxWeight) {
+        this(maxWeight, 16);
+    }
+
+    public StrategyCache(long maxWeight, int segmentCount) {
+        this(maxWeight, segmentCount, StrategyParser.Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    /** @param maxDepth the nesting cap every miss is parsed with; see {@link StrategyParser.Parser#maxDepth} */
+    public StrategyCache(long maxWeight, int segmentCount, int maxDepth) {
+        if (maxWeight <= 0 || segmentCount <= 0 || maxDepth <= 0) throw new IllegalArgumentException("Cache bounds must be positive");
+        this.maxDepth = maxDepth;
+        segments = new Segment[segmentCount];
+        for (int i = 0; i < segmentCount; i++) segments[i] = new Segment(Math.max(1, maxWeight / segmentCount));
+    }
+
+    /** Cached equivalent of {@link StrategyParser#parse(String)}. */
+    public List<StrategyParser.Stmt> parse(String src) {
+        return get(src).program();
+    }
+
+    /** The entry for {@code src}, parsing it on a miss. Never throws {@code ParseException} itself. */
+    public Entry get(String src) {
+        Key key = Key.of(src);
+        Segment segment = segments[Math.floorMod(Long.hashCode(key.a()), segments.length)];
+        Entry entry = segment.get(key);
+        if (entry != null) {
+            (entry.isValid() ? hits : negativeHits).increment();
+            return entry;
+        }
+        misses.increment();
+
+        int weight = src.length() + ENTRY_OVERHEAD;
+        try {
+            entry = new Entry(key, List.copyOf(StrategyParser.parse(src, StrategyParser.NodeFactory.PLAIN, maxDepth)), null, weight);
+        } catch (StrategyParser.ParseException e) {
+            entry = new Entry(key, null, e, weight);
+        }
+        return segment.put(entry);
+    }
+
+    public void clear() {
+        for (Segment s : segments) s.clear();
+    }
+
+    public Stats stats() {
+        int entries = 0;
+        long weight = 0;
+        for (Segment s : segments) {
+            synchronized (s) {
+                entries += s.map.size();
+                weight += s.weight;
+            }
+        }
+        return new Stats(hits.sum(), misses.sum(), negativeHits.sum(), evictions.sum(), entries, weight);
+    }
+
+    private final class Segment {
+        private final long maxWeight;
+        private final LinkedHashMap<Key, Entry> map = new LinkedHashMap<>(16, 0.75f, true);
+        private long weight;
+
+        Segment(long maxWeight) {
+            this.maxWeight = maxWeight;
+        }
+
+        synchronized Entry get(Key key) {
+            return map.get(key);
+        }
+
+        /**
+         * Inserts unless another thread got there first; returns whichever entry is cached, or
+         * {@code entry} uncached if it alone outweighs the segment.
+         */
+        synchronized Entry put(Entry entry) {
+            Entry existing = map.get(entry.key);
+            if (existing != null) return existing;
+            if (entry.weight > maxWeight) return entry;
+            map.put(entry.key, entry);
+            weight += entry.weight;
+            Iterator<Entry> lru = map.values().iterator();
+            while (weight > maxWeight && lru.hasNext()) {
+                Entry victim = lru.next();
+                if (victim == entry) break;
+                lru.remove();
+                weight -= victim.weight;
+                evictions.increment();
+            }
+            return entry;
+        }
+
+        synchronized void clear() {
+            map.clear();
+            weight = 0;
+        }
+    }
+}
@@ -0,0 +1,498 @@
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandles;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bytecode tier: turns a parsed strategy into a hidden class whose {@code run} method is straight
+ * JVM code — {@code while}/{@code if} become real branches, arithmetic becomes {@code long} opcodes and
+ * variables are array slots assigned by {@link StrategyResolver}. Semantics are exactly those of
+ * {@link StrategyInterpreter}.
+ */
+public final class StrategyCompiler {
+
+    /** Implemented by every generated class; the arrays are indexed by resolved slot. */
+    public interface CompiledStrategy {
+        void run(long[] locals, long[] globals, StrategyInterpreter.Environment env);
+    }
+
+    public static final class CompileException extends RuntimeException {
+        public CompileException(String message) {
+            super(message);
+        }
+    }
+
+    public static final class CompiledProgram {
+        private final StrategyResolver.ResolvedProgram resolved;
+        private final CompiledStrategy code;
+
+        private CompiledProgram(StrategyResolver.ResolvedProgram resolved, CompiledStrategy code) {
+            this.resolved = resolved;
+            this.code = code;
+        }
+
+        public StrategyResolver.ResolvedProgram resolved() { return resolved; }
+
+        public CompiledStrategy code() { return code; }
+
+        public void execute(StrategyResolver.Frame frame, long[] globals, StrategyInterpreter.Environment env) {
+            code.run(frame.locals(), globals, env);
+        }
+    }
+
+    /**
+     * Runs a strategy on the flat-IR interpreter until it has been executed {@code threshold} times,
+     * then compiles it once and uses the bytecode tier from then on. Strategies that fail to compile
+     * (for instance because they exceed the JVM method size limit) stay interpreted.
+     */
+    public static final class TieredStrategy {
+        public static final int DEFAULT_THRESHOLD = 100;
+
+        private final StrategyResolver.ResolvedProgram program;
+        private final StrategyIR.Program lowered;
+        private final int threshold;
+        private final AtomicInteger invocations = new AtomicInteger();
+        private volatile CompiledProgram compiled;
+        private volatile boolean compileFailed;
+
+        public TieredStrategy(StrategyResolver.ResolvedProgram program) {
+            this(program, DEFAULT_THRESHOLD);
+        }
+
+        /** @param threshold runs before the strategy is compiled; at least 1 */
+        public TieredStrategy(StrategyResolver.ResolvedProgram program, int threshold) {
+            if (threshold <= 0) throw new IllegalArgumentException("Threshold must be positive");
+            this.program = program;
+            this.lowered = StrategyIR.lower(program);
+            this.threshold = threshold;
+        }
+
+        public StrategyResolver.ResolvedProgram program() { return program; }
+
+        public void execute(StrategyResolver.Frame frame, long[] globals, StrategyInterpreter.Environment env) {
+            CompiledProgram c = compiled;
+            if (c == null && !compileFailed && invocations.incrementAndGet() == threshold) c = promote();
+            if (c != null) c.execute(frame, globals, env);
+            else lowered.execute(frame, globals, env);
+        }
+
+        public boolean isCompiled() { return compiled != null; }
+
+        private CompiledProgram promote() {
+            try {
+                compiled = compile(program);
+            } catch (CompileException | StackOverflowError e) {
+                compileFailed = true;
+            }
+            return compiled;
+        }
+    }
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.lookup();
+
+    private static final String ENV = "StrategyInterpreter$Environment";
+    private static final String DIRECTION = "StrategyParser$Direction";
+    private static final String DIRECTION_DESC = "L" + DIRECTION + ";";
+
+    private StrategyCompiler() {}
+
+    public static CompiledProgram compile(List<StrategyParser.Stmt> program) {
+        return compile(StrategyResolver.resolve(program));
+    }
+
+    public static CompiledProgram compile(StrategyResolver.ResolvedProgram program) {
+        byte[] bytes = new ClassGen(program).generate(program.statements());
+        try {
+            MethodHandles.Lookup hidden = LOOKUP.defineHiddenClass(bytes, true);
+            CompiledStrategy code = (CompiledStrategy) hidden.findConstructor(
+                    hidden.lookupClass(), java.lang.invoke.MethodType.methodType(void.class)).invoke();
+            return new CompiledProgram(program, code);
+        } catch (Throwable t) {
+            throw new CompileException("Failed to define compiled strategy: " + t);
+        }
+    }
+
+    // ------------------------------------------------------------------ class file generation
+
+    private static final class ConstantPool {
+        private final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        private final DataOutputStream out = new DataOutputStream(bytes);
+        private final Map<String, Integer> index = new HashMap<>();
+        private int next = 1;
+
+        int utf8(String s) {
+            return intern("U" + s, 1, () -> { out.writeByte(1); out.writeUTF(s); });
+        }
+
+        int classRef(String internalName) {
+            int name = utf8(internalName);
+            return intern("C" + internalName, 1, () -> { out.writeByte(7); out.writeShort(name); });
+        }
+
+        int longConst(long v) {
+            return intern("J" + v, 2, () -> { out.writeByte(5); out.writeLong(v); });
+        }
+
+        int intConst(int v) {
+            return intern("I" + v, 1, () -> { out.writeByte(3); out.writeInt(v); });
+        }
+
+        int nameAndType(String name, String desc) {
+            int n = utf8(name), d = utf8(desc);
+            return intern("N" + name + ":" + desc, 1, () -> { out.writeByte(12); out.writeShort(n); out.writeShort(d); });
+        }
+
+        int fieldRef(String owner, String name, String desc) {
+            return memberRef(9, owner, name, desc);
+        }
+
+        int methodRef(String owner, String name, String desc) {
+            return memberRef(10, owner, name, desc);
+        }
+
+        int interfaceMethodRef(String owner, String name, String desc) {
+            return memberRef(11, owner, name, desc);
+        }
+
+        private int memberRef(int tag, String owner, String name, String desc) {
+            int c = classRef(owner), nt = nameAndType(name, desc);
+            return intern(tag + owner + "." + name + desc, 1, () -> { out.writeByte(tag); out.writeShort(c); out.writeShort(nt); });
+        }
+
+        private interface Writer { void write() throws IOException; }
+
+        private int intern(String key, int width, Writer writer) {
+            Integer existing = index.get(key);
+            if (existing != null) return existing;
+            int i = next;
+            try {
+                writer.write();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            next += width;
+            index.put(key, i);
+            if (next > 0xFFFF) throw new CompileException("Constant pool overflow");
+            return i;
+        }
+    }
+
+    private static final class Label {
+        int pos = -1;
+        final List<int[]> refs = new ArrayList<>(); // {opcodeAt, offsetFieldAt}
+    }
+
+    /** Emits the generated class. JVM locals are fixed: {@code this}, {@code locals}, {@code globals}, {@code env}. */
+    private static final class ClassGen {
+        private static final int MAX_BRANCH_SPAN = Short.MAX_VALUE;
+        private static final int ALOAD_LOCALS = 0x2b, ALOAD_GLOBALS = 0x2c, ALOAD_ENV = 0x2d;
+
+        private final StrategyResolver.ResolvedProgram slots;
+        private final ConstantPool cp = new ConstantPool();
+        private final ByteArrayOutputStream code = new ByteArrayOutputStream();
+        private final TreeSet<Integer> frames = new TreeSet<>();
+        private final List<Label> labels = new ArrayList<>();
+        private boolean frameAfterJump;
+        private int stack, maxStack;
+
+        ClassGen(StrategyResolver.ResolvedProgram slots) {
+            this.slots = slots;
+        }
+
+        byte[] generate(List<StrategyParser.Stmt> program) {
+            int thisClass = cp.classRef("StrategyCompiled");
+            int superClass = cp.classRef("java/lang/Object");
+            int iface = cp.classRef("StrategyCompiler$CompiledStrategy");
+            int objectInit = cp.methodRef("java/lang/Object", "<init>", "()V");
+            int codeAttr = cp.utf8("Code");
+            int initName = cp.utf8("<init>"), initDesc = cp.utf8("()V");
+            int runName = cp.utf8("run"), runDesc = cp.utf8("([J[JL" + ENV + ";)V");
+
+            for (StrategyParser.Stmt s : program) stmt(s);
+            op(0xb1, 0); // return
+            patchLabels();
+            byte[] runCode = code.toByteArray();
+            if (runCode.length > 0xFFFF) throw new CompileException("Strategy too large to compile");
+            byte[] stackMap = stackMapTable();
+            int stackMapName = stackMap == null ? 0 : cp.utf8("StackMapTable");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeInt(0xCAFEBABE);
+                out.writeShort(0);
+                out.writeShort(61);
+                out.writeShort(cp.next);
+                cp.bytes.writeTo(out);
+                out.writeShort(0x0011); // ACC_PUBLIC | ACC_FINAL
+                out.writeShort(thisClass);
+                out.writeShort(superClass);
+                out.writeShort(1);
+                out.writeShort(iface);
+                out.writeShort(0); // fields
+                out.writeShort(2); // methods
+
+                out.writeShort(0x0001);
+                out.writeShort(initName);
+                out.writeShort(initDesc);
+                out.writeShort(1);
+                out.writeShort(codeAttr);
+                out.writeInt(12 + 5);
+                out.writeShort(1);
+                out.writeShort(1);
+                out.writeInt(5);
+                out.writeByte(0x2a); // aload_0
+                out.writeByte(0xb7); // invokespecial
+                out.writeShort(objectInit);
+                out.writeByte(0xb1);
+                out.writeShort(0);
+                out.writeShort(0);
+
+                out.writeShort(0x0001);
+                out.writeShort(runName);
+                out.writeShort(runDesc);
+                out.writeShort(1);
+                out.writeShort(codeAttr);
+                int attrLen = 12 + runCode.length + (stackMap == null ? 0 : 6 + stackMap.length);
+                out.writeInt(attrLen);
+                out.writeShort(maxStack);
+                out.writeShort(4);
+                out.writeInt(runCode.length);
+                out.write(runCode);
+                out.writeShort(0); // exception table
+                if (stackMap == null) {
+                    out.writeShort(0);
+                } else {
+                    out.writeShort(1);
+                    out.writeShort(stackMapName);
+                    out.writeInt(stackMap.length);
+                    out.write(stackMap);
+                }
+
+                out.writeShort(0); // class attributes
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+
+        // ---- statements
+
+        private void stmt(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                variable(a.name());
+                expr(a.value());
+                op(0x50, -4); // lastore
+            } else if (stmt instanceof StrategyParser.Stmt.Done) {
+                op(0xb1, 0);
+                frameAfterJump = true;
+            } else if (stmt instanceof StrategyParser.Stmt.Move m) {
+                op(ALOAD_ENV, 1);
+                direction(m.dir());
+                invokeInterface("move", "(" + DIRECTION_DESC + ")V", 2, -2);
+            } else if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                op(ALOAD_ENV, 1);
+                direction(s.dir());
+                expr(s.expenditure());
+                invokeInterface("shoot", "(" + DIRECTION_DESC + "J)V", 4, -4);
+            } else if (stmt instanceof StrategyParser.Stmt.Block b) {
+                for (StrategyParser.Stmt s : b.statements()) stmt(s);
+            } else if (stmt instanceof StrategyParser.Stmt.If i) {
+                Label otherwise = new Label(), end = new Label();
+                condition(i.cond(), otherwise);
+                stmt(i.thenBranch());
+                jump(0xa7, end, 0); // goto
+                frameAfterJump = true;
+                bind(otherwise);
+                stmt(i.elseBranch());
+                bind(end);
+            } else if (stmt instanceof StrategyParser.Stmt.While w) {
+                Label top = new Label(), end = new Label();
+                bind(top);
+                condition(w.cond(), end);
+                stmt(w.body());
+                jump(0xa7, top, 0);
+                frameAfterJump = true;
+                bind(end);
+            } else {
+                throw new CompileException("Unknown statement: " + stmt);
+            }
+        }
+
+        /** Falls through when {@code cond > 0}, jumps to {@code otherwise} if not. */
+        private void condition(StrategyParser.Expr cond, Label otherwise) {
+            expr(cond);
+            op(0x09, 2);  // lconst_0
+            op(0x94, -3); // lcmp
+            jump(0x9e, otherwise, -1); // ifle
+        }
+
+        // ---- expressions
+
+        private void expr(StrategyParser.Expr expr) {
+            if (expr instanceof StrategyParser.Expr.Num n) {
+                pushLong(n.value());
+            } else if (expr instanceof StrategyParser.Expr.Var v) {
+                variable(v.name());
+                op(0x2f, 0); // laload
+            } else if (expr instanceof StrategyParser.Expr.Paren p) {
+                expr(p.inner());
+            } else if (expr instanceof StrategyParser.Expr.Binary b) {
+                expr(b.left());
+                expr(b.right());
+                switch (b.op()) {
+                    case "+" -> op(0x61, -2);
+                    case "-" -> op(0x65, -2);
+                    case "*" -> op(0x69, -2);
+                    case "/" -> { checkedDivisor(); op(0x6d, -2); }
+                    case "%" -> { checkedDivisor(); op(0x71, -2); }
+                    case "^" -> invokeStatic("pow", "(JJ)J", -2);
+                    default -> throw new CompileException("Unknown operator: " + b.op());
+                }
+            } else if (expr instanceof StrategyParser.Expr.Info i) {
+                op(ALOAD_ENV, 1);
+                switch (i.kind()) {
+                    case ALLY -> invokeInterface("ally", "()J", 1, 1);
+                    case OPPONENT -> invokeInterface("opponent", "()J", 1, 1);
+                    case NEARBY -> {
+                        direction(i.dirOrNull());
+                        invokeInterface("nearby", "(" + DIRECTION_DESC + ")J", 2, 0);
+                    }
+                }
+            } else {
+                throw new CompileException("Unknown expression: " + expr);
+            }
+        }
+
+        /** Pushes the array and index addressing a variable's slot. */
+        private void variable(String name) {
+            int slot = slots.slot(name);
+            if (slot >= 0) {
+                op(ALOAD_LOCALS, 1);
+                pushInt(slot);
+            } else {
+                op(ALOAD_GLOBALS, 1);
+                pushInt(~slot);
+            }
+        }
+
+        private void checkedDivisor() {
+            invokeStatic("divisor", "(J)J", 0);
+        }
+
+        private void pushLong(long v) {
+            if (v == 0 || v == 1) {
+                op(v == 0 ? 0x09 : 0x0a, 2);
+            } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+                pushInt((int) v);
+                op(0x85, 1); // i2l
+            } else {
+                u2op(0x14, cp.longConst(v), 2); // ldc2_w
+            }
+        }
+
+        private void pushInt(int v) {
+            if (v >= -1 && v <= 5) {
+                op(0x03 + v, 1); // iconst_<v>
+            } else if (v >= Byte.MIN_VALUE && v <= Byte.MAX_VALUE) {
+                op(0x10, 1);
+                code.write(v);
+            } else if (v >= Short.MIN_VALUE && v <= Short.MAX_VALUE) {
+                op(0x11, 1);
+                code.write(v >> 8);
+                code.write(v);
+            } else {
+                u2op(0x13, cp.intConst(v), 1); // ldc_w
+            }
+        }
+
+        private void direction(StrategyParser.Direction dir) {
+            u2op(0xb2, cp.fieldRef(DIRECTION, dir.name(), DIRECTION_DESC), 1); // getstatic
+        }
+
+        private void invokeStatic(String name, String desc, int stackDelta) {
+            u2op(0xb8, cp.methodRef("StrategyInterpreter", name, desc), stackDelta);
+        }
+
+        private void invokeInterface(String name, String desc, int argSlots, int stackDelta) {
+            u2op(0xb9, cp.interfaceMethodRef(ENV, name, desc), stackDelta);
+            code.write(argSlots);
+            code.write(0);
+        }
+
+        // ---- raw emission
+
+        private void op(int opcode, int stackDelta) {
+            if (frameAfterJump) {
+                frames.add(code.size());
+                frameAfterJump = false;
+            }
+            code.write(opcode);
+            stack += stackDelta;
+            maxStack = Math.max(maxStack, stack);
+        }
+
+        private void u2op(int opcode, int operand, int stackDelta) {
+            op(opcode, stackDelta);
+            code.write(operand >> 8);
+            code.write(operand);
+        }
+
+        private void jump(int opcode, Label target, int stackDelta) {
+            int at = code.size();
+            op(opcode, stackDelta);
+            target.refs.add(new int[] { at, code.size() });
+            code.write(0);
+            code.write(0);
+            labels.add(target);
+        }
+
+        private void bind(Label label) {
+            label.pos = code.size();
+            frames.add(label.pos);
+            frameAfterJump = false;
+            labels.add(label);
+        }
+
+        private void patchLabels() {
+            byte[] buf = code.toByteArray();
+            for (Label label : new LinkedHashSet<>(labels)) {
+                for (int[] ref : label.refs) {
+                    int offset = label.pos - ref[0];
+                    if (offset > MAX_BRANCH_SPAN || offset < -MAX_BRANCH_SPAN - 1) {
+                        throw new CompileException("Branch too long to compile");
+                    }
+                    buf[ref[1]] = (byte) (offset >> 8);
+                    buf[ref[1] + 1] = (byte) offset;
+                }
+            }
+            code.reset();
+            code.write(buf, 0, buf.length);
+        }
+
+        /** Every frame is a {@code same_frame}: the stack is empty at every branch target. */
+        private byte[] stackMapTable() {
+            if (frames.isEmpty()) return null;
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            try (DataOutputStream out = new DataOutputStream(bytes)) {
+                out.writeShort(frames.size());
+                int previous = -1;
+                for (int pos : frames) {
+                    int delta = pos - previous - 1;
+                    if (delta < 64) {
+                        out.writeByte(delta);
+                    } else {
+                        out.writeByte(251);
+                        out.writeShort(delta);
+                    }
+                    previous = pos;
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            return bytes.toByteArray();
+        }
+    }
+}
@@ -0,0 +1,244 @@
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+/**
+ * Seeded random strategies for stress tests, fuzzing and benchmark corpora. Every production of the
+ * grammar can come out: all seven statements, all five expressions (including explicit parentheses),
+ * all six operators, all six directions and all three info kinds. The same seed and options always give
+ * the same output.
+ *
+ * <p>Generated trees have the shape the parser builds, so {@link StrategyPrinter#print} of one parses
+ * back to an equal tree. {@link #nearMiss} breaks valid source in one controlled way, for checks that
+ * the parser rejects it cleanly.
+ */
+public final class StrategyGenerator {
+
+    /**
+     * What to generate.
+     *
+     * @param statements   top-level statements per {@link #program()}
+     * @param depth        how deeply {@code {}}, {@code if} and {@code while} may nest
+     * @param exprDepth    how deeply operators and parentheses may nest inside one expression
+     * @param statementMix one character per draw: {@code =} assign, {@code m} move, {@code s} shoot,
+     *                     {@code d} done, <code>{</code> block, {@code i} if, {@code w} while; a character
+     *                     that appears twice is drawn twice as often. At the depth limit only the first
+     *                     four are drawn, in their proportions here, so the mix needs at least one of them
+     * @param operatorMix  the same for operators, drawn from {@code + - * / % ^}
+     */
+    public record Options(int statements, int depth, int exprDepth, String statementMix, String operatorMix) {
+        public static final Options DEFAULT = new Options(20, 4, 3, "=====mmssd{iiw", "+++---***/%^");
+
+        public Options {
+            if (statements <= 0) throw new IllegalArgumentException("Statement count must be positive");
+            if (depth < 0 || exprDepth < 0) throw new IllegalArgumentException("Depths must not be negative");
+            if (statementMix.isEmpty() || !statementMix.chars().allMatch(c -> "=msd{iw".indexOf(c) >= 0)) {
+                throw new IllegalArgumentException("Bad statement mix: " + statementMix);
+            }
+            if (leaves(statementMix).isEmpty()) {
+                throw new IllegalArgumentException("Statement mix has no simple statement to end nesting with: " + statementMix);
+            }
+            if (operatorMix.isEmpty() || !operatorMix.chars().allMatch(c -> "+-*/%^".indexOf(c) >= 0)) {
+                throw new IllegalArgumentException("Bad operator mix: " + operatorMix);
+            }
+        }
+
+        /** The statements of {@code mix} that nest nothing, in the same proportions. */
+        private static String leaves(String mix) {
+            StringBuilder sb = new StringBuilder(mix.length());
+            for (char c : mix.toCharArray()) if ("=msd".indexOf(c) >= 0) sb.append(c);
+            return sb.toString();
+        }
+    }
+
+    /** Ways {@link #nearMiss} can break a source. */
+    public enum Mutation {
+        /** Leave out one token. */
+        DROP_TOKEN,
+        /** Repeat a binary operator, as in {@code a + + b}; there are no unary operators. */
+        DOUBLED_OPERATOR,
+        /** Put a keyword where an identifier was. */
+        KEYWORD_AS_IDENTIFIER,
+        /** Leave out a closing {@code )} or <code>}</code>. */
+        UNCLOSED,
+        /** Leave out an {@code else}. */
+        MISSING_ELSE,
+        /** Misspell a direction. */
+        BAD_DIRECTION,
+        /** Insert a character the lexer does not accept. */
+        STRAY_CHARACTER,
+        /** Replace a number with one that does not fit in a {@code long}. */
+        OVERFLOWING_NUMBER
+    }
+
+    /** Names that include keyword and direction prefixes, to keep the lexer honest. */
+    private static final String[] NAMES = {"x", "y", "t", "n", "cost", "Budget", "if1", "then2", "ups", "moveTo", "a9", "doneX"};
+    private static final String[] KEYWORDS = {"if", "then", "else", "while", "done", "move", "shoot", "ally", "nearby", "up"};
+    private static final String[] MISSPELT = {"upleftt", "left", "righ", "downn", "north"};
+    private static final String[] STRAY = {"@", ";", "$", "!", "[", "\""};
+    private static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+    private static final StrategyParser.InfoKind[] KINDS = StrategyParser.InfoKind.values();
+
+    private final SplittableRandom random;
+    private final Options options;
+    private final String leafMix;
+
+    public StrategyGenerator(long seed) {
+        this(seed, Options.DEFAULT);
+    }
+
+    public StrategyGenerator(long seed, Options options) {
+        this.random = new SplittableRandom(seed);
+        this.options = options;
+        this.leafMix = Options.leaves(options.statementMix());
+    }
+
+    public List<StrategyParser.Stmt> program() {
+        List<StrategyParser.Stmt> out = new ArrayList<>(options.statements());
+        for (int i = 0; i < options.statements(); i++) out.add(statement());
+        return out;
+    }
+
+    /** {@link #program()} printed. */
+    public String source() {
+        return StrategyPrinter.print(program());
+    }
+
+    /** Printed top-level statements until there are at least {@code targetChars} characters. */
+    public String corpus(int targetChars) {
+        StringBuilder sb = new StringBuilder(targetChars + 256);
+        do {
+            sb.append(StrategyPrinter.print(statement())).append('\n');
+        } while (sb.length() < targetChars);
+        return sb.toString();
+    }
+
+    public StrategyParser.Stmt statement() {
+        return statement(options.depth());
+    }
+
+    public StrategyParser.Expr expression() {
+        return expression(options.exprDepth());
+    }
+
+    private StrategyParser.Stmt statement(int depth) {
+        String mix = depth == 0 ? leafMix : options.statementMix();
+        char kind = mix.charAt(random.nextInt(mix.length()));
+        return switch (kind) {
+            case '=' -> new StrategyParser.Stmt.Assign(name(), expression());
+            case 'm' -> new StrategyParser.Stmt.Move(direction());
+            case 's' -> new StrategyParser.Stmt.Shoot(direction(), expression());
+            case 'd' -> new StrategyParser.Stmt.Done();
+            case '{' -> {
+                int n = random.nextInt(4);
+                List<StrategyParser.Stmt> body = new ArrayList<>(n);
+                for (int i = 0; i < n; i++) body.add(statement(depth - 1));
+                yield new StrategyParser.Stmt.Block(body);
+            }
+            case 'i' -> new StrategyParser.Stmt.If(expression(), statement(depth - 1), statement(depth - 1));
+            case 'w' -> new StrategyParser.Stmt.While(expression(), statement(depth - 1));
+            default -> throw new IllegalStateException("Bad statement kind " + kind);
+        };
+    }
+
+    private StrategyParser.Expr expression(int depth) {
+        if (depth == 0 || random.nextInt(3) == 0) return leaf();
+        if (random.nextInt(5) == 0) return new StrategyParser.Expr.Paren(expression(depth - 1));
+        String op = String.valueOf(options.operatorMix().charAt(random.nextInt(options.operatorMix().length())));
+        return new StrategyParser.Expr.Binary(op, operand(op, expression(depth - 1), true), operand(op, expression(depth - 1), false));
+    }
+
+    /** {@code child}, parenthesized if the parser would otherwise group it differently. */
+    private static StrategyParser.Expr operand(String op, StrategyParser.Expr child, boolean left) {
+        return StrategyPrinter.needsParens(op, child, left) ? new StrategyParser.Expr.Paren(child) : child;
+    }
+
+    private StrategyParser.Expr leaf() {
+        return switch (random.nextInt(3)) {
+            case 0 -> new StrategyParser.Expr.Num(number());
+            case 1 -> new StrategyParser.Expr.Var(name());
+            default -> {
+                StrategyParser.InfoKind kind = KINDS[random.nextInt(KINDS.length)];
+                yield new StrategyParser.Expr.Info(kind, kind == StrategyParser.InfoKind.NEARBY ? direction() : null);
+            }
+        };
+    }
+
+    private long number() {
+        return switch (random.nextInt(10)) {
+            case 0 -> random.nextLong(Long.MAX_VALUE) + 1; // anything up to Long.MAX_VALUE
+            case 1 -> 0;
+            default -> random.nextInt(100);
+        };
+    }
+
+    private String name() { return NAMES[random.nextInt(NAMES.length)]; }
+
+    private StrategyParser.Direction direction() { return DIRECTIONS[random.nextInt(DIRECTIONS.length)]; }
+
+    // ------------------------------------------------------------------ near misses
+
+    /**
+     * {@code src} broken by one {@code mutation} at a randomly chosen place, checked not to parse; null
+     * if {@code src} has nowhere that mutation breaks it (no {@code else} to drop, say).
+     */
+    public String nearMiss(String src, Mutation mutation) {
+        List<StrategyParser.Token> tokens = StrategyParser.Lexer.lex(src);
+        List<StrategyParser.Token> sites = new ArrayList<>();
+        for (StrategyParser.Token t : tokens) if (t.type() != StrategyParser.TokenType.EOF && isSite(t, mutation)) sites.add(t);
+        // try sites in a random order until one actually breaks the source
+        for (int left = sites.size(); left > 0; left--) {
+            StrategyParser.Token t = sites.remove(random.nextInt(left));
+            int start = t.pos(), end = t.pos() + t.lexeme().length();
+            String broken = switch (mutation) {
+                case DROP_TOKEN, UNCLOSED, MISSING_ELSE -> src.substring(0, start) + " " + src.substring(end);
+                case DOUBLED_OPERATOR -> src.substring(0, end) + " " + t.lexeme() + src.substring(end);
+                case KEYWORD_AS_IDENTIFIER -> replace(src, start, end, KEYWORDS);
+                case BAD_DIRECTION -> replace(src, start, end, MISSPELT);
+                case STRAY_CHARACTER -> replace(src, start, start, STRAY);
+                case OVERFLOWING_NUMBER -> src.substring(0, start) + "9223372036854775808" + src.substring(end);
+            };
+            if (!parses(broken)) return broken;
+        }
+        return null;
+    }
+
+    /** A near miss of {@code src} by some mutation that applies to it; null only if none does. */
+    public String nearMiss(String src) {
+        Mutation[] all = Mutation.values();
+        int first = random.nextInt(all.length);
+        for (int i = 0; i < all.length; i++) {
+            String broken = nearMiss(src, all[(first + i) % all.length]);
+            if (broken != null) return broken;
+        }
+        return null;
+    }
+
+    private static boolean isSite(StrategyParser.Token t, Mutation mutation) {
+        StrategyParser.TokenType type = t.type();
+        return switch (mutation) {
+            case DROP_TOKEN, STRAY_CHARACTER -> true;
+            case DOUBLED_OPERATOR -> type == StrategyParser.TokenType.PLUS || type == StrategyParser.TokenType.MINUS
+                    || type == StrategyParser.TokenType.STAR || type == StrategyParser.TokenType.SLASH
+                    || type == StrategyParser.TokenType.PERCENT || type == StrategyParser.TokenType.CARET;
+            case KEYWORD_AS_IDENTIFIER -> type == StrategyParser.TokenType.IDENT;
+            case UNCLOSED -> type == StrategyParser.TokenType.RPAREN || type == StrategyParser.TokenType.RBRACE;
+            case MISSING_ELSE -> type == StrategyParser.TokenType.ELSE;
+            case BAD_DIRECTION -> type.compareTo(StrategyParser.TokenType.UP) >= 0 && type.compareTo(StrategyParser.TokenType.DOWNRIGHT) <= 0;
+            case OVERFLOWING_NUMBER -> type == StrategyParser.TokenType.NUMBER;
+        };
+    }
+
+    private String replace(String src, int start, int end, String[] choices) {
+        return src.substring(0, start) + " " + choices[random.nextInt(choices.length)] + " " + src.substring(end);
+    }
+
+    private static boolean parses(String src) {
+        try {
+            StrategyParser.parse(src);
+            return true;
+        } catch (StrategyParser.ParseException e) {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,302 @@
+import java.util.*;
+
+/**
+ * Flat intermediate form: a strategy lowered to a dense {@code int[]} instruction stream plus a
+ * {@code long[]} constant pool, executed by a single loop-and-switch interpreter over a {@code long[]}
+ * variable file and operand stack. Parens vanish, blocks become straight-line code, operators become
+ * opcodes, and the commonest shapes get fused superinstructions. Variables are the slots assigned by
+ * {@link StrategyResolver}. Semantics are exactly those of {@link StrategyInterpreter}.
+ */
+public final class StrategyIR {
+
+    // Opcodes. Operands follow the opcode inline; jump targets are absolute code indices.
+    static final int HALT = 0;              //
+    static final int CONST = 1;             // k           push consts[k]
+    static final int LOAD = 2;              // s           push locals[s]
+    static final int STORE = 3;             // s           locals[s] = pop
+    static final int ADD = 4;               //
+    static final int SUB = 5;               //
+    static final int MUL = 6;               //
+    static final int DIV = 7;               //
+    static final int MOD = 8;               //
+    static final int POW = 9;               //
+    static final int ALLY = 10;             //
+    static final int OPPONENT = 11;         //
+    static final int NEARBY = 12;           // d
+    static final int MOVE = 13;             // d
+    static final int SHOOT = 14;            // d           pops expenditure
+    static final int JUMP = 15;             // t
+    static final int JUMP_IF_NOT = 16;      // t           pops condition
+    // Superinstructions
+    static final int BIN_VC = 17;           // op s k      push locals[s] op consts[k]
+    static final int BIN_CV = 18;           // op k s      push consts[k] op locals[s]
+    static final int BIN_VV = 19;           // op a b      push locals[a] op locals[b]
+    static final int INC = 20;              // s k         locals[s] += consts[k]
+    static final int JUMP_IF_NOT_VAR = 21;  // s t
+    static final int JUMP_IF_NOT_SUB_VC = 22; // s k t     jump unless locals[s] - consts[k] > 0
+    static final int JUMP_IF_NOT_SUB_CV = 23; // k s t     jump unless consts[k] - locals[s] > 0
+    static final int LOAD_GLOBAL = 24;      // g           push globals[g]
+    static final int STORE_GLOBAL = 25;     // g           globals[g] = pop
+
+    private static final String[] NAMES = {
+            "HALT", "CONST", "LOAD", "STORE", "ADD", "SUB", "MUL", "DIV", "MOD", "POW",
+            "ALLY", "OPPONENT", "NEARBY", "MOVE", "SHOOT", "JUMP", "JUMP_IF_NOT",
+            "BIN_VC", "BIN_CV", "BIN_VV", "INC", "JUMP_IF_NOT_VAR", "JUMP_IF_NOT_SUB_VC", "JUMP_IF_NOT_SUB_CV",
+            "LOAD_GLOBAL", "STORE_GLOBAL"
+    };
+    static final int[] OPERANDS = {
+            0, 1, 1, 1, 0, 0, 0, 0, 0, 0,
+            0, 0, 1, 1, 1, 1, 1,
+            3, 3, 3, 2, 2, 3, 3,
+            1, 1
+    };
+
+    static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+
+    public static final class Program {
+        private final StrategyResolver.ResolvedProgram resolved;
+        private final int[] code;
+        private final long[] consts;
+
+        private Program(StrategyResolver.ResolvedProgram resolved, int[] code, long[] consts) {
+            this.resolved = resolved;
+            this.code = code;
+            this.consts = consts;
+        }
+
+        public StrategyResolver.ResolvedProgram resolved() { return resolved; }
+
+        int[] code() { return code; }
+
+        long[] consts() { return consts; }
+
+        /** Runs one turn on a frame made by {@link #resolved()}; allocates nothing. */
+        public void execute(StrategyResolver.Frame frame, long[] globals, StrategyInterpreter.Environment env) {
+            final int[] code = this.code;
+            final long[] consts = this.consts;
+            final long[] vars = frame.locals();
+            final long[] stack = frame.stack();
+            int pc = 0, sp = 0;
+            while (true) {
+                switch (code[pc]) {
+                    case HALT -> { return; }
+                    case CONST -> { stack[sp++] = consts[code[pc + 1]]; pc += 2; }
+                    case LOAD -> { stack[sp++] = vars[code[pc + 1]]; pc += 2; }
+                    case STORE -> { vars[code[pc + 1]] = stack[--sp]; pc += 2; }
+                    case ADD -> { sp--; stack[sp - 1] += stack[sp]; pc++; }
+                    case SUB -> { sp--; stack[sp - 1] -= stack[sp]; pc++; }
+                    case MUL -> { sp--; stack[sp - 1] *= stack[sp]; pc++; }
+                    case DIV, MOD, POW -> { sp--; stack[sp - 1] = arith(code[pc], stack[sp - 1], stack[sp]); pc++; }
+                    case ALLY -> { stack[sp++] = env.ally(); pc++; }
+                    case OPPONENT -> { stack[sp++] = env.opponent(); pc++; }
+                    case NEARBY -> { stack[sp++] = env.nearby(DIRECTIONS[code[pc + 1]]); pc += 2; }
+                    case MOVE -> { env.move(DIRECTIONS[code[pc + 1]]); pc += 2; }
+                    case SHOOT -> { env.shoot(DIRECTIONS[code[pc + 1]], stack[--sp]); pc += 2; }
+                    case JUMP -> pc = code[pc + 1];
+                    case JUMP_IF_NOT -> pc = StrategyInterpreter.truthy(stack[--sp]) ? pc + 2 : code[pc + 1];
+                    case BIN_VC -> { stack[sp++] = arith(code[pc + 1], vars[code[pc + 2]], consts[code[pc + 3]]); pc += 4; }
+                    case BIN_CV -> { stack[sp++] = arith(code[pc + 1], consts[code[pc + 2]], vars[code[pc + 3]]); pc += 4; }
+                    case BIN_VV -> { stack[sp++] = arith(code[pc + 1], vars[code[pc + 2]], vars[code[pc + 3]]); pc += 4; }
+                    case INC -> { vars[code[pc + 1]] += consts[code[pc + 2]]; pc += 3; }
+                    case JUMP_IF_NOT_VAR -> pc = StrategyInterpreter.truthy(vars[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    case JUMP_IF_NOT_SUB_VC -> pc = StrategyInterpreter.truthy(vars[code[pc + 1]] - consts[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+                    case JUMP_IF_NOT_SUB_CV -> pc = StrategyInterpreter.truthy(consts[code[pc + 1]] - vars[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+                    case LOAD_GLOBAL -> { stack[sp++] = globals[code[pc + 1]]; pc += 2; }
+                    case STORE_GLOBAL -> { globals[code[pc + 1]] = stack[--sp]; pc += 2; }
+                    default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+                }
+            }
+        }
+
+        /** One instruction per line, for debugging lowerings. */
+        public String disassemble() {
+            StringBuilder sb = new StringBuilder();
+            for (int pc = 0; pc < code.length; pc += 1 + OPERANDS[code[pc]]) {
+                sb.append(String.format("%4d  %-18s", pc, NAMES[code[pc]]));
+                for (int i = 1; i <= OPERANDS[code[pc]]; i++) sb.append(' ').append(code[pc + i]);
+                sb.append('\n');
+            }
+            return sb.toString();
+        }
+    }
+
+    private StrategyIR() {}
+
+    static long arith(int op, long l, long r) {
+        return switch (op) {
+            case ADD -> l + r;
+            case SUB -> l - r;
+            case MUL -> l * r;
+            case DIV -> l / StrategyInterpreter.divisor(r);
+            case MOD -> l % StrategyInterpreter.divisor(r);
+            case POW -> StrategyInterpreter.pow(l, r);
+            default -> throw new IllegalStateException("Not an arithmetic opcode: " + op);
+        };
+    }
+
+    static int opcode(String op) {
+        return switch (op) {
+            case "+" -> ADD;
+            case "-" -> SUB;
+            case "*" -> MUL;
+            case "/" -> DIV;
+            case "%" -> MOD;
+            case "^" -> POW;
+            default -> throw new IllegalStateException("Unknown operator: " + op);
+        };
+    }
+
+    public static Program lower(List<StrategyParser.Stmt> program) {
+        return lower(StrategyResolver.resolve(program));
+    }
+
+    public static Program lower(StrategyResolver.ResolvedProgram resolved) {
+        Lowering l = new Lowering(resolved);
+        for (StrategyParser.Stmt s : resolved.statements()) l.stmt(s);
+        l.emit(HALT);
+        return new Program(resolved, l.code(), l.consts());
+    }
+
+    private static final class Lowering {
+        private final StrategyResolver.ResolvedProgram slots;
+        private final Map<Long, Integer> constIndex = new HashMap<>();
+        private final List<Long> consts = new ArrayList<>();
+        private int[] code = new int[64];
+        private int size;
+
+        Lowering(StrategyResolver.ResolvedProgram slots) {
+            this.slots = slots;
+        }
+
+        void stmt(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                int slot = slots.slot(a.name());
+                StrategyParser.Expr value = strip(a.value());
+                if (slot >= 0 && value instanceof StrategyParser.Expr.Binary b && isIncrement(b, a.name())) {
+                    long k = ((StrategyParser.Expr.Num) strip(b.right())).value();
+                    emit(INC, slot, constant(b.op().equals("+") ? k : -k));
+                } else {
+                    expr(value);
+                    if (slot >= 0) emit(STORE, slot);
+                    else emit(STORE_GLOBAL, ~slot);
+                }
+            } else if (stmt instanceof StrategyParser.Stmt.Done) {
+                emit(HALT);
+            } else if (stmt instanceof StrategyParser.Stmt.Move m) {
+                emit(MOVE, m.dir().ordinal());
+            } else if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+                expr(s.expenditure());
+                emit(SHOOT, s.dir().ordinal());
+            } else if (stmt instanceof StrategyParser.Stmt.Block b) {
+                for (StrategyParser.Stmt s : b.statements()) stmt(s);
+            } else if (stmt instanceof StrategyParser.Stmt.If i) {
+                int toElse = branchUnless(i.cond());
+                stmt(i.thenBranch());
+                emit(JUMP, -1);
+                int toEnd = size - 1;
+                code[toElse] = size;
+                stmt(i.elseBranch());
+                code[toEnd] = size;
+            } else if (stmt instanceof StrategyParser.Stmt.While w) {
+                int top = size;
+                int toEnd = branchUnless(w.cond());
+                stmt(w.body());
+                emit(JUMP, top);
+                code[toEnd] = size;
+            } else {
+                throw new IllegalStateException("Unknown statement: " + stmt);
+            }
+        }
+
+        /** {@code x = x + k} / {@code x = x - k}: the subtraction is folded into a negated constant. */
+        private static boolean isIncrement(StrategyParser.Expr.Binary b, String name) {
+            return (b.op().equals("+") || b.op().equals("-"))
+                    && strip(b.left()) instanceof StrategyParser.Expr.Var v && v.name().equals(name)
+                    && strip(b.right()) instanceof StrategyParser.Expr.Num;
+        }
+
+        /** Emits a conditional jump taken when {@code cond} is not positive; returns the target's index. */
+        private int branchUnless(StrategyParser.Expr cond) {
+            cond = strip(cond);
+            if (local(cond) >= 0) {
+                emit(JUMP_IF_NOT_VAR, local(cond), -1);
+                return size - 1;
+            }
+            if (cond instanceof StrategyParser.Expr.Binary b && b.op().equals("-")) {
+                StrategyParser.Expr l = strip(b.left()), r = strip(b.right());
+                if (local(l) >= 0 && r instanceof StrategyParser.Expr.Num n) {
+                    emit(JUMP_IF_NOT_SUB_VC, local(l), constant(n.value()), -1);
+                    return size - 1;
+                }
+                if (l instanceof StrategyParser.Expr.Num n && local(r) >= 0) {
+                    emit(JUMP_IF_NOT_SUB_CV, constant(n.value()), local(r), -1);
+                    return size - 1;
+                }
+            }
+            expr(cond);
+            emit(JUMP_IF_NOT, -1);
+            return size - 1;
+        }
+
+        void expr(StrategyParser.Expr expr) {
+            expr = strip(expr);
+            if (expr instanceof StrategyParser.Expr.Num n) {
+                emit(CONST, constant(n.value()));
+            } else if (expr instanceof StrategyParser.Expr.Var v) {
+                int slot = slots.slot(v.name());
+                if (slot >= 0) emit(LOAD, slot);
+                else emit(LOAD_GLOBAL, ~slot);
+            } else if (expr instanceof StrategyParser.Expr.Binary b) {
+                int op = opcode(b.op());
+                StrategyParser.Expr l = strip(b.left()), r = strip(b.right());
+                if (local(l) >= 0 && r instanceof StrategyParser.Expr.Num rn) {
+                    emit(BIN_VC, op, local(l), constant(rn.value()));
+                } else if (l instanceof StrategyParser.Expr.Num ln && local(r) >= 0) {
+                    emit(BIN_CV, op, constant(ln.value()), local(r));
+                } else if (local(l) >= 0 && local(r) >= 0) {
+                    emit(BIN_VV, op, local(l), local(r));
+                } else {
+                    expr(l);
+                    expr(r);
+                    emit(op);
+                }
+            } else if (expr instanceof StrategyParser.Expr.Info i) {
+                switch (i.kind()) {
+                    case ALLY -> emit(ALLY);
+                    case OPPONENT -> emit(OPPONENT);
+                    case NEARBY -> emit(NEARBY, i.dirOrNull().ordinal());
+                }
+            } else {
+                throw new IllegalStateException("Unknown expression: " + expr);
+            }
+        }
+
+        private static StrategyParser.Expr strip(StrategyParser.Expr expr) {
+            while (expr instanceof StrategyParser.Expr.Paren p) expr = p.inner();
+            return expr;
+        }
+
+        /** Local slot of a variable reference, or -1 for anything else (including globals). */
+        private int local(StrategyParser.Expr expr) {
+            return expr instanceof StrategyParser.Expr.Var v ? Math.max(slots.slot(v.name()), -1) : -1;
+        }
+
+        private int constant(long v) {
+            return constIndex.computeIfAbsent(v, k -> { consts.add(k); return consts.size() - 1; });
+        }
+
+        void emit(int... words) {
+            if (size + words.length > code.length) code = Arrays.copyOf(code, Math.max(code.length * 2, size + words.length));
+            System.arraycopy(words, 0, code, size, words.length);
+            size += words.length;
+        }
+
+        int[] code() { return Arrays.copyOf(code, size); }
+
+        long[] consts() {
+            long[] out = new long[consts.size()];
+            for (int i = 0; i < out.length; i++) out[i] = consts.get(i);
+            return out;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+import java.util.*;
+
+public final class StrategyInterpreter {
+
+    /** Game-side view a strategy runs against: info queries and the two action commands. */
+    public interface Environment {
+        long ally();
+        long opponent();
+        long nearby(StrategyParser.Direction dir);
+        void move(StrategyParser.Direction dir);
+        void shoot(StrategyParser.Direction dir, long expenditure);
+    }
+
+    public static final class EvalException extends RuntimeException {
+        public EvalException(String message) {
+            super(message);
+        }
+    }
+
+    private StrategyInterpreter() {}
+
+    /**
+     * Reference tree-walking evaluator. Every other execution engine must agree with it.
+     * Variables that were never assigned read as 0; a condition holds when it is positive.
+     */
+    public static void execute(List<StrategyParser.Stmt> program, Map<String, Long> vars, Environment env) {
+        for (StrategyParser.Stmt s : program) {
+            if (!exec(s, vars, env)) return;
+        }
+    }
+
+    /** Returns false once a {@code done} has been executed. */
+    private static boolean exec(StrategyParser.Stmt stmt, Map<String, Long> vars, Environment env) {
+        if (stmt instanceof StrategyParser.Stmt.Assign a) {
+            vars.put(a.name(), eval(a.value(), vars, env));
+            return true;
+        }
+        if (stmt instanceof StrategyParser.Stmt.Done) {
+            return false;
+        }
+        if (stmt instanceof StrategyParser.Stmt.Move m) {
+            env.move(m.dir());
+            return true;
+        }
+        if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+            env.shoot(s.dir(), eval(s.expenditure(), vars, env));
+            return true;
+        }
+        if (stmt instanceof StrategyParser.Stmt.Block b) {
+            for (StrategyParser.Stmt s : b.statements()) {
+                if (!exec(s, vars, env)) return false;
+            }
+            return true;
+        }
+        if (stmt instanceof StrategyParser.Stmt.If i) {
+            return truthy(eval(i.cond(), vars, env))
+                    ? exec(i.thenBranch(), vars, env)
+                    : exec(i.elseBranch(), vars, env);
+        }
+        if (stmt instanceof StrategyParser.Stmt.While w) {
+            while (truthy(eval(w.cond(), vars, env))) {
+                if (!exec(w.body(), vars, env)) return false;
+            }
+            return true;
+        }
+        throw new IllegalStateException("Unknown statement: " + stmt);
+    }
+
+    public static long eval(StrategyParser.Expr expr, Map<String, Long> vars, Environment env) {
+        if (expr instanceof StrategyParser.Expr.Num n) return n.value();
+        if (expr instanceof StrategyParser.Expr.Var v) return vars.getOrDefault(v.name(), 0L);
+        if (expr instanceof StrategyParser.Expr.Paren p) return eval(p.inner(), vars, env);
+        if (expr instanceof StrategyParser.Expr.Binary b) {
+            long l = eval(b.left(), vars, env);
+            long r = eval(b.right(), vars, env);
+            return binary(b.op(), l, r);
+        }
+        if (expr instanceof StrategyParser.Expr.Info i) {
+            return switch (i.kind()) {
+                case ALLY -> env.ally();
+                case OPPONENT -> env.opponent();
+                case NEARBY -> env.nearby(i.dirOrNull());
+            };
+        }
+        throw new IllegalStateException("Unknown expression: " + expr);
+    }
+
+    static long binary(String op, long l, long r) {
+        return switch (op) {
+            case "+" -> l + r;
+            case "-" -> l - r;
+            case "*" -> l * r;
+            case "/" -> l / divisor(r);
+            case "%" -> l % divisor(r);
+            case "^" -> pow(l, r);
+            default -> throw new IllegalStateException("Unknown operator: " + op);
+        };
+    }
+
+    static boolean truthy(long v) {
+        return v > 0;
+    }
+
+    /** Division and modulo by zero are runtime errors, not silently 0. */
+    static long divisor(long r) {
+        if (r == 0) throw new EvalException("Division by zero");
+        return r;
+    }
+
+    /** Integer power with wrap-around on overflow; negative exponents are runtime errors. */
+    static long pow(long base, long exp) {
+        if (exp < 0) throw new EvalException("Negative exponent: " + exp);
+        long result = 1;
+        while (exp != 0) {
+            if ((exp & 1) != 0) result *= base;
+            exp >>>= 1;
+            if (exp != 0) base *= base;
+        }
+        return result;
+    }
+}
@@ -0,0 +1,84 @@
+import jdk.incubator.vector.LongVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * The loops of {@link StrategyLanes} written against the Vector API: whole vectors of lanes at a time,
+ * then the remainder one by one. Only loaded when {@link StrategyLanes#VECTOR_API} says the
+ * {@code jdk.incubator.vector} module is there, so nothing else may refer to it.
+ */
+final class StrategyLaneVectors {
+
+    private static final VectorSpecies<Long> SPECIES = LongVector.SPECIES_PREFERRED;
+
+    private StrategyLaneVectors() {}
+
+    /** Whether a vector holds more than one lane on this machine. */
+    static boolean worthwhile() {
+        return SPECIES.length() > 1;
+    }
+
+    static void add(long[] l, long[] r, long[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, l, i).add(LongVector.fromArray(SPECIES, r, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) out[i] = l[i] + r[i];
+    }
+
+    static void sub(long[] l, long[] r, long[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, l, i).sub(LongVector.fromArray(SPECIES, r, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) out[i] = l[i] - r[i];
+    }
+
+    static void mul(long[] l, long[] r, long[] out, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            LongVector.fromArray(SPECIES, l, i).mul(LongVector.fromArray(SPECIES, r, i)).intoArray(out, i);
+        }
+        for (; i < n; i++) out[i] = l[i] * r[i];
+    }
+
+    /** {@code target[i] = value[i]} in the lanes {@code mask} selects and {@code halted} does not. */
+    static void assign(long[] value, long[] target, boolean[] mask, boolean[] halted, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            VectorMask<Long> live = live(mask, halted, i);
+            LongVector.fromArray(SPECIES, target, i).blend(LongVector.fromArray(SPECIES, value, i), live).intoArray(target, i);
+        }
+        for (; i < n; i++) if (mask[i] && !halted[i]) target[i] = value[i];
+    }
+
+    /** Splits the live lanes of {@code mask} by the sign of {@code cond}: positive to {@code yes}, the rest to {@code no}. */
+    static void split(long[] cond, boolean[] mask, boolean[] halted, boolean[] yes, boolean[] no, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            VectorMask<Long> live = live(mask, halted, i);
+            VectorMask<Long> positive = LongVector.fromArray(SPECIES, cond, i).compare(VectorOperators.GT, 0);
+            live.and(positive).intoArray(yes, i);
+            live.andNot(positive).intoArray(no, i);
+        }
+        for (; i < n; i++) {
+            boolean go = mask[i] && !halted[i];
+            yes[i] = go && cond[i] > 0;
+            no[i] = go && cond[i] <= 0;
+        }
+    }
+
+    /** Keeps in {@code going} only the live lanes where {@code cond} is positive. */
+    static void narrow(long[] cond, boolean[] going, boolean[] halted, int n) {
+        int i = 0;
+        for (int bound = SPECIES.loopBound(n); i < bound; i += SPECIES.length()) {
+            live(going, halted, i).and(LongVector.fromArray(SPECIES, cond, i).compare(VectorOperators.GT, 0)).intoArray(going, i);
+        }
+        for (; i < n; i++) going[i] = going[i] && !halted[i] && cond[i] > 0;
+    }
+
+    private static VectorMask<Long> live(boolean[] mask, boolean[] halted, int i) {
+        return VectorMask.fromArray(SPECIES, mask, i).andNot(VectorMask.fromArray(SPECIES, halted, i));
+    }
+}
@@ -0,0 +1,300 @@
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Runs one resolved strategy for many minions at once. Each variable is a {@code long[]} with one lane
+ * per minion, and every expression node writes its result to a lane array of its own, so arithmetic
+ * is a plain counted loop over the lanes that the JIT can turn into vector instructions. Branches and
+ * loops keep a mask of the lanes still going their way; {@code done} and runtime errors retire a lane
+ * for the rest of the run.
+ *
+ * <p>When the JVM runs with {@code --add-modules jdk.incubator.vector}, addition, subtraction,
+ * multiplication, assignment under a mask and the branch tests use {@link StrategyLaneVectors}
+ * instead, which does not leave vectorizing to the JIT; without the module the loops here run.
+ *
+ * <p>Each lane ends up exactly as running the program once for that minion would leave it: same
+ * variables, same calls on its own {@link StrategyInterpreter.Environment} in the same order, and the
+ * same {@link StrategyInterpreter.EvalException}, if any. Globals are per lane too, so write them back
+ * the way the caller merges them (see {@link TurnScheduler}). There is no metering: a lane that loops
+ * forever keeps the whole batch running.
+ */
+public final class StrategyLanes {
+
+    /** Whether the Vector API can be used: its module is loaded and a vector holds more than one lane. */
+    static final boolean VECTOR_API = ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent()
+            && StrategyLaneVectors.worthwhile();
+
+    private final StrategyResolver.ResolvedProgram program;
+    private final int capacity;
+    private final boolean vectorized;
+    private final long[][] locals;  // slot -> lanes
+    private final long[][] globals; // global index -> lanes
+    private final Stmt[] body;
+    private final boolean[] all;
+    private final boolean[] halted;
+    private final StrategyInterpreter.EvalException[] errors;
+    private StrategyInterpreter.Environment[] envs;
+    private int lanes;
+
+    public StrategyLanes(StrategyResolver.ResolvedProgram program, int capacity) {
+        this(program, capacity, VECTOR_API);
+    }
+
+    /** @param vectorized whether to use the Vector API; ignored unless {@link #VECTOR_API} */
+    StrategyLanes(StrategyResolver.ResolvedProgram program, int capacity, boolean vectorized) {
+        if (capacity <= 0) throw new IllegalArgumentException("Capacity must be positive");
+        this.program = program;
+        this.capacity = capacity;
+        this.vectorized = vectorized && VECTOR_API;
+        this.locals = new long[program.localCount()][capacity];
+        this.globals = new long[program.globals().size()][capacity];
+        this.all = new boolean[capacity];
+        this.halted = new boolean[capacity];
+        this.errors = new StrategyInterpreter.EvalException[capacity];
+        this.body = compile(program.statements());
+    }
+
+    public int capacity() { return capacity; }
+
+    boolean vectorized() { return vectorized; }
+
+    /** Copies a minion's variables into {@code lane}. */
+    public void load(int lane, StrategyResolver.Frame frame, long[] globalValues) {
+        long[] vars = frame.locals();
+        for (int s = 0; s < locals.length; s++) locals[s][lane] = vars[s];
+        for (int g = 0; g < globals.length; g++) globals[g][lane] = globalValues[g];
+    }
+
+    /** Copies {@code lane}'s variables back to a minion. */
+    public void store(int lane, StrategyResolver.Frame frame, long[] globalValues) {
+        long[] vars = frame.locals();
+        for (int s = 0; s < locals.length; s++) vars[s] = locals[s][lane];
+        for (int g = 0; g < globals.length; g++) globalValues[g] = globals[g][lane];
+    }
+
+    /** Runs the strategy once for lanes {@code [0, lanes)}, lane {@code i} against {@code envs[i]}. */
+    public void run(int lanes, StrategyInterpreter.Environment[] envs) {
+        if (lanes < 0 || lanes > capacity || envs.length < lanes) throw new IllegalArgumentException("Bad lane count " + lanes);
+        this.lanes = lanes;
+        this.envs = envs;
+        Arrays.fill(all, 0, lanes, true);
+        Arrays.fill(halted, 0, lanes, false);
+        Arrays.fill(errors, 0, lanes, null);
+        try {
+            for (Stmt s : body) s.exec(all);
+        } finally {
+            this.envs = null;
+        }
+    }
+
+    /** The error {@code lane} stopped with in the last run, or {@code null}. */
+    public StrategyInterpreter.EvalException error(int lane) { return errors[lane]; }
+
+    private boolean live(boolean[] mask, int i) {
+        return mask[i] && !halted[i];
+    }
+
+    private boolean any(boolean[] mask) {
+        for (int i = 0; i < lanes; i++) if (mask[i] && !halted[i]) return true;
+        return false;
+    }
+
+    private void fail(int lane, StrategyInterpreter.EvalException e) {
+        errors[lane] = e;
+        halted[lane] = true;
+    }
+
+    // ------------------------------------------------------------------ compiled tree
+
+    private abstract static class Stmt {
+        abstract void exec(boolean[] mask);
+    }
+
+    private abstract static class Expr {
+        /** Lanes under {@code mask} hold the value; the others hold anything. */
+        abstract long[] eval(boolean[] mask);
+    }
+
+    private Stmt[] compile(List<StrategyParser.Stmt> stmts) {
+        Stmt[] out = new Stmt[stmts.size()];
+        for (int i = 0; i < out.length; i++) out[i] = compile(stmts.get(i));
+        return out;
+    }
+
+    private Stmt compile(StrategyParser.Stmt stmt) {
+        if (stmt instanceof StrategyParser.Stmt.Assign a) {
+            long[] target = lanesOf(a.name());
+            Expr value = compile(a.value());
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    long[] v = value.eval(mask);
+                    if (vectorized) StrategyLaneVectors.assign(v, target, mask, halted, lanes);
+                    else for (int i = 0; i < lanes; i++) if (live(mask, i)) target[i] = v[i];
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.Done) {
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    for (int i = 0; i < lanes; i++) if (live(mask, i)) halted[i] = true;
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.Move m) {
+            StrategyParser.Direction dir = m.dir();
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    for (int i = 0; i < lanes; i++) if (live(mask, i)) envs[i].move(dir);
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+            StrategyParser.Direction dir = s.dir();
+            Expr expenditure = compile(s.expenditure());
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    long[] e = expenditure.eval(mask);
+                    for (int i = 0; i < lanes; i++) if (live(mask, i)) envs[i].shoot(dir, e[i]);
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.Block b) {
+            Stmt[] inner = compile(b.statements());
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    for (Stmt s : inner) {
+                        if (!any(mask)) return;
+                        s.exec(mask);
+                    }
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.If f) {
+            Expr cond = compile(f.cond());
+            Stmt then = compile(f.thenBranch()), otherwise = compile(f.elseBranch());
+            boolean[] yes = new boolean[capacity], no = new boolean[capacity];
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    long[] c = cond.eval(mask);
+                    if (vectorized) {
+                        StrategyLaneVectors.split(c, mask, halted, yes, no, lanes);
+                    } else {
+                        for (int i = 0; i < lanes; i++) {
+                            boolean go = live(mask, i);
+                            yes[i] = go && c[i] > 0;
+                            no[i] = go && c[i] <= 0;
+                        }
+                    }
+                    if (any(yes)) then.exec(yes);
+                    if (any(no)) otherwise.exec(no);
+                }
+            };
+        }
+        if (stmt instanceof StrategyParser.Stmt.While w) {
+            Expr cond = compile(w.cond());
+            Stmt loop = compile(w.body());
+            boolean[] going = new boolean[capacity];
+            return new Stmt() {
+                void exec(boolean[] mask) {
+                    System.arraycopy(mask, 0, going, 0, lanes);
+                    while (true) {
+                        long[] c = cond.eval(going);
+                        if (vectorized) StrategyLaneVectors.narrow(c, going, halted, lanes);
+                        else for (int i = 0; i < lanes; i++) going[i] = live(going, i) && c[i] > 0;
+                        if (!any(going)) return;
+                        loop.exec(going);
+                    }
+                }
+            };
+        }
+        throw new IllegalStateException("Unknown statement: " + stmt);
+    }
+
+    private long[] lanesOf(String name) {
+        int slot = program.slot(name);
+        return slot >= 0 ? locals[slot] : globals[~slot];
+    }
+
+    private Expr compile(StrategyParser.Expr expr) {
+        if (expr instanceof StrategyParser.Expr.Num n) {
+            long[] out = new long[capacity];
+            Arrays.fill(out, n.value());
+            return new Expr() {
+                long[] eval(boolean[] mask) { return out; }
+            };
+        }
+        if (expr instanceof StrategyParser.Expr.Var v) {
+            long[] out = lanesOf(v.name());
+            return new Expr() {
+                long[] eval(boolean[] mask) { return out; }
+            };
+        }
+        if (expr instanceof StrategyParser.Expr.Paren p) return compile(p.inner());
+        if (expr instanceof StrategyParser.Expr.Binary b) return binary(StrategyIR.opcode(b.op()), compile(b.left()), compile(b.right()));
+        if (expr instanceof StrategyParser.Expr.Info info) {
+            StrategyParser.InfoKind kind = info.kind();
+            StrategyParser.Direction dir = info.dirOrNull();
+            long[] out = new long[capacity];
+            return new Expr() {
+                long[] eval(boolean[] mask) {
+                    for (int i = 0; i < lanes; i++) {
+                        if (!live(mask, i)) continue;
+                        out[i] = switch (kind) {
+                            case ALLY -> envs[i].ally();
+                            case OPPONENT -> envs[i].opponent();
+                            case NEARBY -> envs[i].nearby(dir);
+                        };
+                    }
+                    return out;
+                }
+            };
+        }
+        throw new IllegalStateException("Unknown expression: " + expr);
+    }
+
+    private Expr binary(int op, Expr left, Expr right) {
+        long[] out = new long[capacity];
+        return switch (op) {
+            // total and side-effect free: run every lane, masked or not, so the loop vectorizes
+            case StrategyIR.ADD -> new Expr() {
+                long[] eval(boolean[] mask) {
+                    long[] l = left.eval(mask), r = right.eval(mask);
+                    if (vectorized) StrategyLaneVectors.add(l, r, out, lanes);
+                    else for (int i = 0; i < lanes; i++) out[i] = l[i] + r[i];
+                    return out;
+                }
+            };
+            case StrategyIR.SUB -> new Expr() {
+                long[] eval(boolean[] mask) {
+                    long[] l = left.eval(mask), r = right.eval(mask);
+                    if (vectorized) StrategyLaneVectors.sub(l, r, out, lanes);
+                    else for (int i = 0; i < lanes; i++) out[i] = l[i] - r[i];
+                    return out;
+                }
+            };
+            case StrategyIR.MUL -> new Expr() {
+                long[] eval(boolean[] mask) {
+                    long[] l = left.eval(mask), r = right.eval(mask);
+                    if (vectorized) StrategyLaneVectors.mul(l, r, out, lanes);
+                    else for (int i = 0; i < lanes; i++) out[i] = l[i] * r[i];
+                    return out;
+                }
+            };
+            // may fail per lane: only live lanes run, and a failure retires the lane before the next node
+            default -> new Expr() {
+                long[] eval(boolean[] mask) {
+                    long[] l = left.eval(mask), r = right.eval(mask);
+                    for (int i = 0; i < lanes; i++) {
+                        if (!live(mask, i)) continue;
+                        try {
+                            out[i] = StrategyIR.arith(op, l[i], r[i]);
+                        } catch (StrategyInterpreter.EvalException e) {
+                            fail(i, e);
+                        }
+                    }
+                    return out;
+                }
+            };
+        };
+    }
+}
@@ -0,0 +1,179 @@
+/**
+ * Bounded-cost execution of a lowered strategy. Every {@link StrategyIR} instruction is charged from a
+ * {@link CostTable} before it runs; when the next instruction would overdraw the {@link Meter}, the run
+ * stops right there. Where that happens depends only on the program, the costs and the budget, never on
+ * timing, so every replay stops at the same instruction.
+ *
+ * <p>A stopped run leaves its program counter and operand stack in the minion's
+ * {@link StrategyResolver.Frame}; the next {@link Program#run} picks up from there, so a long
+ * computation can span turns. Where the rules want every turn to start afresh, call
+ * {@link StrategyResolver.Frame#restart()} first. Commands are issued whole: a turn never ends
+ * half-way through a {@code move} or {@code shoot}.
+ */
+public final class StrategyMeter {
+
+    /**
+     * What each kind of operation costs. A fused instruction costs the same as the plain instructions
+     * it replaces, but is charged whole before it runs, so a run short of budget can stop before the
+     * first of them where the plain code would stop part-way through. No fused instruction issues a
+     * command, so the observable effects match: the same commands before any stop, and for a run that
+     * completes, the same variables at the same total cost.
+     *
+     * @param variable  reading a constant or variable, or writing a variable
+     * @param arithmetic {@code + - * / %}
+     * @param power     {@code ^}
+     * @param branch    a jump, conditional or not; at least 1, so every loop uses up budget
+     */
+    public record CostTable(int variable, int arithmetic, int power, int branch,
+                            int ally, int opponent, int nearby, int move, int shoot) {
+        public static final CostTable DEFAULT = new CostTable(1, 1, 4, 1, 5, 5, 5, 10, 10);
+
+        public CostTable {
+            if (variable < 0 || arithmetic < 0 || power < 0 || ally < 0 || opponent < 0 || nearby < 0 || move < 0 || shoot < 0) {
+                throw new IllegalArgumentException("Costs must not be negative");
+            }
+            if (branch < 1) throw new IllegalArgumentException("Branch cost must be at least 1");
+        }
+
+        private int operator(int op) {
+            return op == StrategyIR.POW ? power : arithmetic;
+        }
+    }
+
+    public enum Status {
+        /** Reached {@code done} or the end of the strategy; the next run starts from the top. */
+        FINISHED,
+        /** Stopped before an instruction the budget could not pay for; the next run resumes there. */
+        SUSPENDED
+    }
+
+    /** Budget for one run. Refill it at the start of each minion's turn. */
+    public static final class Meter {
+        private long remaining;
+        private long spent;
+
+        public Meter(long budget) {
+            refill(budget);
+        }
+
+        public void refill(long budget) {
+            if (budget < 0) throw new IllegalArgumentException("Budget must not be negative");
+            remaining = budget;
+            spent = 0;
+        }
+
+        public long remaining() { return remaining; }
+
+        /** Charged since the last {@link #refill}. */
+        public long spent() { return spent; }
+    }
+
+    /** A lowered program with its per-instruction costs worked out once. */
+    public static final class Program {
+        private final StrategyIR.Program ir;
+        private final int[] cost; // indexed like the code; only instruction starts are used
+
+        public Program(StrategyIR.Program ir, CostTable costs) {
+            this.ir = ir;
+            int[] code = ir.code();
+            this.cost = new int[code.length];
+            for (int pc = 0; pc < code.length; pc += 1 + StrategyIR.OPERANDS[code[pc]]) cost[pc] = cost(code, pc, costs);
+        }
+
+        public StrategyIR.Program ir() { return ir; }
+
+        /** Cost of the dearest instruction; a budget below this may never get past it. */
+        public int maxCost() {
+            int max = 0;
+            for (int c : cost) max = Math.max(max, c);
+            return max;
+        }
+
+        /**
+         * Runs from the frame's resume point until the strategy finishes or the meter cannot pay for
+         * the next instruction. Metering costs one subtraction and one sign test per instruction.
+         */
+        public Status run(StrategyResolver.Frame frame, long[] globals, StrategyInterpreter.Environment env, Meter meter) {
+            final int[] code = ir.code();
+            final long[] consts = ir.consts();
+            final int[] cost = this.cost;
+            final long[] vars = frame.locals();
+            final long[] stack = frame.stack();
+            int pc = frame.resumePc, sp = frame.resumeSp;
+            frame.restart(); // a run that throws starts over next time
+            final long budget = meter.remaining;
+            long fuel = budget;
+            while (true) {
+                if ((fuel -= cost[pc]) < 0) {
+                    fuel += cost[pc];
+                    frame.suspended = true;
+                    frame.resumePc = pc;
+                    frame.resumeSp = sp;
+                    meter.spent += budget - fuel;
+                    meter.remaining = fuel;
+                    return Status.SUSPENDED;
+                }
+                switch (code[pc]) {
+                    case StrategyIR.HALT -> {
+                        meter.spent += budget - fuel;
+                        meter.remaining = fuel;
+                        return Status.FINISHED;
+                    }
+                    case StrategyIR.CONST -> { stack[sp++] = consts[code[pc + 1]]; pc += 2; }
+                    case StrategyIR.LOAD -> { stack[sp++] = vars[code[pc + 1]]; pc += 2; }
+                    case StrategyIR.STORE -> { vars[code[pc + 1]] = stack[--sp]; pc += 2; }
+                    case StrategyIR.ADD -> { sp--; stack[sp - 1] += stack[sp]; pc++; }
+                    case StrategyIR.SUB -> { sp--; stack[sp - 1] -= stack[sp]; pc++; }
+                    case StrategyIR.MUL -> { sp--; stack[sp - 1] *= stack[sp]; pc++; }
+                    case StrategyIR.DIV, StrategyIR.MOD, StrategyIR.POW -> {
+                        sp--;
+                        stack[sp - 1] = StrategyIR.arith(code[pc], stack[sp - 1], stack[sp]);
+                        pc++;
+                    }
+                    case StrategyIR.ALLY -> { stack[sp++] = env.ally(); pc++; }
+                    case StrategyIR.OPPONENT -> { stack[sp++] = env.opponent(); pc++; }
+                    case StrategyIR.NEARBY -> { stack[sp++] = env.nearby(StrategyIR.DIRECTIONS[code[pc + 1]]); pc += 2; }
+                    case StrategyIR.MOVE -> { env.move(StrategyIR.DIRECTIONS[code[pc + 1]]); pc += 2; }
+                    case StrategyIR.SHOOT -> { env.shoot(StrategyIR.DIRECTIONS[code[pc + 1]], stack[--sp]); pc += 2; }
+                    case StrategyIR.JUMP -> pc = code[pc + 1];
+                    case StrategyIR.JUMP_IF_NOT -> pc = StrategyInterpreter.truthy(stack[--sp]) ? pc + 2 : code[pc + 1];
+                    case StrategyIR.BIN_VC -> { stack[sp++] = StrategyIR.arith(code[pc + 1], vars[code[pc + 2]], consts[code[pc + 3]]); pc += 4; }
+                    case StrategyIR.BIN_CV -> { stack[sp++] = StrategyIR.arith(code[pc + 1], consts[code[pc + 2]], vars[code[pc + 3]]); pc += 4; }
+                    case StrategyIR.BIN_VV -> { stack[sp++] = StrategyIR.arith(code[pc + 1], vars[code[pc + 2]], vars[code[pc + 3]]); pc += 4; }
+                    case StrategyIR.INC -> { vars[code[pc + 1]] += consts[code[pc + 2]]; pc += 3; }
+                    case StrategyIR.JUMP_IF_NOT_VAR -> pc = StrategyInterpreter.truthy(vars[code[pc + 1]]) ? pc + 3 : code[pc + 2];
+                    case StrategyIR.JUMP_IF_NOT_SUB_VC -> pc = StrategyInterpreter.truthy(vars[code[pc + 1]] - consts[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+                    case StrategyIR.JUMP_IF_NOT_SUB_CV -> pc = StrategyInterpreter.truthy(consts[code[pc + 1]] - vars[code[pc + 2]]) ? pc + 4 : code[pc + 3];
+                    case StrategyIR.LOAD_GLOBAL -> { stack[sp++] = globals[code[pc + 1]]; pc += 2; }
+                    case StrategyIR.STORE_GLOBAL -> { globals[code[pc + 1]] = stack[--sp]; pc += 2; }
+                    default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+                }
+            }
+        }
+    }
+
+    private StrategyMeter() {}
+
+    public static Program meter(StrategyIR.Program ir) {
+        return new Program(ir, CostTable.DEFAULT);
+    }
+
+    private static int cost(int[] code, int pc, CostTable c) {
+        return switch (code[pc]) {
+            case StrategyIR.HALT -> 0;
+            case StrategyIR.CONST, StrategyIR.LOAD, StrategyIR.STORE, StrategyIR.LOAD_GLOBAL, StrategyIR.STORE_GLOBAL -> c.variable();
+            case StrategyIR.ADD, StrategyIR.SUB, StrategyIR.MUL, StrategyIR.DIV, StrategyIR.MOD, StrategyIR.POW -> c.operator(code[pc]);
+            case StrategyIR.ALLY -> c.ally();
+            case StrategyIR.OPPONENT -> c.opponent();
+            case StrategyIR.NEARBY -> c.nearby();
+            case StrategyIR.MOVE -> c.move();
+            case StrategyIR.SHOOT -> c.shoot();
+            case StrategyIR.JUMP, StrategyIR.JUMP_IF_NOT -> c.branch();
+            case StrategyIR.BIN_VC, StrategyIR.BIN_CV, StrategyIR.BIN_VV -> 2 * c.variable() + c.operator(code[pc + 1]);
+            case StrategyIR.INC -> 3 * c.variable() + c.arithmetic();
+            case StrategyIR.JUMP_IF_NOT_VAR -> c.variable() + c.branch();
+            case StrategyIR.JUMP_IF_NOT_SUB_VC, StrategyIR.JUMP_IF_NOT_SUB_CV -> 2 * c.variable() + c.arithmetic() + c.branch();
+            default -> throw new IllegalStateException("Bad opcode " + code[pc] + " at " + pc);
+        };
+    }
+}
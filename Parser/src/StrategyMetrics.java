@@ -0,0 +1,330 @@
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Counters, histograms and Flight Recorder events for lexing, parsing and running strategies, each
+ * tagged with a strategy hash. Off by default: {@link StrategyParser#parse(String)},
+ * {@link StrategyParser.Lexer#lex} and {@link TurnScheduler} then pay one read of a volatile flag and
+ * take their usual path. Once {@link #enable()}d they take an instrumented copy of that path, which
+ * updates the registry and emits {@code kombat.Lex}, {@code kombat.Parse} and {@code kombat.Execution}
+ * events; JFR drops the events unless a recording has them enabled.
+ *
+ * <p>A strategy's hash is the first 64 bits of its source's SHA-256, the same as
+ * {@link StrategyCache.Key#a()}, so metrics line up with cache entries.
+ *
+ * <p>The registry keeps one {@link Stats} per strategy up to {@link #capacity(int)} strategies
+ * ({@value #DEFAULT_CAPACITY} by default); strategies seen after that are recorded together in
+ * {@link #overflow()}, so a server that parses every upload stays bounded. Nothing is evicted:
+ * {@link #reset()} after each scrape to start counting afresh.
+ */
+public final class StrategyMetrics {
+
+    public static final int DEFAULT_CAPACITY = 4096;
+
+    private static volatile boolean enabled;
+    private static volatile int capacity = DEFAULT_CAPACITY;
+    private static final ConcurrentHashMap<Long, Stats> STATS = new ConcurrentHashMap<>();
+    private static volatile Stats overflow = new Stats();
+
+    private StrategyMetrics() {}
+
+    public static boolean enabled() { return enabled; }
+
+    public static void enable() { enabled = true; }
+
+    public static void disable() { enabled = false; }
+
+    /**
+     * Caps how many strategies get stats of their own; strategies already registered keep theirs.
+     * Threads registering at the same moment may each take the last place.
+     */
+    public static void capacity(int strategies) {
+        if (strategies < 0) throw new IllegalArgumentException("capacity must not be negative");
+        capacity = strategies;
+    }
+
+    /** Forgets everything recorded so far, the overflow included. */
+    public static void reset() {
+        STATS.clear();
+        overflow = new Stats();
+    }
+
+    public static long hash(String src) {
+        return StrategyCache.Key.of(src).a();
+    }
+
+    /** What has been recorded for the strategy with {@code hash}, or null if nothing has or it overflowed. */
+    public static Stats stats(long hash) { return STATS.get(hash); }
+
+    /** What has been recorded for strategies that found the registry full. */
+    public static Stats overflow() { return overflow; }
+
+    /** Every strategy recorded so far, by hash. The view is live. */
+    public static Map<Long, Stats> all() { return Collections.unmodifiableMap(STATS); }
+
+    private static Stats statsFor(long hash) {
+        Stats s = STATS.get(hash);
+        if (s == null) s = STATS.computeIfAbsent(hash, h -> STATS.size() < capacity ? new Stats() : null);
+        return s != null ? s : overflow;
+    }
+
+    // ------------------------------------------------------------------ registry
+
+    /** Everything recorded for one strategy. All counters may be read while they are updated. */
+    public static final class Stats {
+        public final LongAdder lexes = new LongAdder();
+        public final LongAdder tokens = new LongAdder();
+        public final LongAdder parses = new LongAdder();
+        public final LongAdder failures = new LongAdder();
+        public final LongAdder executions = new LongAdder();
+        public final LongAdder steps = new LongAdder();
+        public final LongAdder infoQueries = new LongAdder();
+        public final LongAdder commands = new LongAdder();
+        public final Histogram lexNanos = new Histogram();
+        public final Histogram parseNanos = new Histogram();
+        public final Histogram nodes = new Histogram();
+        public final Histogram depth = new Histogram();
+        /** Budget charged per execution. */
+        public final Histogram stepsPerExecution = new Histogram();
+
+        private Stats() {}
+    }
+
+    /**
+     * Non-negative values in power-of-two buckets: bucket {@code b} holds values whose highest set bit
+     * is bit {@code b - 1}, and bucket 0 holds zero. Recording is two atomic adds and a max.
+     */
+    public static final class Histogram {
+        private final AtomicLongArray buckets = new AtomicLongArray(65);
+        private final LongAdder sum = new LongAdder();
+        private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+        public void record(long value) {
+            if (value < 0) value = 0;
+            buckets.incrementAndGet(64 - Long.numberOfLeadingZeros(value));
+            sum.add(value);
+            max.accumulate(value);
+        }
+
+        public long count() {
+            long n = 0;
+            for (int b = 0; b < 65; b++) n += buckets.get(b);
+            return n;
+        }
+
+        public long sum() { return sum.sum(); }
+
+        public long max() { return max.get(); }
+
+        public long bucket(int b) { return buckets.get(b); }
+
+        /**
+         * An upper bound on the {@code q} quantile: the top of the bucket it falls in, capped at
+         * {@link #max()}. 0 when nothing was recorded.
+         */
+        public long quantile(double q) {
+            if (q < 0 || q > 1) throw new IllegalArgumentException("Quantile must be in [0, 1]");
+            long n = count();
+            if (n == 0) return 0;
+            long rank = Math.max(1, (long) Math.ceil(q * n)), seen = 0;
+            for (int b = 0; b < 65; b++) {
+                seen += buckets.get(b);
+                if (seen >= rank) return b == 0 ? 0 : Math.min(max(), b == 64 ? Long.MAX_VALUE : (1L << b) - 1);
+            }
+            return max();
+        }
+    }
+
+    // ------------------------------------------------------------------ events
+
+    @Name("kombat.Lex")
+    @Label("Strategy Lex")
+    @Category({"Kombat", "Strategy"})
+    @StackTrace(false)
+    static final class LexEvent extends Event {
+        @Label("Strategy Hash")
+        long strategyHash;
+        @Label("Characters")
+        int characters;
+        @Label("Tokens")
+        int tokens;
+    }
+
+    @Name("kombat.Parse")
+    @Label("Strategy Parse")
+    @Category({"Kombat", "Strategy"})
+    @StackTrace(false)
+    static final class ParseEvent extends Event {
+        @Label("Strategy Hash")
+        long strategyHash;
+        @Label("AST Nodes")
+        int nodes;
+        @Label("Maximum Depth")
+        int maxDepth;
+        @Label("Error Position")
+        @Description("Source position of the syntax error, or -1 if the source parsed")
+        int errorPosition;
+        @Label("Error")
+        String error;
+    }
+
+    @Name("kombat.Execution")
+    @Label("Strategy Execution")
+    @Category({"Kombat", "Strategy"})
+    @StackTrace(false)
+    static final class ExecutionEvent extends Event {
+        @Label("Strategy Hash")
+        long strategyHash;
+        @Label("Minion")
+        int minion;
+        @Label("Steps")
+        @Description("Budget charged, in cost-table units")
+        long steps;
+        @Label("Info Queries")
+        long infoQueries;
+        @Label("Commands")
+        long commands;
+    }
+
+    // ------------------------------------------------------------------ instrumented paths
+
+    /** {@link StrategyParser.Lexer#lexInto(String, StrategyParser.TokenBuffer)}, measured. */
+    static StrategyParser.TokenBuffer lex(String src, StrategyParser.TokenBuffer buf) {
+        return lex(src, hash(src), buf);
+    }
+
+    private static StrategyParser.TokenBuffer lex(String src, long hash, StrategyParser.TokenBuffer buf) {
+        LexEvent event = new LexEvent();
+        event.begin();
+        long start = System.nanoTime();
+        StrategyParser.Lexer.lexInto(src, buf);
+        long nanos = System.nanoTime() - start;
+        event.end();
+        Stats stats = statsFor(hash);
+        stats.lexes.increment();
+        stats.tokens.add(buf.size());
+        stats.lexNanos.record(nanos);
+        if (event.shouldCommit()) {
+            event.strategyHash = hash;
+            event.characters = src.length();
+            event.tokens = buf.size();
+            event.commit();
+        }
+        return buf;
+    }
+
+    /**
+     * {@link StrategyParser#parse(String, StrategyParser.NodeFactory, int)}, measured: a lex event and a
+     * parse event whose time covers both phases. A lexical error is reported by the parse event.
+     */
+    static List<StrategyParser.Stmt> parse(String src, StrategyParser.TokenBuffer buf, StrategyParser.NodeFactory nodes,
+                                           int maxDepth) {
+        long hash = hash(src);
+        Stats stats = statsFor(hash);
+        ParseEvent event = new ParseEvent();
+        event.begin();
+        long start = System.nanoTime();
+        List<StrategyParser.Stmt> program;
+        try {
+            program = new StrategyParser.Parser(lex(src, hash, buf), nodes).maxDepth(maxDepth).parseStrategy();
+        } catch (StrategyParser.ParseException e) {
+            stats.parseNanos.record(System.nanoTime() - start);
+            event.end();
+            stats.parses.increment();
+            stats.failures.increment();
+            if (event.shouldCommit()) {
+                event.strategyHash = hash;
+                event.errorPosition = e.pos();
+                event.error = e.getMessage();
+                event.commit();
+            }
+            throw e;
+        }
+        stats.parseNanos.record(System.nanoTime() - start);
+        event.end();
+        int[] shape = shape(program);
+        stats.parses.increment();
+        stats.nodes.record(shape[0]);
+        stats.depth.record(shape[1]);
+        if (event.shouldCommit()) {
+            event.strategyHash = hash;
+            event.nodes = shape[0];
+            event.maxDepth = shape[1];
+            event.errorPosition = -1;
+            event.commit();
+        }
+        return program;
+    }
+
+    /** One run of a strategy for one minion; called by {@link TurnScheduler} only while enabled. */
+    static void executed(long hash, int minion, long steps, long infoQueries, long commands) {
+        Stats stats = statsFor(hash);
+        stats.executions.increment();
+        stats.steps.add(steps);
+        stats.stepsPerExecution.record(steps);
+        stats.infoQueries.add(infoQueries);
+        stats.commands.add(commands);
+        ExecutionEvent event = new ExecutionEvent();
+        if (event.shouldCommit()) {
+            event.strategyHash = hash;
+            event.minion = minion;
+            event.steps = steps;
+            event.infoQueries = infoQueries;
+            event.commands = commands;
+            event.commit();
+        }
+    }
+
+    /**
+     * {@code {nodes, depth}} of a program: every statement and expression counts as a node, and a
+     * top-level statement is at depth 1. Walks with its own stack, so any tree the parser accepts fits.
+     */
+    static int[] shape(List<StrategyParser.Stmt> program) {
+        ArrayDeque<Object> nodes = new ArrayDeque<>();
+        ArrayDeque<Integer> depths = new ArrayDeque<>();
+        for (StrategyParser.Stmt s : program) {
+            nodes.push(s);
+            depths.push(1);
+        }
+        int count = 0, max = 0;
+        while (!nodes.isEmpty()) {
+            Object node = nodes.pop();
+            int d = depths.pop();
+            count++;
+            max = Math.max(max, d);
+            if (node instanceof StrategyParser.Stmt.Assign a) {
+                nodes.push(a.value()); depths.push(d + 1);
+            } else if (node instanceof StrategyParser.Stmt.Shoot s) {
+                nodes.push(s.expenditure()); depths.push(d + 1);
+            } else if (node instanceof StrategyParser.Stmt.Block b) {
+                for (StrategyParser.Stmt s : b.statements()) { nodes.push(s); depths.push(d + 1); }
+            } else if (node instanceof StrategyParser.Stmt.If i) {
+                nodes.push(i.cond()); depths.push(d + 1);
+                nodes.push(i.thenBranch()); depths.push(d + 1);
+                nodes.push(i.elseBranch()); depths.push(d + 1);
+            } else if (node instanceof StrategyParser.Stmt.While w) {
+                nodes.push(w.cond()); depths.push(d + 1);
+                nodes.push(w.body()); depths.push(d + 1);
+            } else if (node instanceof StrategyParser.Expr.Paren p) {
+                nodes.push(p.inner()); depths.push(d + 1);
+            } else if (node instanceof StrategyParser.Expr.Binary b) {
+                nodes.push(b.left()); depths.push(d + 1);
+                nodes.push(b.right()); depths.push(d + 1);
+            }
+        }
+        return new int[] {count, max};
+    }
+}
@@ -0,0 +1,124 @@
+import java.util.*;
+
+/**
+ * Tree-to-tree simplification run before a strategy reaches any execution engine: constant folding,
+ * paren stripping, dead-branch and dead-loop elimination, block flattening, unreachable code after
+ * {@code done}, and identities such as {@code x*1} and {@code x+0}.
+ *
+ * <p>Observable behaviour is exactly that of {@link StrategyInterpreter} on the original tree. In
+ * particular, a constant operation that fails at runtime (division or modulo by zero, a negative
+ * exponent) is left in place so it still fails, and an operand is only ever discarded when evaluating
+ * it can neither fail nor query the board.
+ */
+public final class StrategyOptimizer {
+
+    private static final StrategyParser.Stmt EMPTY = new StrategyParser.Stmt.Block(List.of());
+
+    private StrategyOptimizer() {}
+
+    /** The optimized program; may be empty if nothing in it can have an effect. */
+    public static List<StrategyParser.Stmt> optimize(List<StrategyParser.Stmt> program) {
+        return List.copyOf(sequence(program));
+    }
+
+    public static StrategyParser.Stmt optimize(StrategyParser.Stmt stmt) {
+        if (stmt instanceof StrategyParser.Stmt.Assign a) {
+            return new StrategyParser.Stmt.Assign(a.name(), optimize(a.value()));
+        }
+        if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+            return new StrategyParser.Stmt.Shoot(s.dir(), optimize(s.expenditure()));
+        }
+        if (stmt instanceof StrategyParser.Stmt.Block b) {
+            List<StrategyParser.Stmt> flat = sequence(b.statements());
+            return flat.size() == 1 ? flat.get(0) : new StrategyParser.Stmt.Block(flat);
+        }
+        if (stmt instanceof StrategyParser.Stmt.If i) {
+            StrategyParser.Expr cond = optimize(i.cond());
+            if (cond instanceof StrategyParser.Expr.Num n) {
+                return optimize(StrategyInterpreter.truthy(n.value()) ? i.thenBranch() : i.elseBranch());
+            }
+            return new StrategyParser.Stmt.If(cond, optimize(i.thenBranch()), optimize(i.elseBranch()));
+        }
+        if (stmt instanceof StrategyParser.Stmt.While w) {
+            StrategyParser.Expr cond = optimize(w.cond());
+            if (cond instanceof StrategyParser.Expr.Num n && !StrategyInterpreter.truthy(n.value())) return EMPTY;
+            return new StrategyParser.Stmt.While(cond, optimize(w.body()));
+        }
+        return stmt; // Done, Move
+    }
+
+    public static StrategyParser.Expr optimize(StrategyParser.Expr expr) {
+        if (expr instanceof StrategyParser.Expr.Paren p) return optimize(p.inner());
+        if (!(expr instanceof StrategyParser.Expr.Binary b)) return expr;
+
+        StrategyParser.Expr l = optimize(b.left()), r = optimize(b.right());
+        if (l instanceof StrategyParser.Expr.Num ln && r instanceof StrategyParser.Expr.Num rn) {
+            try {
+                return new StrategyParser.Expr.Num(StrategyInterpreter.binary(b.op(), ln.value(), rn.value()));
+            } catch (StrategyInterpreter.EvalException e) {
+                return new StrategyParser.Expr.Binary(b.op(), l, r); // must still fail at runtime
+            }
+        }
+        switch (b.op()) {
+            case "+" -> {
+                if (isConst(r, 0)) return l;
+                if (isConst(l, 0)) return r;
+            }
+            case "-" -> {
+                if (isConst(r, 0)) return l;
+            }
+            case "*" -> {
+                if (isConst(r, 1)) return l;
+                if (isConst(l, 1)) return r;
+                if ((isConst(r, 0) && isInert(l)) || (isConst(l, 0) && isInert(r))) return new StrategyParser.Expr.Num(0);
+            }
+            case "/" -> {
+                if (isConst(r, 1)) return l;
+            }
+            case "%" -> {
+                if (isConst(r, 1) && isInert(l)) return new StrategyParser.Expr.Num(0);
+            }
+            case "^" -> {
+                if (isConst(r, 1)) return l;
+                if (isConst(r, 0) && isInert(l)) return new StrategyParser.Expr.Num(1);
+            }
+            default -> { }
+        }
+        return new StrategyParser.Expr.Binary(b.op(), l, r);
+    }
+
+    /** Optimizes a statement list, splicing nested blocks and dropping whatever follows a certain {@code done}. */
+    private static List<StrategyParser.Stmt> sequence(List<StrategyParser.Stmt> statements) {
+        List<StrategyParser.Stmt> out = new ArrayList<>(statements.size());
+        for (StrategyParser.Stmt s : statements) {
+            StrategyParser.Stmt o = optimize(s);
+            if (o instanceof StrategyParser.Stmt.Block b) out.addAll(b.statements());
+            else out.add(o);
+            if (alwaysDone(o)) break;
+        }
+        return out;
+    }
+
+    /** Whether every path through {@code stmt} ends in {@code done}. */
+    private static boolean alwaysDone(StrategyParser.Stmt stmt) {
+        if (stmt instanceof StrategyParser.Stmt.Done) return true;
+        if (stmt instanceof StrategyParser.Stmt.Block b) {
+            return !b.statements().isEmpty() && alwaysDone(b.statements().get(b.statements().size() - 1));
+        }
+        if (stmt instanceof StrategyParser.Stmt.If i) return alwaysDone(i.thenBranch()) && alwaysDone(i.elseBranch());
+        return false;
+    }
+
+    private static boolean isConst(StrategyParser.Expr e, long v) {
+        return e instanceof StrategyParser.Expr.Num n && n.value() == v;
+    }
+
+    /** Evaluating {@code e} cannot fail and does not touch the board, so it may be dropped. */
+    private static boolean isInert(StrategyParser.Expr e) {
+        if (e instanceof StrategyParser.Expr.Num || e instanceof StrategyParser.Expr.Var) return true;
+        if (e instanceof StrategyParser.Expr.Binary b) {
+            return (b.op().equals("+") || b.op().equals("-") || b.op().equals("*")) && isInert(b.left()) && isInert(b.right());
+        }
+        return false;
+    }
+}
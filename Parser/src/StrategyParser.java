@@ -1,3 +1,10 @@
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.nio.CharBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
 
 public final class StrategyParser {
@@ -27,43 +34,88 @@ public final class StrategyParser {
         }
     }
 
-    public static final class Lexer {
+    /**
+     * Struct-of-arrays token stream: one slot per token in reusable primitive arrays, no per-token
+     * objects. Lexemes are sliced out of the source only when someone asks for them.
+     */
+    public static final class TokenBuffer {
+        private static final TokenType[] TYPES = TokenType.values();
+
+        private String src = "";
+        private int base; // source position of src.charAt(0)
+        private byte[] type = new byte[64];
+        private int[] start = new int[64];
+        private int[] end = new int[64];
+        private long[] numValue = new long[64];
+        private int size;
+
+        public int size() { return size; }
+
+        public TokenType type(int i) { return TYPES[type[i]]; }
+
+        public int start(int i) { return start[i]; }
+
+        public int end(int i) { return end[i]; }
+
+        public long numValue(int i) { return numValue[i]; }
+
+        public String lexeme(int i) { return src.substring(start[i] - base, end[i] - base); }
+
+        public List<Token> toTokens() {
+            List<Token> tokens = new ArrayList<>(size);
+            for (int i = 0; i < size; i++) tokens.add(new Token(type(i), lexeme(i), numValue[i], start[i]));
+            return tokens;
+        }
+
+        void reset(String src) {
+            reset(src, 0);
+        }
+
+        void reset(String src, int base) {
+            this.src = src;
+            this.base = base;
+            this.size = 0;
+        }
+
+        void add(TokenType t, int from, int to, long value) {
+            if (size == type.length) {
+                int cap = size * 2;
+                type = Arrays.copyOf(type, cap);
+                start = Arrays.copyOf(start, cap);
+                end = Arrays.copyOf(end, cap);
+                numValue = Arrays.copyOf(numValue, cap);
+            }
+            type[size] = (byte) t.ordinal();
+            start[size] = from;
+            end[size] = to;
+            numValue[size] = value;
+            size++;
+        }
+    }
 
-        private static final Map<String, TokenType> KEYWORDS = Map.ofEntries(
-                Map.entry("done", TokenType.DONE),
-                Map.entry("move", TokenType.MOVE),
-                Map.entry("shoot", TokenType.SHOOT),
-                Map.entry("if", TokenType.IF),
-                Map.entry("then", TokenType.THEN),
-                Map.entry("else", TokenType.ELSE),
-                Map.entry("while", TokenType.WHILE),
-                Map.entry("ally", TokenType.ALLY),
-                Map.entry("opponent", TokenType.OPPONENT),
-                Map.entry("nearby", TokenType.NEARBY),
-                Map.entry("up", TokenType.UP),
-                Map.entry("down", TokenType.DOWN),
-                Map.entry("upleft", TokenType.UPLEFT),
-                Map.entry("upright", TokenType.UPRIGHT),
-                Map.entry("downleft", TokenType.DOWNLEFT),
-                Map.entry("downright", TokenType.DOWNRIGHT)
-        );
-
-        private static final Map<Character, TokenType> SYMBOLS = Map.ofEntries(
-                Map.entry('+', TokenType.PLUS),
-                Map.entry('-', TokenType.MINUS),
-                Map.entry('*', TokenType.STAR),
-                Map.entry('/', TokenType.SLASH),
-                Map.entry('%', TokenType.PERCENT),
-                Map.entry('^', TokenType.CARET),
-                Map.entry('=', TokenType.EQUAL),
-                Map.entry('(', TokenType.LPAREN),
-                Map.entry(')', TokenType.RPAREN),
-                Map.entry('{', TokenType.LBRACE),
-                Map.entry('}', TokenType.RBRACE)
-        );
+    public static final class Lexer {
 
         public static List<Token> lex(String src) {
-            List<Token> tokens = new ArrayList<>();
+            if (StrategyMetrics.enabled()) return StrategyMetrics.lex(src, new TokenBuffer()).toTokens();
+            return lexInto(src, new TokenBuffer()).toTokens();
+        }
+
+        /** Lexes {@code src} into {@code buf}, replacing its previous contents. */
+        public static TokenBuffer lexInto(String src, TokenBuffer buf) {
+            return lexInto(src, 0, buf);
+        }
+
+        /** Lexes a slice of a larger source that starts at {@code base}; positions are in the larger source. */
+        static TokenBuffer lexInto(String src, int base, TokenBuffer buf) {
+            return lexInto(src, base, buf, null);
+        }
+
+        /**
+         * As {@link #lexInto(String, int, TokenBuffer)}, but when {@code diagnostics} is non-null errors are
+         * recorded there instead of thrown: a bad character is skipped and an oversized number lexes as 0.
+         */
+        static TokenBuffer lexInto(String src, int base, TokenBuffer buf, List<Diagnostic> diagnostics) {
+            buf.reset(src, base);
             int pos = 0;
 
             while (pos < src.length()) {
@@ -81,15 +133,21 @@ public final class StrategyParser {
 
                 if (Character.isDigit(c)) {
                     int start = pos;
-                    while (pos < src.length() && Character.isDigit(src.charAt(pos))) pos++;
-                    String s = src.substring(start, pos);
-                    long v;
-                    try {
-                        v = Long.parseLong(s);
-                    } catch (NumberFormatException e) {
-                        throw new ParseException("Number out of range for long", s, start);
+                    long v = 0;
+                    boolean overflow = false;
+                    while (pos < src.length() && Character.isDigit(c = src.charAt(pos))) {
+                        int d = c <= '9' ? c - '0' : Character.digit(c, 10);
+                        if (v > (Long.MAX_VALUE - d) / 10) overflow = true;
+                        else v = v * 10 + d;
+                        pos++;
+                    }
+                    if (overflow) {
+                        Diagnostic d = new Diagnostic(base + start, src.substring(start, pos), "Number out of range for long");
+                        if (diagnostics == null) throw d.toException();
+                        diagnostics.add(d);
+                        v = 0;
                     }
-                    tokens.add(new Token(TokenType.NUMBER, s, v, start));
+                    buf.add(TokenType.NUMBER, base + start, base + pos, v);
                     continue;
                 }
 
@@ -97,26 +155,101 @@ public final class StrategyParser {
                     int start = pos;
                     pos++;
                     while (pos < src.length() && Character.isLetterOrDigit(src.charAt(pos))) pos++;
-                    String ident = src.substring(start, pos);
-
-                    TokenType kw = KEYWORDS.get(ident);
-                    if (kw != null) tokens.add(new Token(kw, ident, start));
-                    else tokens.add(new Token(TokenType.IDENT, ident, start));
+                    buf.add(keyword(src, start, pos), base + start, base + pos, 0L);
                     continue;
                 }
 
-                TokenType sym = SYMBOLS.get(c);
+                TokenType sym = symbol(c);
                 if (sym != null) {
-                    tokens.add(new Token(sym, String.valueOf(c), pos));
+                    buf.add(sym, base + pos, base + pos + 1, 0L);
                     pos++;
                     continue;
                 }
 
-                throw new ParseException("Unexpected character: " + c, pos);
+                Diagnostic d = new Diagnostic(base + pos, null, "Unexpected character: " + c);
+                if (diagnostics == null) throw d.toException();
+                diagnostics.add(d);
+                pos++;
             }
 
-            tokens.add(new Token(TokenType.EOF, "", pos));
-            return tokens;
+            buf.add(TokenType.EOF, base + pos, base + pos, 0L);
+            return buf;
+        }
+
+        /** Keyword or direction spelled by {@code src[start, end)}, else {@code IDENT}. */
+        static TokenType keyword(CharSequence src, int start, int end) {
+            TokenType candidate;
+            String spelling;
+            switch (end - start) {
+                case 2 -> {
+                    switch (src.charAt(start)) {
+                        case 'i' -> { candidate = TokenType.IF; spelling = "if"; }
+                        case 'u' -> { candidate = TokenType.UP; spelling = "up"; }
+                        default -> { return TokenType.IDENT; }
+                    }
+                }
+                case 4 -> {
+                    switch (src.charAt(start)) {
+                        case 'd' -> {
+                            if (src.charAt(start + 1) == 'o' && src.charAt(start + 2) == 'n') {
+                                candidate = TokenType.DONE; spelling = "done";
+                            } else {
+                                candidate = TokenType.DOWN; spelling = "down";
+                            }
+                        }
+                        case 'm' -> { candidate = TokenType.MOVE; spelling = "move"; }
+                        case 't' -> { candidate = TokenType.THEN; spelling = "then"; }
+                        case 'e' -> { candidate = TokenType.ELSE; spelling = "else"; }
+                        case 'a' -> { candidate = TokenType.ALLY; spelling = "ally"; }
+                        default -> { return TokenType.IDENT; }
+                    }
+                }
+                case 5 -> {
+                    switch (src.charAt(start)) {
+                        case 's' -> { candidate = TokenType.SHOOT; spelling = "shoot"; }
+                        case 'w' -> { candidate = TokenType.WHILE; spelling = "while"; }
+                        default -> { return TokenType.IDENT; }
+                    }
+                }
+                case 6 -> {
+                    switch (src.charAt(start)) {
+                        case 'n' -> { candidate = TokenType.NEARBY; spelling = "nearby"; }
+                        case 'u' -> { candidate = TokenType.UPLEFT; spelling = "upleft"; }
+                        default -> { return TokenType.IDENT; }
+                    }
+                }
+                case 7 -> { candidate = TokenType.UPRIGHT; spelling = "upright"; }
+                case 8 -> {
+                    switch (src.charAt(start)) {
+                        case 'o' -> { candidate = TokenType.OPPONENT; spelling = "opponent"; }
+                        case 'd' -> { candidate = TokenType.DOWNLEFT; spelling = "downleft"; }
+                        default -> { return TokenType.IDENT; }
+                    }
+                }
+                case 9 -> { candidate = TokenType.DOWNRIGHT; spelling = "downright"; }
+                default -> { return TokenType.IDENT; }
+            }
+            for (int i = 0; i < spelling.length(); i++) {
+                if (src.charAt(start + i) != spelling.charAt(i)) return TokenType.IDENT;
+            }
+            return candidate;
+        }
+
+        static TokenType symbol(char c) {
+            return switch (c) {
+                case '+' -> TokenType.PLUS;
+                case '-' -> TokenType.MINUS;
+                case '*' -> TokenType.STAR;
+                case '/' -> TokenType.SLASH;
+                case '%' -> TokenType.PERCENT;
+                case '^' -> TokenType.CARET;
+                case '=' -> TokenType.EQUAL;
+                case '(' -> TokenType.LPAREN;
+                case ')' -> TokenType.RPAREN;
+                case '{' -> TokenType.LBRACE;
+                case '}' -> TokenType.RBRACE;
+                default -> null;
+            };
         }
     }
 
@@ -146,201 +279,672 @@ public final class StrategyParser {
         record Info(InfoKind kind, Direction dirOrNull) implements Expr {}
     }
 
+    /**
+     * How the parser builds AST nodes. {@link #PLAIN} allocates a fresh node every time; a
+     * hash-consing factory such as {@link AstInterner} can hand back shared instances instead, which
+     * is safe because every node is an immutable record.
+     */
+    public interface NodeFactory {
+        NodeFactory PLAIN = new NodeFactory() {};
+
+        default Expr num(long value) { return new Expr.Num(value); }
+        default Expr var(String name) { return new Expr.Var(name); }
+        default Expr binary(String op, Expr left, Expr right) { return new Expr.Binary(op, left, right); }
+        default Expr paren(Expr inner) { return new Expr.Paren(inner); }
+        default Expr info(InfoKind kind, Direction dirOrNull) { return new Expr.Info(kind, dirOrNull); }
+
+        default Stmt assign(String name, Expr value) { return new Stmt.Assign(name, value); }
+        default Stmt done() { return new Stmt.Done(); }
+        default Stmt move(Direction dir) { return new Stmt.Move(dir); }
+        default Stmt shoot(Direction dir, Expr expenditure) { return new Stmt.Shoot(dir, expenditure); }
+        default Stmt block(List<Stmt> statements) { return new Stmt.Block(statements); }
+        default Stmt ifElse(Expr cond, Stmt thenBranch, Stmt elseBranch) { return new Stmt.If(cond, thenBranch, elseBranch); }
+        default Stmt whileLoop(Expr cond, Stmt body) { return new Stmt.While(cond, body); }
+    }
+
+    /**
+     * A syntax error. The message says where it is, so no stack trace is captured: filling one in
+     * across a deep descent costs more than the rest of rejecting a bad source.
+     */
     public static final class ParseException extends RuntimeException {
+        private final int pos;
+
         public ParseException(String message, int pos) {
-            super("Error at position " + pos + ": " + message);
+            super("Error at position " + pos + ": " + message, null, false, false);
+            this.pos = pos;
         }
         public ParseException(String message, String lexeme, int pos) {
-            super("Error at position " + pos + " near '" + lexeme + "': " + message);
+            super("Error at position " + pos + " near '" + lexeme + "': " + message, null, false, false);
+            this.pos = pos;
         }
+
+        /** Source position the error was reported at. */
+        public int pos() { return pos; }
     }
 
-    public static final class Parser {
+    /** One syntax error found by {@link #validate}; {@code near} is null when there is no token to show. */
+    public record Diagnostic(int pos, String near, String message) {
+        public ParseException toException() {
+            return near == null ? new ParseException(message, pos) : new ParseException(message, near, pos);
+        }
+
+        /** The same text {@link ParseException#getMessage()} would have. */
+        @Override
+        public String toString() {
+            return toException().getMessage();
+        }
+    }
+
+    /** Outcome of {@link #validate}: the program when there are no errors, otherwise every error found. */
+    public record Validation(List<Stmt> program, List<Diagnostic> errors) {
+        public boolean isValid() { return errors.isEmpty(); }
+    }
+
+    /** The parser's view of the token stream: the current token, and a way to step past it. */
+    interface TokenCursor {
+        TokenType type();
+        String lexeme();
+        long numValue();
+        int pos();
+        void next();
+    }
+
+    private static final class ListCursor implements TokenCursor {
         private final List<Token> tokens;
         private int current = 0;
 
+        ListCursor(List<Token> tokens) { this.tokens = tokens; }
+
+        @Override public TokenType type() { return tokens.get(current).type(); }
+        @Override public String lexeme() { return tokens.get(current).lexeme(); }
+        @Override public long numValue() { return tokens.get(current).longValue(); }
+        @Override public int pos() { return tokens.get(current).pos(); }
+        @Override public void next() { current++; }
+    }
+
+    private static final class BufferCursor implements TokenCursor {
+        private final TokenBuffer buf;
+        private int current = 0;
+
+        BufferCursor(TokenBuffer buf) { this.buf = buf; }
+
+        @Override public TokenType type() { return buf.type(current); }
+        @Override public String lexeme() { return buf.lexeme(current); }
+        @Override public long numValue() { return buf.numValue(current); }
+        @Override public int pos() { return buf.start(current); }
+        @Override public void next() { current++; }
+    }
+
+    /**
+     * Pull lexer: produces one token each time the parser steps forward, reading the source in small
+     * chunks. Nothing but the current token is held, so memory does not grow with the input and a
+     * syntax error near the start is reported before the rest of the input has been read.
+     */
+    public static final class StreamingLexer implements TokenCursor {
+        private static final int CHUNK = 8192;
+
+        private final Readable in;
+        private final CharBuffer chunk = CharBuffer.allocate(CHUNK).flip();
+        private boolean eof;
+        private int offset; // source position of the next unread char
+
+        private final StringBuilder text = new StringBuilder();
+        private boolean pending = true;
+        private TokenType type;
+        private long numValue;
+        private int pos;
+
+        private StreamingLexer(Readable in) {
+            this.in = in;
+        }
+
+        public static StreamingLexer of(CharSequence src) {
+            return new StreamingLexer(CharBuffer.wrap(src));
+        }
+
+        public static StreamingLexer of(Reader src) {
+            return new StreamingLexer(src);
+        }
+
+        /** Reads UTF-8 encoded source from {@code src}. */
+        public static StreamingLexer of(ReadableByteChannel src) {
+            return new StreamingLexer(Channels.newReader(src, StandardCharsets.UTF_8.newDecoder(), -1));
+        }
+
+        @Override public TokenType type() { scanIfPending(); return type; }
+        @Override public String lexeme() { scanIfPending(); return text.toString(); }
+        @Override public long numValue() { scanIfPending(); return numValue; }
+        @Override public int pos() { scanIfPending(); return pos; }
+        @Override public void next() { scanIfPending(); pending = true; }
+
+        private void scanIfPending() {
+            if (pending) {
+                pending = false;
+                scan();
+            }
+        }
+
+        private void scan() {
+            text.setLength(0);
+            numValue = 0L;
+
+            while (true) {
+                int c = peekChar();
+
+                if (c < 0) {
+                    type = TokenType.EOF;
+                    pos = offset;
+                    return;
+                }
+
+                if (Character.isWhitespace(c)) {
+                    readChar();
+                    continue;
+                }
+
+                if (c == '#') { // comment to end of line
+                    while ((c = peekChar()) >= 0 && c != '\n') readChar();
+                    continue;
+                }
+
+                pos = offset;
+
+                if (Character.isDigit(c)) {
+                    long v = 0;
+                    boolean overflow = false;
+                    while ((c = peekChar()) >= 0 && Character.isDigit(c)) {
+                        int d = c <= '9' ? c - '0' : Character.digit(c, 10);
+                        if (v > (Long.MAX_VALUE - d) / 10) overflow = true;
+                        else v = v * 10 + d;
+                        text.append(readChar());
+                    }
+                    if (overflow) throw new ParseException("Number out of range for long", text.toString(), pos);
+                    type = TokenType.NUMBER;
+                    numValue = v;
+                    return;
+                }
+
+                if (Character.isLetter(c)) {
+                    text.append(readChar());
+                    while ((c = peekChar()) >= 0 && Character.isLetterOrDigit(c)) text.append(readChar());
+                    type = Lexer.keyword(text, 0, text.length());
+                    return;
+                }
+
+                TokenType sym = Lexer.symbol((char) c);
+                if (sym != null) {
+                    text.append(readChar());
+                    type = sym;
+                    return;
+                }
+
+                throw new ParseException("Unexpected character: " + (char) c, offset);
+            }
+        }
+
+        private int peekChar() {
+            if (!chunk.hasRemaining() && !fill()) return -1;
+            return chunk.get(chunk.position());
+        }
+
+        private char readChar() {
+            offset++;
+            return chunk.get();
+        }
+
+        private boolean fill() {
+            if (eof) return false;
+            try {
+                int n;
+                do {
+                    chunk.clear();
+                    n = in.read(chunk);
+                    chunk.flip();
+                } while (n == 0);
+                if (n < 0) eof = true;
+                return n > 0;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+    }
+
+    public static final class Parser {
+        /** Deep enough for any hand-written strategy, shallow enough for the recursive passes that walk the tree. */
+        public static final int DEFAULT_MAX_DEPTH = 1000;
+
+        /** Unwinds to the nearest recovery point in validation mode; the error is already recorded. */
+        private static final ParseException RECOVER = new ParseException("recover", 0);
+
+        private final TokenCursor tokens;
+        private final NodeFactory nodes;
+        private List<Diagnostic> diagnostics; // non-null in validation mode
+        private int maxDepth = DEFAULT_MAX_DEPTH;
+
         public Parser(List<Token> tokens) {
+            this(new ListCursor(tokens), NodeFactory.PLAIN);
+        }
+
+        /** Parses straight out of a lexed buffer without materializing {@link Token}s. */
+        public Parser(TokenBuffer tokens) {
+            this(tokens, NodeFactory.PLAIN);
+        }
+
+        public Parser(TokenBuffer tokens, NodeFactory nodes) {
+            this(new BufferCursor(tokens), nodes);
+        }
+
+        /** Pulls tokens on demand; the full token stream is never materialized. */
+        public Parser(StreamingLexer tokens) {
+            this(tokens, NodeFactory.PLAIN);
+        }
+
+        public Parser(StreamingLexer tokens, NodeFactory nodes) {
+            this((TokenCursor) tokens, nodes);
+        }
+
+        Parser(TokenCursor tokens, NodeFactory nodes) {
             this.tokens = tokens;
+            this.nodes = nodes;
+        }
+
+        /**
+         * Caps how deeply constructs may nest. Every open {@code (}, {@code {}, {@code if} or
+         * {@code while}, and every {@code ^} still waiting for its right operand, is one level; the
+         * other operators never nest more than two deep between parentheses, so they do not count.
+         * Going past the cap is a {@link ParseException}. Nesting is otherwise limited only by heap.
+         */
+        public Parser maxDepth(int maxDepth) {
+            if (maxDepth <= 0) throw new IllegalArgumentException("maxDepth must be positive");
+            this.maxDepth = maxDepth;
+            return this;
         }
 
         public List<Stmt> parseStrategy() {
             List<Stmt> statements = new ArrayList<>();
-            while (!isAtEnd()) statements.add(parseStatement());
-            if (statements.isEmpty()) throw error(peek(), "Expected at least one statement");
+            while (!isAtEnd()) {
+                Stmt s = parseStatement();
+                if (s != null) statements.add(s);
+            }
+            if (statements.isEmpty() && (diagnostics == null || diagnostics.isEmpty())) {
+                throw error("Expected at least one statement");
+            }
             return statements;
         }
 
-        private Stmt parseStatement() {
-            return switch (peek().type()) {
-                case IF -> parseIfStatement();
-                case WHILE -> parseWhileStatement();
-                case LBRACE -> parseBlockStatement();
-                case DONE -> { advance(); yield new Stmt.Done(); }
-                case MOVE -> parseMoveStatement();
-                case SHOOT -> parseShootStatement();
-                case IDENT -> parseAssignmentStatement();
-                default -> throw error(peek(), "Expected statement");
-            };
+        /** Parses in validation mode, recording errors in {@code diagnostics} instead of throwing. */
+        List<Stmt> validateStrategy(List<Diagnostic> diagnostics) {
+            this.diagnostics = diagnostics;
+            try {
+                return parseStrategy();
+            } catch (ParseException e) {
+                if (e != RECOVER) throw e;
+                return List.of(); // empty program, already recorded
+            }
         }
 
-        private Stmt parseIfStatement() {
-            consume(TokenType.IF, "Expected 'if'");
-            consume(TokenType.LPAREN, "Expected '(' after 'if'");
-            Expr cond = parseExpression();
-            consume(TokenType.RPAREN, "Expected ')' after condition");
-            consume(TokenType.THEN, "Expected 'then' after condition");
-            Stmt thenBranch = parseStatement();
-            consume(TokenType.ELSE, "Expected 'else' after then branch");
-            Stmt elseBranch = parseStatement();
-            return new Stmt.If(cond, thenBranch, elseBranch);
+        /** One top-level statement at a time, for callers that track statement boundaries. */
+        Stmt parseNextStatement() { return parseStatement(); }
+
+        boolean atEnd() { return isAtEnd(); }
+
+        /** Source position of the current token. */
+        int position() { return tokens.pos(); }
+
+        private static final int BLOCK = 0, IF_THEN = 1, IF_ELSE = 2, WHILE = 3;
+
+        /** A statement still being parsed: an open block, or an {@code if}/{@code while} waiting for a branch. */
+        private static final class Pending {
+            final int kind;
+            final Expr cond;
+            final List<Stmt> statements;
+            Stmt thenBranch;
+            int childStart; // where the block's current statement began
+
+            Pending(int kind, Expr cond, List<Stmt> statements) {
+                this.kind = kind;
+                this.cond = cond;
+                this.statements = statements;
+            }
         }
 
-        private Stmt parseWhileStatement() {
-            consume(TokenType.WHILE, "Expected 'while'");
-            consume(TokenType.LPAREN, "Expected '(' after 'while'");
-            Expr cond = parseExpression();
-            consume(TokenType.RPAREN, "Expected ')' after condition");
-            Stmt body = parseStatement();
-            return new Stmt.While(cond, body);
+        /**
+         * Parses one statement without recursing on the Java stack: open blocks, and {@code if} and
+         * {@code while} statements waiting for a branch, are kept on an explicit stack.
+         *
+         * <p>In validation mode a statement with an error is skipped: tokens are dropped up to the next
+         * {@code if}, {@code while}, {@code move}, {@code shoot}, {@code done} or {@code {}, or inside a
+         * block up to its {@code }}. A block carries on after its failed statement; a failed top-level
+         * statement yields null.
+         */
+        private Stmt parseStatement() {
+            List<Pending> stack = new ArrayList<>();
+            int start = tokens.pos();
+            while (true) {
+                try {
+                    Stmt done = null;
+                    Pending top = stack.isEmpty() ? null : stack.get(stack.size() - 1);
+                    if (top != null && top.kind == BLOCK && check(TokenType.RBRACE)) {
+                        advance();
+                        stack.remove(stack.size() - 1);
+                        done = nodes.block(top.statements);
+                    } else if (top != null && top.kind == BLOCK && isAtEnd()) {
+                        stack.remove(stack.size() - 1);
+                        throw error("Expected '}' after block");
+                    } else {
+                        if (top != null && top.kind == BLOCK) top.childStart = tokens.pos();
+                        switch (peek()) {
+                            case IF -> {
+                                push(stack);
+                                consume(TokenType.LPAREN, "Expected '(' after 'if'");
+                                Expr cond = parseExpression(stack.size());
+                                consume(TokenType.RPAREN, "Expected ')' after condition");
+                                consume(TokenType.THEN, "Expected 'then' after condition");
+                                stack.add(new Pending(IF_THEN, cond, null));
+                                continue;
+                            }
+                            case WHILE -> {
+                                push(stack);
+                                consume(TokenType.LPAREN, "Expected '(' after 'while'");
+                                Expr cond = parseExpression(stack.size());
+                                consume(TokenType.RPAREN, "Expected ')' after condition");
+                                stack.add(new Pending(WHILE, cond, null));
+                                continue;
+                            }
+                            case LBRACE -> {
+                                push(stack);
+                                stack.add(new Pending(BLOCK, null, new ArrayList<>()));
+                                continue;
+                            }
+                            case DONE -> { advance(); done = nodes.done(); }
+                            case MOVE -> done = parseMoveStatement();
+                            case SHOOT -> done = parseShootStatement(stack.size());
+                            case IDENT -> done = parseAssignmentStatement(stack.size());
+                            default -> throw error("Expected statement");
+                        }
+                    }
+
+                    // hand the finished statement to whatever is waiting for it
+                    while (true) {
+                        if (stack.isEmpty()) return done;
+                        Pending waiting = stack.get(stack.size() - 1);
+                        if (waiting.kind == BLOCK) {
+                            waiting.statements.add(done);
+                            break;
+                        }
+                        if (waiting.kind == IF_THEN) {
+                            consume(TokenType.ELSE, "Expected 'else' after then branch");
+                            Pending elseBranch = new Pending(IF_ELSE, waiting.cond, null);
+                            elseBranch.thenBranch = done;
+                            stack.set(stack.size() - 1, elseBranch);
+                            break;
+                        }
+                        stack.remove(stack.size() - 1);
+                        done = waiting.kind == IF_ELSE
+                                ? nodes.ifElse(waiting.cond, waiting.thenBranch, done)
+                                : nodes.whileLoop(waiting.cond, done);
+                    }
+                } catch (ParseException e) {
+                    if (e != RECOVER) throw e;
+                    // the failed statement is the current one of the innermost open block, if any
+                    int block = stack.size() - 1;
+                    while (block >= 0 && stack.get(block).kind != BLOCK) block--;
+                    stack.subList(block + 1, stack.size()).clear();
+                    if (block < 0) {
+                        synchronize(start, false);
+                        return null;
+                    }
+                    synchronize(stack.get(block).childStart, true);
+                }
+            }
         }
 
-        private Stmt parseBlockStatement() {
-            consume(TokenType.LBRACE, "Expected '{'");
-            List<Stmt> statements = new ArrayList<>();
-            while (!check(TokenType.RBRACE) && !isAtEnd()) statements.add(parseStatement());
-            consume(TokenType.RBRACE, "Expected '}' after block");
-            return new Stmt.Block(statements);
+        /** Steps past the opening token of a nested statement, refusing to go deeper than {@link #maxDepth}. */
+        private void push(List<Pending> stack) {
+            if (stack.size() >= maxDepth) throw tooDeep();
+            advance();
+        }
+
+        /** Skips the rest of a failed statement that began at {@code start}. */
+        private void synchronize(int start, boolean inBlock) {
+            if (tokens.pos() == start && !isAtEnd()) advance();
+            while (!isAtEnd() && !(inBlock && check(TokenType.RBRACE))) {
+                switch (peek()) {
+                    case IF, WHILE, MOVE, SHOOT, DONE, LBRACE -> { return; }
+                    default -> advance();
+                }
+            }
         }
 
         private Stmt parseMoveStatement() {
             consume(TokenType.MOVE, "Expected 'move'");
             Direction dir = parseDirection();
-            return new Stmt.Move(dir);
+            return nodes.move(dir);
         }
 
-        private Stmt parseShootStatement() {
+        private Stmt parseShootStatement(int depth) {
             consume(TokenType.SHOOT, "Expected 'shoot'");
             Direction dir = parseDirection();
-            Expr expenditure = parseExpression();
-            return new Stmt.Shoot(dir, expenditure);
+            Expr expenditure = parseExpression(depth);
+            return nodes.shoot(dir, expenditure);
         }
 
-        private Stmt parseAssignmentStatement() {
-            Token name = consume(TokenType.IDENT, "Expected identifier");
+        private Stmt parseAssignmentStatement(int depth) {
+            if (!check(TokenType.IDENT)) throw error("Expected identifier");
+            String name = tokens.lexeme();
+            advance();
             consume(TokenType.EQUAL, "Expected '=' after identifier");
-            Expr value = parseExpression();
-            return new Stmt.Assign(name.lexeme(), value);
+            Expr value = parseExpression(depth);
+            return nodes.assign(name, value);
         }
 
         private Direction parseDirection() {
-            Token token = advance();
-            return switch (token.type()) {
+            Direction dir = switch (peek()) {
                 case UP -> Direction.UP;
                 case DOWN -> Direction.DOWN;
                 case UPLEFT -> Direction.UPLEFT;
                 case UPRIGHT -> Direction.UPRIGHT;
                 case DOWNLEFT -> Direction.DOWNLEFT;
                 case DOWNRIGHT -> Direction.DOWNRIGHT;
-                default -> throw error(token, "Expected direction");
+                default -> throw error("Expected direction");
             };
+            advance();
+            return dir;
         }
 
-        private Expr parseExpression() { return parseAddSub(); }
-
-        private Expr parseAddSub() {
-            Expr expr = parseMulDivMod();
-            while (match(TokenType.PLUS, TokenType.MINUS)) {
-                Token op = previous();
-                Expr right = parseMulDivMod();
-                expr = new Expr.Binary(op.lexeme(), expr, right);
+        /**
+         * Precedence climbing over an explicit stack of pending operators and open parentheses:
+         * {@code ^} binds tightest and groups to the right, then {@code * / %}, then {@code + -}, both
+         * grouping to the left. {@code depth} is how many statements already enclose the expression.
+         */
+        private Expr parseExpression(int depth) {
+            List<Expr> operands = new ArrayList<>();
+            List<TokenType> pending = new ArrayList<>(); // operators and LPAREN markers
+            int levels = depth; // depth plus the LPAREN and CARET entries in pending
+            while (true) {
+                while (check(TokenType.LPAREN)) {
+                    if (levels >= maxDepth) throw tooDeep();
+                    pending.add(advance());
+                    levels++;
+                }
+                operands.add(parsePrimary());
+
+                while (true) {
+                    TokenType next = peek();
+                    int precedence = precedence(next);
+                    if (precedence > 0) {
+                        while (!pending.isEmpty() && bindsFirst(pending.get(pending.size() - 1), precedence)) {
+                            if (reduce(operands, pending) == TokenType.CARET) levels--;
+                        }
+                        if (next == TokenType.CARET) {
+                            if (levels >= maxDepth) throw tooDeep();
+                            levels++;
+                        }
+                        pending.add(advance());
+                        break;
+                    }
+                    // not an operator: this closes the innermost '(' or ends the expression
+                    while (!pending.isEmpty() && pending.get(pending.size() - 1) != TokenType.LPAREN) {
+                        if (reduce(operands, pending) == TokenType.CARET) levels--;
+                    }
+                    if (pending.isEmpty()) return operands.get(0);
+                    consume(TokenType.RPAREN, "Expected ')'");
+                    pending.remove(pending.size() - 1);
+                    levels--;
+                    operands.set(operands.size() - 1, nodes.paren(operands.get(operands.size() - 1)));
+                }
             }
-            return expr;
         }
 
-        private Expr parseMulDivMod() {
-            Expr expr = parsePower();
-            while (match(TokenType.STAR, TokenType.SLASH, TokenType.PERCENT)) {
-                Token op = previous();
-                Expr right = parsePower();
-                expr = new Expr.Binary(op.lexeme(), expr, right);
-            }
-            return expr;
+        private static int precedence(TokenType type) {
+            return switch (type) {
+                case PLUS, MINUS -> 1;
+                case STAR, SLASH, PERCENT -> 2;
+                case CARET -> 3;
+                default -> 0;
+            };
         }
 
-        private Expr parsePower() {
-            Expr left = parsePrimary();
-            if (match(TokenType.CARET)) {
-                Token op = previous();
-                Expr right = parsePower(); // right-assoc
-                return new Expr.Binary(op.lexeme(), left, right);
-            }
-            return left;
+        /** Whether the pending {@code op} takes its right operand before an operator of {@code precedence} does. */
+        private static boolean bindsFirst(TokenType op, int precedence) {
+            int p = precedence(op);
+            return p > precedence || (p == precedence && op != TokenType.CARET);
+        }
+
+        /** Folds the innermost pending operator into its operands and returns it. */
+        private TokenType reduce(List<Expr> operands, List<TokenType> pending) {
+            Expr right = operands.remove(operands.size() - 1);
+            Expr left = operands.remove(operands.size() - 1);
+            TokenType op = pending.remove(pending.size() - 1);
+            operands.add(nodes.binary(operator(op), left, right));
+            return op;
         }
 
         private Expr parsePrimary() {
-            return switch (peek().type()) {
-                case NUMBER -> new Expr.Num(advance().longValue());
-                case IDENT -> new Expr.Var(advance().lexeme());
-                case LPAREN -> parseParenExpression();
+            return switch (peek()) {
+                case NUMBER -> { long v = tokens.numValue(); advance(); yield nodes.num(v); }
+                case IDENT -> { String name = tokens.lexeme(); advance(); yield nodes.var(name); }
                 case ALLY -> parseInfo(InfoKind.ALLY);
                 case OPPONENT -> parseInfo(InfoKind.OPPONENT);
                 case NEARBY -> parseNearby();
-                default -> throw error(peek(), "Expected expression");
+                default -> throw error("Expected expression");
             };
         }
 
-        private Expr parseParenExpression() {
-            consume(TokenType.LPAREN, "Expected '('");
-            Expr expr = parseExpression();
-            consume(TokenType.RPAREN, "Expected ')'");
-            return new Expr.Paren(expr);
-        }
-
         private Expr parseInfo(InfoKind kind) {
             advance();
-            return new Expr.Info(kind, null);
+            return nodes.info(kind, null);
         }
 
         private Expr parseNearby() {
             consume(TokenType.NEARBY, "Expected 'nearby'");
             Direction dir = parseDirection();
-            return new Expr.Info(InfoKind.NEARBY, dir);
+            return nodes.info(InfoKind.NEARBY, dir);
         }
 
-        private boolean match(TokenType... types) {
-            for (TokenType type : types) {
-                if (check(type)) { advance(); return true; }
-            }
-            return false;
+        private ParseException tooDeep() {
+            return error("Nesting deeper than " + maxDepth + " levels");
+        }
+
+        private static String operator(TokenType type) {
+            return switch (type) {
+                case PLUS -> "+";
+                case MINUS -> "-";
+                case STAR -> "*";
+                case SLASH -> "/";
+                case PERCENT -> "%";
+                case CARET -> "^";
+                default -> throw new IllegalStateException("Not an operator: " + type);
+            };
         }
 
         private boolean check(TokenType type) {
-            return peek().type() == type;
+            return peek() == type;
         }
 
-        private Token consume(TokenType type, String message) {
-            if (check(type)) return advance();
-            throw error(peek(), message);
+        private void consume(TokenType type, String message) {
+            if (check(type)) advance();
+            else throw error(message);
         }
 
-        private Token advance() {
-            if (!isAtEnd()) current++;
-            return previous();
+        /** Steps past the current token (never past EOF) and returns its type. */
+        private TokenType advance() {
+            TokenType type = peek();
+            if (type != TokenType.EOF) tokens.next();
+            return type;
         }
 
         private boolean isAtEnd() {
-            return peek().type() == TokenType.EOF;
+            return peek() == TokenType.EOF;
         }
 
-        private Token peek() { return tokens.get(current); }
-        private Token previous() { return tokens.get(current - 1); }
+        private TokenType peek() { return tokens.type(); }
 
-        private ParseException error(Token token, String message) {
-            return new ParseException(message, token.lexeme(), token.pos());
+        private ParseException error(String message) {
+            if (diagnostics == null) return new ParseException(message, tokens.lexeme(), tokens.pos());
+            diagnostics.add(new Diagnostic(tokens.pos(), tokens.lexeme(), message));
+            return RECOVER;
         }
     }
 
+    private static final ThreadLocal<TokenBuffer> BUFFERS = ThreadLocal.withInitial(TokenBuffer::new);
+
     public static List<Stmt> parse(String src) {
-        return new Parser(Lexer.lex(src)).parseStrategy();
+        return parse(src, NodeFactory.PLAIN);
+    }
+
+    public static List<Stmt> parse(String src, NodeFactory nodes) {
+        return parse(src, nodes, Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    /** Like {@link #parse(String, NodeFactory)} with another nesting cap; see {@link Parser#maxDepth}. */
+    public static List<Stmt> parse(String src, NodeFactory nodes, int maxDepth) {
+        TokenBuffer buf = BUFFERS.get();
+        try {
+            if (StrategyMetrics.enabled()) return StrategyMetrics.parse(src, buf, nodes, maxDepth);
+            return new Parser(Lexer.lexInto(src, buf), nodes).maxDepth(maxDepth).parseStrategy();
+        } finally {
+            buf.reset("");
+        }
+    }
+
+    /**
+     * Checks {@code src} without throwing. Errors are collected in one pass: after each one the parser
+     * resynchronizes on the next statement keyword, so a submission with several mistakes reports all of
+     * them. The first error reported is the one {@link #parse(String)} would throw.
+     */
+    public static Validation validate(String src) {
+        return validate(src, Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    /** Like {@link #validate(String)} with another nesting cap; see {@link Parser#maxDepth}. */
+    public static Validation validate(String src, int maxDepth) {
+        TokenBuffer buf = BUFFERS.get();
+        List<Diagnostic> errors = new ArrayList<>();
+        try {
+            Parser parser = new Parser(Lexer.lexInto(src, 0, buf, errors), NodeFactory.PLAIN).maxDepth(maxDepth);
+            List<Stmt> program = parser.validateStrategy(errors);
+            return new Validation(errors.isEmpty() ? program : null, List.copyOf(errors));
+        } finally {
+            buf.reset("");
+        }
+    }
+
+    /** Parses while reading: lexing and parsing proceed together, one token at a time. */
+    public static List<Stmt> parse(Reader src) {
+        return parse(src, Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    public static List<Stmt> parse(Reader src, int maxDepth) {
+        return new Parser(StreamingLexer.of(src)).maxDepth(maxDepth).parseStrategy();
+    }
+
+    /** Like {@link #parse(Reader)} for UTF-8 encoded source arriving on a channel. */
+    public static List<Stmt> parse(ReadableByteChannel src) {
+        return parse(src, Parser.DEFAULT_MAX_DEPTH);
+    }
+
+    public static List<Stmt> parse(ReadableByteChannel src, int maxDepth) {
+        return new Parser(StreamingLexer.of(src)).maxDepth(maxDepth).parseStrategy();
     }
 }
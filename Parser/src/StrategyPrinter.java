@@ -0,0 +1,133 @@
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Turns a strategy tree back into source, one statement per line and blocks indented by two spaces.
+ * The parentheses in the tree are printed as they are, and more are added only where precedence or
+ * associativity would otherwise regroup the operands, so any tree the parser built reparses to an
+ * equal tree. Trees from elsewhere (the optimizer, hand-built ones) reparse to a tree that evaluates
+ * the same; a negative literal, which has no syntax of its own, prints as {@code (0 - n)}.
+ */
+public final class StrategyPrinter {
+
+    private StrategyPrinter() {}
+
+    public static String print(List<StrategyParser.Stmt> program) {
+        StringBuilder sb = new StringBuilder();
+        for (StrategyParser.Stmt s : program) {
+            statement(s, 0, sb);
+            sb.append('\n');
+        }
+        return sb.toString();
+    }
+
+    public static String print(StrategyParser.Stmt stmt) {
+        StringBuilder sb = new StringBuilder();
+        statement(stmt, 0, sb);
+        return sb.toString();
+    }
+
+    public static String print(StrategyParser.Expr expr) {
+        StringBuilder sb = new StringBuilder();
+        expression(expr, sb);
+        return sb.toString();
+    }
+
+    private static void statement(StrategyParser.Stmt stmt, int indent, StringBuilder sb) {
+        if (stmt instanceof StrategyParser.Stmt.Assign a) {
+            sb.append(a.name()).append(" = ");
+            expression(a.value(), sb);
+        } else if (stmt instanceof StrategyParser.Stmt.Done) {
+            sb.append("done");
+        } else if (stmt instanceof StrategyParser.Stmt.Move m) {
+            sb.append("move ").append(direction(m.dir()));
+        } else if (stmt instanceof StrategyParser.Stmt.Shoot s) {
+            sb.append("shoot ").append(direction(s.dir())).append(' ');
+            expression(s.expenditure(), sb);
+        } else if (stmt instanceof StrategyParser.Stmt.Block b) {
+            if (b.statements().isEmpty()) {
+                sb.append("{ }");
+                return;
+            }
+            sb.append("{\n");
+            for (StrategyParser.Stmt s : b.statements()) {
+                sb.append("  ".repeat(indent + 1));
+                statement(s, indent + 1, sb);
+                sb.append('\n');
+            }
+            sb.append("  ".repeat(indent)).append('}');
+        } else if (stmt instanceof StrategyParser.Stmt.If i) {
+            sb.append("if (");
+            expression(i.cond(), sb);
+            sb.append(") then ");
+            statement(i.thenBranch(), indent, sb);
+            sb.append(" else ");
+            statement(i.elseBranch(), indent, sb);
+        } else if (stmt instanceof StrategyParser.Stmt.While w) {
+            sb.append("while (");
+            expression(w.cond(), sb);
+            sb.append(") ");
+            statement(w.body(), indent, sb);
+        } else {
+            throw new IllegalStateException("Unknown statement: " + stmt);
+        }
+    }
+
+    private static void expression(StrategyParser.Expr expr, StringBuilder sb) {
+        if (expr instanceof StrategyParser.Expr.Num n) {
+            if (n.value() >= 0) sb.append(n.value());
+            else if (n.value() == Long.MIN_VALUE) sb.append("(0 - ").append(Long.MAX_VALUE).append(" - 1)");
+            else sb.append("(0 - ").append(-n.value()).append(')');
+        } else if (expr instanceof StrategyParser.Expr.Var v) {
+            sb.append(v.name());
+        } else if (expr instanceof StrategyParser.Expr.Paren p) {
+            sb.append('(');
+            expression(p.inner(), sb);
+            sb.append(')');
+        } else if (expr instanceof StrategyParser.Expr.Binary b) {
+            operand(b.op(), b.left(), true, sb);
+            sb.append(' ').append(b.op()).append(' ');
+            operand(b.op(), b.right(), false, sb);
+        } else if (expr instanceof StrategyParser.Expr.Info i) {
+            switch (i.kind()) {
+                case ALLY -> sb.append("ally");
+                case OPPONENT -> sb.append("opponent");
+                case NEARBY -> sb.append("nearby ").append(direction(i.dirOrNull()));
+            }
+        } else {
+            throw new IllegalStateException("Unknown expression: " + expr);
+        }
+    }
+
+    private static void operand(String op, StrategyParser.Expr child, boolean left, StringBuilder sb) {
+        boolean wrap = needsParens(op, child, left);
+        if (wrap) sb.append('(');
+        expression(child, sb);
+        if (wrap) sb.append(')');
+    }
+
+    /**
+     * Whether {@code child}, as the left or right operand of {@code op}, would be regrouped when
+     * printed bare: it binds more loosely, or as tightly on the side the operator does not associate to.
+     */
+    static boolean needsParens(String op, StrategyParser.Expr child, boolean left) {
+        if (!(child instanceof StrategyParser.Expr.Binary b)) return false;
+        int parent = level(op), own = level(b.op());
+        if (own != parent) return own < parent;
+        return op.equals("^") == left; // ^ groups to the right, the rest to the left
+    }
+
+    /** 1 for {@code + -}, 2 for {@code * / %}, 3 for {@code ^}. */
+    static int level(String op) {
+        return switch (op) {
+            case "+", "-" -> 1;
+            case "*", "/", "%" -> 2;
+            case "^" -> 3;
+            default -> throw new IllegalStateException("Unknown operator: " + op);
+        };
+    }
+
+    static String direction(StrategyParser.Direction dir) {
+        return dir.name().toLowerCase(Locale.ROOT);
+    }
+}
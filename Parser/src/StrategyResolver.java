@@ -0,0 +1,229 @@
+import java.util.*;
+
+/**
+ * Resolution pass run after {@link StrategyParser.Parser#parseStrategy()}: the tree is simplified by
+ * {@link StrategyOptimizer}, then every identifier is mapped to an integer slot once, so execution
+ * engines read and write variables as plain array accesses.
+ * Names declared in a {@link Globals} layout are shared variables the game exposes; every other name
+ * is a per-minion local that lives in a reusable {@link Frame}.
+ */
+public final class StrategyResolver {
+
+    /** The names of the shared variables the game exposes, in slot order. Values live in caller-owned {@code long[]}s. */
+    public static final class Globals {
+        public static final Globals NONE = new Globals(List.of());
+
+        private final List<String> names;
+        private final Map<String, Integer> index = new HashMap<>();
+
+        private Globals(List<String> names) {
+            this.names = List.copyOf(names);
+            for (int i = 0; i < this.names.size(); i++) {
+                if (index.putIfAbsent(this.names.get(i), i) != null) {
+                    throw new IllegalArgumentException("Duplicate global: " + this.names.get(i));
+                }
+            }
+        }
+
+        public static Globals of(String... names) {
+            return new Globals(Arrays.asList(names));
+        }
+
+        public List<String> names() { return names; }
+
+        public int size() { return names.size(); }
+
+        /** Slot of {@code name}, or -1 if it is not a global. */
+        public int indexOf(String name) {
+            return index.getOrDefault(name, -1);
+        }
+
+        public long[] newStore() { return new long[names.size()]; }
+    }
+
+    /**
+     * A minion's local variables plus scratch operand stack, reused from turn to turn. A metered run
+     * that runs out of budget also leaves its resume point here (see {@link StrategyMeter}).
+     */
+    public static final class Frame {
+        private final long[] locals;
+        private final long[] stack;
+        boolean suspended;
+        int resumePc; // where a suspended run resumes, with resumeSp operands on the stack
+        int resumeSp;
+
+        private Frame(int locals, int stack) {
+            this.locals = new long[locals];
+            this.stack = new long[stack];
+        }
+
+        public long[] locals() { return locals; }
+
+        long[] stack() { return stack; }
+
+        /** Whether a metered run stopped part-way and will resume from there. */
+        public boolean isSuspended() { return suspended; }
+
+        /** Drops any suspended run, so the next one starts from the top; variables are kept. */
+        public void restart() {
+            suspended = false;
+            resumePc = 0;
+            resumeSp = 0;
+        }
+
+        public void reset() {
+            Arrays.fill(locals, 0L);
+            restart();
+        }
+    }
+
+    public static final class ResolvedProgram {
+        private final List<StrategyParser.Stmt> statements;
+        private final Globals globals;
+        private final Map<String, Integer> locals;
+        private final String[] localNames;
+        private final boolean[] localAssigned;
+        private final int maxStack;
+
+        private ResolvedProgram(List<StrategyParser.Stmt> statements, Globals globals,
+                                Map<String, Integer> locals, Set<String> assigned, int maxStack) {
+            this.statements = statements;
+            this.globals = globals;
+            this.locals = locals;
+            this.localNames = locals.keySet().toArray(new String[0]);
+            this.localAssigned = new boolean[localNames.length];
+            for (int i = 0; i < localNames.length; i++) localAssigned[i] = assigned.contains(localNames[i]);
+            this.maxStack = maxStack;
+        }
+
+        /** The optimized statements the slots refer to. */
+        public List<StrategyParser.Stmt> statements() { return statements; }
+
+        public Globals globals() { return globals; }
+
+        public int localCount() { return localNames.length; }
+
+        public String localName(int slot) { return localNames[slot]; }
+
+        /** Whether some {@code Stmt.Assign} in the program writes local {@code slot}. */
+        public boolean isAssigned(int slot) { return localAssigned[slot]; }
+
+        /** Deepest operand stack any expression in the program needs. */
+        public int maxStack() { return maxStack; }
+
+        /**
+         * Slot of a name used in this program: {@code >= 0} for a local, {@code ~globalIndex}
+         * (always negative) for a global.
+         */
+        public int slot(String name) {
+            Integer local = locals.get(name);
+            if (local != null) return local;
+            int global = globals.indexOf(name);
+            if (global < 0) throw new IllegalArgumentException("Name not used by this program: " + name);
+            return ~global;
+        }
+
+        public Frame newFrame() { return new Frame(localNames.length, maxStack); }
+    }
+
+    /**
+     * Hands out one {@link Frame} per minion for a single program. A minion keeps its frame (and so
+     * its variables) across turns; frames of removed minions are cleared and recycled.
+     */
+    public static final class FramePool {
+        private final ResolvedProgram program;
+        private Frame[] byMinion = new Frame[16];
+        private final ArrayDeque<Frame> free = new ArrayDeque<>();
+
+        public FramePool(ResolvedProgram program) {
+            this.program = program;
+        }
+
+        public Frame frame(int minionId) {
+            if (minionId >= byMinion.length) byMinion = Arrays.copyOf(byMinion, Math.max(byMinion.length * 2, minionId + 1));
+            Frame f = byMinion[minionId];
+            if (f == null) {
+                f = free.isEmpty() ? program.newFrame() : free.pop();
+                byMinion[minionId] = f;
+            }
+            return f;
+        }
+
+        /** The frame {@code minionId} has, or null; unlike {@link #frame} it never hands one out. */
+        Frame existing(int minionId) {
+            return minionId < byMinion.length ? byMinion[minionId] : null;
+        }
+
+        ResolvedProgram program() { return program; }
+
+        public void release(int minionId) {
+            if (minionId >= byMinion.length || byMinion[minionId] == null) return;
+            Frame f = byMinion[minionId];
+            byMinion[minionId] = null;
+            f.reset();
+            free.push(f);
+        }
+
+        public void releaseAll() {
+            for (int m = 0; m < byMinion.length; m++) release(m);
+        }
+    }
+
+    private StrategyResolver() {}
+
+    public static ResolvedProgram resolve(List<StrategyParser.Stmt> program) {
+        return resolve(program, Globals.NONE);
+    }
+
+    public static ResolvedProgram resolve(List<StrategyParser.Stmt> program, Globals globals) {
+        List<StrategyParser.Stmt> optimized = StrategyOptimizer.optimize(program);
+        Resolution r = new Resolution(globals);
+        int maxStack = 0;
+        for (StrategyParser.Stmt s : optimized) maxStack = Math.max(maxStack, r.stmt(s));
+        return new ResolvedProgram(optimized, globals, r.locals, r.assigned, maxStack);
+    }
+
+    private static final class Resolution {
+        private final Globals globals;
+        private final Map<String, Integer> locals = new LinkedHashMap<>();
+        private final Set<String> assigned = new HashSet<>();
+
+        Resolution(Globals globals) {
+            this.globals = globals;
+        }
+
+        /** Declares every name in {@code stmt}; returns the deepest stack an expression inside needs. */
+        int stmt(StrategyParser.Stmt stmt) {
+            if (stmt instanceof StrategyParser.Stmt.Assign a) {
+                name(a.name());
+                if (globals.indexOf(a.name()) < 0) assigned.add(a.name());
+                return expr(a.value());
+            }
+            if (stmt instanceof StrategyParser.Stmt.Shoot s) return expr(s.expenditure());
+            if (stmt instanceof StrategyParser.Stmt.Block b) {
+                int depth = 0;
+                for (StrategyParser.Stmt s : b.statements()) depth = Math.max(depth, stmt(s));
+                return depth;
+            }
+            if (stmt instanceof StrategyParser.Stmt.If i) {
+                return Math.max(expr(i.cond()), Math.max(stmt(i.thenBranch()), stmt(i.elseBranch())));
+            }
+            if (stmt instanceof StrategyParser.Stmt.While w) return Math.max(expr(w.cond()), stmt(w.body()));
+            return 0;
+        }
+
+        int expr(StrategyParser.Expr expr) {
+            if (expr instanceof StrategyParser.Expr.Var v) {
+                name(v.name());
+                return 1;
+            }
+            if (expr instanceof StrategyParser.Expr.Binary b) return Math.max(expr(b.left()), 1 + expr(b.right()));
+            if (expr instanceof StrategyParser.Expr.Paren p) return expr(p.inner());
+            return 1;
+        }
+
+        private void name(String name) {
+            if (globals.indexOf(name) < 0) locals.putIfAbsent(name, locals.size());
+        }
+    }
+}
@@ -1,7 +1,11 @@
+import java.io.Reader;
+import java.io.StringReader;
 import java.util.List;
 
 public class Test {
 
+    private static final AstInterner INTERNER = new AstInterner();
+
     public static void main(String[] args) {
         // 1) precedence: 1 + (2*3)
         assertParseEquals(
@@ -110,21 +114,62 @@ public class Test {
                 "block/while/if nesting"
         );
 
-        // 8) negative: nearby missing direction -> must throw ParseException
+        // 8) lexer: every keyword/direction, near-miss spellings stay identifiers
+        assertLexTypes(
+                "done move shoot if then else while ally opponent nearby up down upleft upright downleft downright",
+                List.of(StrategyParser.TokenType.DONE, StrategyParser.TokenType.MOVE, StrategyParser.TokenType.SHOOT,
+                        StrategyParser.TokenType.IF, StrategyParser.TokenType.THEN, StrategyParser.TokenType.ELSE,
+                        StrategyParser.TokenType.WHILE, StrategyParser.TokenType.ALLY, StrategyParser.TokenType.OPPONENT,
+                        StrategyParser.TokenType.NEARBY, StrategyParser.TokenType.UP, StrategyParser.TokenType.DOWN,
+                        StrategyParser.TokenType.UPLEFT, StrategyParser.TokenType.UPRIGHT, StrategyParser.TokenType.DOWNLEFT,
+                        StrategyParser.TokenType.DOWNRIGHT, StrategyParser.TokenType.EOF),
+                "lexer: keywords and directions"
+        );
+        assertLexTypes(
+                "dome upleftt uprigh Done i x9 downlefts 9223372036854775807",
+                List.of(StrategyParser.TokenType.IDENT, StrategyParser.TokenType.IDENT, StrategyParser.TokenType.IDENT,
+                        StrategyParser.TokenType.IDENT, StrategyParser.TokenType.IDENT, StrategyParser.TokenType.IDENT,
+                        StrategyParser.TokenType.IDENT, StrategyParser.TokenType.NUMBER, StrategyParser.TokenType.EOF),
+                "lexer: near-miss keywords are identifiers"
+        );
+
+        // 9) negative: nearby missing direction -> must throw ParseException
         assertParseThrows("x=nearby", "nearby must have direction");
 
-        // 9) negative: missing ')'
+        // 10) negative: missing ')'
         assertParseThrows("if(1 then done else done", "missing ')'");
 
-        // 10) negative: missing '}'
+        // 11) negative: missing '}'
         assertParseThrows("{ x=1 ", "missing '}'");
 
+        // 12) streaming: an early syntax error is reported without reading the rest of the input
+        assertStreamingFailsEarly();
+
+        // 13) hash-consing: identical subtrees across strategies are the same object
+        assertInternedTreesShared();
+
         System.out.println("\n✅ All AST tests passed!");
     }
 
     private static void assertParseEquals(String src, List<StrategyParser.Stmt> expected, String name) {
         try {
             var got = StrategyParser.parse(src);
+            var streamed = StrategyParser.parse(new StringReader(src));
+            var interned = StrategyParser.parse(src, INTERNER);
+            if (!interned.equals(got)) {
+                System.out.println("\n❌ " + name + " (hash-consed parse disagrees)");
+                System.out.println("SRC: " + src);
+                System.out.println("PLAIN   : " + got);
+                System.out.println("INTERNED: " + interned);
+                throw new AssertionError("Interned AST mismatch: " + name);
+            }
+            if (!streamed.equals(got)) {
+                System.out.println("\n❌ " + name + " (streaming parser disagrees)");
+                System.out.println("SRC: " + src);
+                System.out.println("BUFFERED: " + got);
+                System.out.println("STREAMED: " + streamed);
+                throw new AssertionError("Streaming AST mismatch: " + name);
+            }
             if (!got.equals(expected)) {
                 System.out.println("\n❌ " + name);
                 System.out.println("SRC: " + src);
@@ -140,6 +185,18 @@ public class Test {
         }
     }
 
+    private static void assertLexTypes(String src, List<StrategyParser.TokenType> expected, String name) {
+        var got = StrategyParser.Lexer.lex(src).stream().map(StrategyParser.Token::type).toList();
+        if (!got.equals(expected)) {
+            System.out.println("\n❌ " + name);
+            System.out.println("SRC: " + src);
+            System.out.println("EXPECTED: " + expected);
+            System.out.println("GOT     : " + got);
+            throw new AssertionError("Token mismatch: " + name);
+        }
+        System.out.println("✓ " + name);
+    }
+
     private static void assertParseThrows(String src, String name) {
         try {
             StrategyParser.parse(src);
@@ -147,7 +204,58 @@ public class Test {
             System.out.println("SRC: " + src);
             throw new AssertionError("Expected ParseException but parsing succeeded: " + name);
         } catch (StrategyParser.ParseException e) {
+            try {
+                StrategyParser.parse(new StringReader(src));
+                throw new AssertionError("Streaming parser accepted invalid input: " + name);
+            } catch (StrategyParser.ParseException streamed) {
+                if (!streamed.getMessage().equals(e.getMessage())) {
+                    throw new AssertionError("Streaming error differs: " + streamed.getMessage() + " vs " + e.getMessage());
+                }
+            }
             System.out.println("✓ " + name + " (threw ParseException)");
         }
     }
+
+    private static void assertInternedTreesShared() {
+        AstInterner interner = new AstInterner();
+        var a = StrategyParser.parse("x=(1+2)*y move up if(nearby up) then shoot up 5 else done", interner);
+        var b = StrategyParser.parse("z=(1+2)*y while(nearby up) { move up shoot up 5 } done", interner);
+        var ax = (StrategyParser.Stmt.Assign) a.get(0);
+        var bz = (StrategyParser.Stmt.Assign) b.get(0);
+        var aIf = (StrategyParser.Stmt.If) a.get(2);
+        var bWhile = (StrategyParser.Stmt.While) b.get(1);
+        boolean shared = ax.value() == bz.value()
+                && a.get(1) == ((StrategyParser.Stmt.Block) bWhile.body()).statements().get(0)
+                && aIf.cond() == bWhile.cond()
+                && aIf.elseBranch() == b.get(2);
+        var stats = interner.stats();
+        long preallocated = 3 + 2 * StrategyParser.Direction.values().length;
+        if (!shared || stats.reused() == 0 || stats.bytesSaved() <= 0 || new AstInterner().stats().unique() != preallocated) {
+            throw new AssertionError("Expected shared subtrees, got " + stats);
+        }
+        System.out.println("✓ hash-consing shares identical subtrees (" + stats + ")");
+    }
+
+    private static void assertStreamingFailsEarly() {
+        // "x=+" followed by an endless "1+1+1+..." — only a pull lexer can reject this
+        Reader endless = new Reader() {
+            private final String head = "x=+";
+            private long served;
+
+            @Override public int read(char[] buf, int off, int len) {
+                for (int i = 0; i < len; i++, served++) {
+                    buf[off + i] = served < head.length() ? head.charAt((int) served) : (served % 2 == 0 ? '+' : '1');
+                }
+                return len;
+            }
+
+            @Override public void close() {}
+        };
+        try {
+            StrategyParser.parse(endless);
+            throw new AssertionError("Expected ParseException from endless input");
+        } catch (StrategyParser.ParseException e) {
+            System.out.println("✓ streaming: early error without reading to the end (" + e.getMessage() + ")");
+        }
+    }
 }
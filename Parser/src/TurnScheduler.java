@@ -0,0 +1,295 @@
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Plays turns on a {@link HexBoard}, running every minion's strategy in parallel. A turn has three
+ * phases:
+ * <ol>
+ *   <li>The board as it stands is the snapshot: nothing writes to it until every strategy has run, and
+ *       each minion gets a private copy of its player's globals.
+ *   <li>Every living minion's strategy runs on a work-stealing pool against that snapshot. Its
+ *       {@code move} and {@code shoot} commands are recorded rather than carried out, and so are the
+ *       globals it changed.
+ *   <li>The recorded commands are applied to the board one minion at a time, in minion id order; a
+ *       minion removed earlier in this phase has its commands dropped, and a move into a hex taken
+ *       earlier in this phase does nothing, as always.
+ * </ol>
+ * Nothing a strategy sees depends on how the pool interleaves them, so any parallelism leaves the board
+ * and globals exactly as {@code new TurnScheduler(1)} would. That one has no pool and runs every
+ * strategy on the calling thread, which suits callers that already run many boards at once.
+ *
+ * <p>While its strategy runs, a minion sees the snapshot with itself moved wherever its own
+ * {@code move}s would have taken it (into empty hexes on the snapshot, budget aside). Globals written
+ * by several minions in one turn end up with the value from the highest minion id. Since nothing else
+ * changes what it sees, its info answers are memoized for the turn in an {@link InfoMemo}; the
+ * scheduler adds up the memos' hit and miss counts.
+ */
+public final class TurnScheduler implements AutoCloseable {
+
+    /** Minions per leaf task when splitting a turn. */
+    private static final int LEAF_SIZE = 4;
+
+    private static final int MOVE = 0, SHOOT = 1, GLOBAL = 2;
+    private static final StrategyParser.Direction[] DIRECTIONS = StrategyParser.Direction.values();
+
+    /** A player's strategy, and the frames and globals its minions keep from turn to turn. */
+    public static final class Player {
+        private final StrategyMeter.Program program;
+        private final long budgetPerTurn;
+        private final StrategyResolver.FramePool frames;
+        private final long[] globals;
+        private final long strategyHash;
+
+        /**
+         * @param budgetPerTurn what each minion's strategy may spend per turn (see {@link StrategyMeter})
+         * @param strategyHash  what {@link StrategyMetrics} tags this strategy's runs with: {@code StrategyMetrics.hash(source)},
+         *                      or {@code entry.key().a()} for a {@link StrategyCache} entry, so they line up with its parses
+         */
+        public Player(StrategyMeter.Program program, long budgetPerTurn, long strategyHash) {
+            if (budgetPerTurn < 0) throw new IllegalArgumentException("Budget must not be negative");
+            this.program = program;
+            this.budgetPerTurn = budgetPerTurn;
+            this.strategyHash = strategyHash;
+            this.frames = new StrategyResolver.FramePool(program.ir().resolved());
+            this.globals = program.ir().resolved().globals().newStore();
+        }
+
+        public long[] globals() { return globals; }
+
+        public long strategyHash() { return strategyHash; }
+
+        public StrategyResolver.Frame frame(int minion) { return frames.frame(minion); }
+
+        StrategyResolver.FramePool frames() { return frames; }
+
+        /** Forgets every minion's frame and zeroes the globals, ready for a new game. */
+        public void reset() {
+            frames.releaseAll();
+            Arrays.fill(globals, 0L);
+        }
+    }
+
+    /** What one turn did. */
+    public record TurnReport(int minions, int commandsApplied, int suspended) {}
+
+    private final ForkJoinPool pool; // null when sequential
+    private final boolean memoize;
+    private Plan[] plans = new Plan[0];
+    private final long[] infoHits = new long[3];   // by InfoKind ordinal
+    private final long[] infoMisses = new long[3];
+
+    /** A scheduler using every available core. */
+    public TurnScheduler() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public TurnScheduler(int parallelism) {
+        this(parallelism, true);
+    }
+
+    /** @param memoizeInfo whether to memoize info answers within a turn; turning it off changes only speed */
+    public TurnScheduler(int parallelism, boolean memoizeInfo) {
+        if (parallelism <= 0) throw new IllegalArgumentException("Parallelism must be positive");
+        this.pool = parallelism == 1 ? null : new ForkJoinPool(parallelism);
+        this.memoize = memoizeInfo;
+    }
+
+    public int parallelism() { return pool == null ? 1 : pool.getParallelism(); }
+
+    /** Info queries answered from a memo since this scheduler was created. */
+    public long infoHits(StrategyParser.InfoKind kind) { return infoHits[kind.ordinal()]; }
+
+    /** Info queries that went to the board. */
+    public long infoMisses(StrategyParser.InfoKind kind) { return infoMisses[kind.ordinal()]; }
+
+    /** Share of all info queries answered from a memo, or 0 before the first one. */
+    public double infoHitRate() {
+        long hits = 0, all = 0;
+        for (int k = 0; k < 3; k++) {
+            hits += infoHits[k];
+            all += infoHits[k] + infoMisses[k];
+        }
+        return all == 0 ? 0 : (double) hits / all;
+    }
+
+    /**
+     * Plays one turn for every living minion whose owner has an entry in {@code players}
+     * (indexed by player number; {@code null} sits the turn out).
+     */
+    public TurnReport playTurn(HexBoard board, Player[] players) {
+        int n = 0;
+        for (int m = 0; m < board.minionCount(); m++) {
+            if (!board.isAlive(m)) continue;
+            int owner = board.ownerOf(m);
+            if (owner >= players.length || players[owner] == null) continue;
+            if (n == plans.length) plans = Arrays.copyOf(plans, Math.max(16, n * 2));
+            if (plans[n] == null) plans[n] = new Plan(memoize);
+            plans[n++].prepare(board, m, players[owner]);
+        }
+
+        if (pool == null) {
+            for (int i = 0; i < n; i++) plans[i].evaluate();
+        } else {
+            pool.invoke(new Split(plans, 0, n));
+        }
+
+        int applied = 0, suspended = 0;
+        for (int i = 0; i < n; i++) {
+            Plan p = plans[i];
+            if (p.suspended) suspended++;
+            if (board.isAlive(p.minion)) applied += p.commit(board);
+        }
+        for (int i = 0; i < n; i++) {
+            Plan p = plans[i];
+            if (!board.isAlive(p.minion)) p.player.frames.release(p.minion);
+            for (StrategyParser.InfoKind k : StrategyParser.InfoKind.values()) {
+                infoHits[k.ordinal()] += p.memo.hits(k);
+                infoMisses[k.ordinal()] += p.memo.misses(k);
+            }
+            p.clear();
+        }
+        return new TurnReport(n, applied, suspended);
+    }
+
+    @Override
+    public void close() {
+        if (pool != null) pool.shutdown();
+    }
+
+    /** One minion's turn: the environment its strategy runs against, and the commands it issued. */
+    private static final class Plan implements StrategyInterpreter.Environment {
+        private final StrategyMeter.Meter meter = new StrategyMeter.Meter(0);
+        private final InfoMemo memo = new InfoMemo();
+        private final boolean memoize;
+        private HexBoard board;
+        private Player player;
+        private StrategyResolver.Frame frame;
+        private int minion, owner, home, at;
+        private long[] globals = new long[0];
+        private long[] commands = new long[48]; // kind, direction or global slot, argument
+        private int size;
+        private int infoQueries;
+        private boolean suspended;
+
+        Plan(boolean memoize) {
+            this.memoize = memoize;
+        }
+
+        /** Runs on the calling thread; {@link StrategyResolver.FramePool} is not thread-safe. */
+        void prepare(HexBoard board, int minion, Player player) {
+            this.board = board;
+            this.player = player;
+            this.frame = player.frame(minion);
+            this.minion = minion;
+            this.owner = board.ownerOf(minion);
+            this.home = this.at = board.cellOf(minion);
+            if (globals.length != player.globals.length) globals = new long[player.globals.length];
+            size = 0;
+            infoQueries = 0;
+            memo.clear();
+            memo.resetCounters();
+        }
+
+        void evaluate() {
+            System.arraycopy(player.globals, 0, globals, 0, globals.length);
+            meter.refill(player.budgetPerTurn);
+            try {
+                suspended = player.program.run(frame, globals, this, meter) == StrategyMeter.Status.SUSPENDED;
+            } catch (StrategyInterpreter.EvalException e) {
+                suspended = false; // the turn ends here; commands issued so far stand
+            }
+            int issued = size / 3; // moves and shoots; changed globals are recorded next
+            for (int g = 0; g < globals.length; g++) {
+                if (globals[g] != player.globals[g]) record(GLOBAL, g, globals[g]);
+            }
+            if (StrategyMetrics.enabled()) StrategyMetrics.executed(player.strategyHash, minion, meter.spent(), infoQueries, issued);
+        }
+
+        int commit(HexBoard board) {
+            for (int i = 0; i < size; i += 3) {
+                int arg = (int) commands[i + 1];
+                switch ((int) commands[i]) {
+                    case MOVE -> board.move(minion, DIRECTIONS[arg]);
+                    case SHOOT -> board.shoot(minion, DIRECTIONS[arg], commands[i + 2]);
+                    case GLOBAL -> player.globals[arg] = commands[i + 2];
+                    default -> throw new IllegalStateException("Bad command " + commands[i]);
+                }
+            }
+            return size / 3;
+        }
+
+        void clear() {
+            board = null;
+            player = null;
+            frame = null;
+        }
+
+        private void record(int kind, int arg, long value) {
+            if (size + 3 > commands.length) commands = Arrays.copyOf(commands, commands.length * 2);
+            commands[size++] = kind;
+            commands[size++] = arg;
+            commands[size++] = value;
+        }
+
+        @Override
+        public long ally() {
+            infoQueries++;
+            if (!memoize) return board.ally(at, owner, home);
+            return memo.has(InfoMemo.ALLY) ? memo.get(InfoMemo.ALLY) : memo.put(InfoMemo.ALLY, board.ally(at, owner, home));
+        }
+
+        @Override
+        public long opponent() {
+            infoQueries++;
+            if (!memoize) return board.opponent(at, owner, home);
+            return memo.has(InfoMemo.OPPONENT) ? memo.get(InfoMemo.OPPONENT)
+                    : memo.put(InfoMemo.OPPONENT, board.opponent(at, owner, home));
+        }
+
+        @Override
+        public long nearby(StrategyParser.Direction dir) {
+            infoQueries++;
+            if (!memoize) return board.nearby(at, owner, dir, home);
+            int slot = dir.ordinal();
+            return memo.has(slot) ? memo.get(slot) : memo.put(slot, board.nearby(at, owner, dir, home));
+        }
+
+        @Override
+        public void move(StrategyParser.Direction dir) {
+            record(MOVE, dir.ordinal(), 0);
+            int to = board.neighbor(at, dir);
+            if (to != HexBoard.EMPTY && (to == home || board.occupant(to) == HexBoard.EMPTY)) {
+                at = to;
+                memo.moved(dir);
+            }
+        }
+
+        @Override
+        public void shoot(StrategyParser.Direction dir, long expenditure) {
+            record(SHOOT, dir.ordinal(), expenditure);
+        }
+    }
+
+    @SuppressWarnings("serial")
+    private static final class Split extends RecursiveAction {
+        private final Plan[] plans;
+        private final int from, to;
+
+        Split(Plan[] plans, int from, int to) {
+            this.plans = plans;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= LEAF_SIZE) {
+                for (int i = from; i < to; i++) plans[i].evaluate();
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new Split(plans, from, mid), new Split(plans, mid, to));
+        }
+    }
+}
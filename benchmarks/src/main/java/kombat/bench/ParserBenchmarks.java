@@ -0,0 +1,155 @@
+package kombat.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Lexer, parser and end-to-end parse throughput over sources from a few lines up to pathological
+ * shapes. {@code main} adds the GC profiler, so every run also reports allocation per operation.
+ *
+ * <p>The parser lives in the default package, which Java code in a named package cannot refer to, and
+ * JMH will not generate harnesses for a default-package class. The entry points are therefore bound
+ * once into {@code static final} method handles, which the JIT treats as constants and inlines.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class ParserBenchmarks {
+
+    private static final MethodHandle LEX;           // List<Token> Lexer.lex(String)
+    private static final MethodHandle LEX_INTO;      // TokenBuffer Lexer.lexInto(String, TokenBuffer)
+    private static final MethodHandle NEW_BUFFER;    // new TokenBuffer()
+    private static final MethodHandle NEW_PARSER;    // new Parser(TokenBuffer)
+    private static final MethodHandle PARSE_STRATEGY; // List<Stmt> Parser.parseStrategy()
+    private static final MethodHandle PARSE;         // List<Stmt> StrategyParser.parse(String)
+
+    static {
+        try {
+            MethodHandles.Lookup lookup = MethodHandles.publicLookup();
+            Class<?> strategyParser = Class.forName("StrategyParser");
+            Class<?> lexer = Class.forName("StrategyParser$Lexer");
+            Class<?> buffer = Class.forName("StrategyParser$TokenBuffer");
+            Class<?> parser = Class.forName("StrategyParser$Parser");
+            LEX = lookup.findStatic(lexer, "lex", MethodType.methodType(List.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+            LEX_INTO = lookup.findStatic(lexer, "lexInto", MethodType.methodType(buffer, String.class, buffer))
+                    .asType(MethodType.methodType(Object.class, String.class, Object.class));
+            NEW_BUFFER = lookup.findConstructor(buffer, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            NEW_PARSER = lookup.findConstructor(parser, MethodType.methodType(void.class, buffer))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            PARSE_STRATEGY = lookup.findVirtual(parser, "parseStrategy", MethodType.methodType(List.class))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            PARSE = lookup.findStatic(strategyParser, "parse", MethodType.methodType(List.class, String.class))
+                    .asType(MethodType.methodType(Object.class, String.class));
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    /**
+     * <ul>
+     *   <li>{@code small}: a few statements;
+     *   <li>{@code realistic}: a strategy of the size players write, a few hundred lines;
+     *   <li>{@code longWhile}: one {@code while} with a 20,000-statement body;
+     *   <li>{@code deepNesting}: 450 {@code while} blocks nested inside each other, under the default depth cap;
+     *   <li>{@code powerChain}: a 900-operand right-associative {@code ^} chain in parentheses.
+     * </ul>
+     */
+    @Param({"small", "realistic", "longWhile", "deepNesting", "powerChain"})
+    public String shape;
+
+    private String src;
+    private Object tokens; // the TokenBuffer for src, lexed once
+
+    @Setup(Level.Trial)
+    public void setUp() throws Throwable {
+        src = source(shape);
+        tokens = LEX_INTO.invokeExact(src, NEW_BUFFER.invokeExact());
+        Object program = PARSE.invokeExact(src); // fail here, not mid-measurement, if a source is bad
+        if (((List<?>) program).isEmpty()) throw new IllegalStateException("Empty program for " + shape);
+    }
+
+    @Benchmark
+    public Object lex() throws Throwable {
+        return LEX.invokeExact(src);
+    }
+
+    @Benchmark
+    public Object parseStrategy() throws Throwable {
+        return PARSE_STRATEGY.invokeExact(NEW_PARSER.invokeExact(tokens));
+    }
+
+    @Benchmark
+    public Object parse() throws Throwable {
+        return PARSE.invokeExact(src);
+    }
+
+    static String source(String shape) {
+        StringBuilder sb = new StringBuilder();
+        switch (shape) {
+            case "small" -> sb.append("t = t + 1\nif (opponent) then shoot up 2 else move down\n");
+            case "realistic" -> {
+                for (int i = 0; i < 40; i++) {
+                    sb.append("# phase ").append(i).append('\n')
+                            .append("d").append(i).append(" = opponent % 10\n")
+                            .append("if (d").append(i).append(" - 3) then {\n")
+                            .append("  while (budget").append(i).append(" - 100) {\n")
+                            .append("    budget").append(i).append(" = budget").append(i).append(" - (nearby upleft * 2 + 7) / 3\n")
+                            .append("    if (nearby up) then shoot up budget").append(i).append(" % 50 else move upright\n")
+                            .append("  }\n")
+                            .append("} else if (ally) then move downleft else done\n");
+                }
+            }
+            case "longWhile" -> {
+                sb.append("while (n) {\n");
+                for (int i = 0; i < 20_000; i++) sb.append("  n = n - ").append(i % 9 + 1).append(" * x").append(i % 13).append('\n');
+                sb.append("}\n");
+            }
+            case "deepNesting" -> {
+                int depth = 450; // two levels each (the while and its block), under the cap of 1000
+                for (int i = 0; i < depth; i++) sb.append("while (x").append(i).append(") {\n");
+                sb.append("move up\n");
+                for (int i = 0; i < depth; i++) sb.append("}\n");
+            }
+            case "powerChain" -> {
+                sb.append("x = (2");
+                for (int i = 0; i < 900; i++) sb.append(" ^ 2"); // each pending ^ is a level: stay under the cap
+                sb.append(")\n");
+            }
+            default -> throw new IllegalArgumentException("Unknown shape " + shape);
+        }
+        return sb.toString();
+    }
+
+    public static void main(String[] args) throws Exception {
+        new Runner(new OptionsBuilder()
+                .parent(new CommandLineOptions(args))
+                .include(ParserBenchmarks.class.getName())
+                .addProfiler(GCProfiler.class)
+                .build()).run();
+    }
+}